@@ -1,15 +1,17 @@
 package org.mio.model;
 
+import org.mio.util.EpochTime;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
 public class ArcSpeed implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     
     private Arc arc;
     private double averageSpeed;
     private int sampleCount;
-    private String lastUpdated; // String para serialización
+    private long lastUpdated; // Segundos epoch de la última muestra
     private double totalSpeed;
     private double minSpeed;
     private double maxSpeed;
@@ -18,26 +20,55 @@ public class ArcSpeed implements Serializable {
         this.arc = arc;
         this.averageSpeed = 0.0;
         this.sampleCount = 0;
-        this.lastUpdated = LocalDateTime.now().toString(); // Convertir a String
+        this.lastUpdated = System.currentTimeMillis() / 1000;
         this.totalSpeed = 0.0;
         this.minSpeed = Double.MAX_VALUE;
         this.maxSpeed = 0.0;
     }
 
     public void addSpeedSample(double speed) {
+        addSpeedSample(speed, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Registra una muestra con el tiempo (segundos epoch) del datagrama que la produjo.
+     */
+    public void addSpeedSample(double speed, long epochSecond) {
         totalSpeed += speed;
         sampleCount++;
         averageSpeed = totalSpeed / sampleCount;
-        lastUpdated = LocalDateTime.now().toString(); // Convertir a String
+        if (epochSecond > lastUpdated || sampleCount == 1) {
+            lastUpdated = epochSecond;
+        }
         
         if (speed < minSpeed) minSpeed = speed;
         if (speed > maxSpeed) maxSpeed = speed;
     }
 
+    /**
+     * Suma muestras ya acumuladas en otro lugar (otro worker o un parcial): cantidad,
+     * suma, mínimo, máximo y tiempo de la última muestra.
+     */
+    public void merge(int samples, double total, double min, double max, long epochSecond) {
+        if (samples <= 0) {
+            return;
+        }
+        if (epochSecond > lastUpdated || sampleCount == 0) {
+            lastUpdated = epochSecond;
+        }
+        totalSpeed += total;
+        sampleCount += samples;
+        averageSpeed = totalSpeed / sampleCount;
+        if (min < minSpeed) minSpeed = min;
+        if (max > maxSpeed) maxSpeed = max;
+    }
+
     public Arc getArc() { return arc; }
     public double getAverageSpeed() { return averageSpeed; }
     public int getSampleCount() { return sampleCount; }
-    public LocalDateTime getLastUpdated() { return LocalDateTime.parse(lastUpdated); }
+    public double getTotalSpeed() { return totalSpeed; }
+    public long getLastUpdatedEpochSecond() { return lastUpdated; }
+    public LocalDateTime getLastUpdated() { return EpochTime.toLocalDateTime(lastUpdated); }
     public double getMinSpeed() { return minSpeed == Double.MAX_VALUE ? 0.0 : minSpeed; }
     public double getMaxSpeed() { return maxSpeed; }
 
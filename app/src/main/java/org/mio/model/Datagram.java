@@ -1,25 +1,27 @@
 package org.mio.model;
 
+import org.mio.util.EpochTime;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
 public class Datagram implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     
     private String busId;
     private double latitude;
     private double longitude;
-    private String timestamp; // String en formato "yyyy-MM-dd HH:mm:ss"
+    private long epochSecond; // Segundos epoch de datagramDate (sin parseo al leerlo)
     private int lineId;
     private int orientation;
     private String eventType;
 
     public Datagram(String busId, double latitude, double longitude, 
-                   LocalDateTime timestamp, int lineId, int orientation, String eventType) {
+                   long epochSecond, int lineId, int orientation, String eventType) {
         this.busId = busId;
         this.latitude = latitude;
         this.longitude = longitude;
-        this.timestamp = timestamp.toString(); // Convertir a String
+        this.epochSecond = epochSecond;
         this.lineId = lineId;
         this.orientation = orientation;
         this.eventType = eventType;
@@ -28,7 +30,8 @@ public class Datagram implements Serializable {
     public String getBusId() { return busId; }
     public double getLatitude() { return latitude; }
     public double getLongitude() { return longitude; }
-    public LocalDateTime getTimestamp() { return LocalDateTime.parse(timestamp); }
+    public long getEpochSecond() { return epochSecond; }
+    public LocalDateTime getTimestamp() { return EpochTime.toLocalDateTime(epochSecond); }
     public int getLineId() { return lineId; }
     public int getOrientation() { return orientation; }
     public String getEventType() { return eventType; }
@@ -36,6 +39,6 @@ public class Datagram implements Serializable {
     @Override
     public String toString() {
         return String.format("Datagram{bus=%s, lat=%.6f, lon=%.6f, time=%s, line=%d, orient=%d, type=%s}",
-                busId, latitude, longitude, timestamp, lineId, orientation, eventType);
+                busId, latitude, longitude, EpochTime.format(epochSecond), lineId, orientation, eventType);
     }
 }
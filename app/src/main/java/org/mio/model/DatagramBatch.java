@@ -0,0 +1,189 @@
+package org.mio.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Lote de datagramas con una columna primitiva por campo (struct-of-arrays).
+ * Es la unidad de trabajo entre Master y Workers: reemplaza el envío de un objeto
+ * Datagram por registro. Las coordenadas se guardan en grados x 10^7, la misma
+ * escala del CSV, y el tiempo en segundos epoch.
+ *
+ * Solo las primeras size() posiciones de cada columna son válidas.
+ */
+public class DatagramBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final double COORDINATE_SCALE = 10000000.0;
+    private static final int DEFAULT_ORIENTATION = 1;
+
+    private transient int[] busIds;
+    private transient int[] latitudesE7;
+    private transient int[] longitudesE7;
+    private transient long[] epochSeconds;
+    private transient short[] lineIds;
+    private transient byte[] eventTypes;
+    private transient int size;
+
+    public DatagramBatch(int capacity) {
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        busIds = new int[capacity];
+        latitudesE7 = new int[capacity];
+        longitudesE7 = new int[capacity];
+        epochSeconds = new long[capacity];
+        lineIds = new short[capacity];
+        eventTypes = new byte[capacity];
+    }
+
+    /**
+     * Indica si lineId y eventType caben en sus columnas (short y byte).
+     */
+    public static boolean fits(int lineId, int eventType) {
+        return lineId >= Short.MIN_VALUE && lineId <= Short.MAX_VALUE
+            && eventType >= Byte.MIN_VALUE && eventType <= Byte.MAX_VALUE;
+    }
+
+    public void add(int busId, int latitudeE7, int longitudeE7, long epochSecond, int lineId, int eventType) {
+        if (!fits(lineId, eventType)) {
+            throw new IllegalArgumentException("lineId/eventType fuera de rango: " + lineId + "/" + eventType);
+        }
+        busIds[size] = busId;
+        latitudesE7[size] = latitudeE7;
+        longitudesE7[size] = longitudeE7;
+        epochSeconds[size] = epochSecond;
+        lineIds[size] = (short) lineId;
+        eventTypes[size] = (byte) eventType;
+        size++;
+    }
+
+    /**
+     * Copia las filas [from, to) a un lote nuevo del tamaño justo.
+     */
+    public DatagramBatch slice(int from, int to) {
+        DatagramBatch slice = new DatagramBatch(to - from);
+        copyRows(this, from, slice, 0, to - from);
+        slice.size = to - from;
+        return slice;
+    }
+
+    /**
+     * Copia 'count' filas de 'source' a partir de 'from' al final de este lote.
+     */
+    public void addAll(DatagramBatch source, int from, int count) {
+        copyRows(source, from, this, size, count);
+        size += count;
+    }
+
+    /**
+     * Copia la fila i de 'source' al final de este lote.
+     */
+    public void addRow(DatagramBatch source, int i) {
+        busIds[size] = source.busIds[i];
+        latitudesE7[size] = source.latitudesE7[i];
+        longitudesE7[size] = source.longitudesE7[i];
+        epochSeconds[size] = source.epochSeconds[i];
+        lineIds[size] = source.lineIds[i];
+        eventTypes[size] = source.eventTypes[i];
+        size++;
+    }
+
+    private static void copyRows(DatagramBatch source, int from, DatagramBatch target, int to, int count) {
+        System.arraycopy(source.busIds, from, target.busIds, to, count);
+        System.arraycopy(source.latitudesE7, from, target.latitudesE7, to, count);
+        System.arraycopy(source.longitudesE7, from, target.longitudesE7, to, count);
+        System.arraycopy(source.epochSeconds, from, target.epochSeconds, to, count);
+        System.arraycopy(source.lineIds, from, target.lineIds, to, count);
+        System.arraycopy(source.eventTypes, from, target.eventTypes, to, count);
+    }
+
+    /**
+     * Descarta las filas a partir de newSize (por ejemplo, al recortar el cupo del objetivo).
+     */
+    public void truncate(int newSize) {
+        if (newSize < size) {
+            size = Math.max(0, newSize);
+        }
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Fija la cantidad de filas válidas para que un decodificador llene las columnas directamente.
+     */
+    public void setSize(int rows) {
+        if (rows < 0 || rows > capacity()) {
+            throw new IllegalArgumentException("Filas fuera de capacidad: " + rows + "/" + capacity());
+        }
+        size = rows;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return busIds.length; }
+    public boolean isEmpty() { return size == 0; }
+    public boolean isFull() { return size == busIds.length; }
+
+    public int getBusId(int i) { return busIds[i]; }
+    public int getLatitudeE7(int i) { return latitudesE7[i]; }
+    public int getLongitudeE7(int i) { return longitudesE7[i]; }
+    public double getLatitude(int i) { return latitudesE7[i] / COORDINATE_SCALE; }
+    public double getLongitude(int i) { return longitudesE7[i] / COORDINATE_SCALE; }
+    public long getEpochSecond(int i) { return epochSeconds[i]; }
+    public int getLineId(int i) { return lineIds[i]; }
+    public int getEventType(int i) { return eventTypes[i]; }
+
+    // Acceso directo a las columnas para los recorridos y la codificación en bloque
+    public int[] busIds() { return busIds; }
+    public int[] latitudesE7() { return latitudesE7; }
+    public int[] longitudesE7() { return longitudesE7; }
+    public long[] epochSeconds() { return epochSeconds; }
+    public short[] lineIds() { return lineIds; }
+    public byte[] eventTypes() { return eventTypes; }
+
+    /**
+     * Construye el Datagram de la fila i (solo para reportes y compatibilidad).
+     */
+    public Datagram toDatagram(int i) {
+        return new Datagram(Integer.toString(busIds[i]), getLatitude(i), getLongitude(i),
+            epochSeconds[i], lineIds[i], DEFAULT_ORIENTATION, Integer.toString(eventTypes[i]));
+    }
+
+    // Serialización compacta: solo las filas válidas, columna por columna
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) out.writeInt(busIds[i]);
+        for (int i = 0; i < size; i++) out.writeInt(latitudesE7[i]);
+        for (int i = 0; i < size; i++) out.writeInt(longitudesE7[i]);
+        for (int i = 0; i < size; i++) out.writeLong(epochSeconds[i]);
+        for (int i = 0; i < size; i++) out.writeShort(lineIds[i]);
+        out.write(eventTypes, 0, size);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int rows = in.readInt();
+        if (rows < 0) {
+            throw new IOException("Tamaño de lote inválido: " + rows);
+        }
+        allocate(rows);
+        for (int i = 0; i < rows; i++) busIds[i] = in.readInt();
+        for (int i = 0; i < rows; i++) latitudesE7[i] = in.readInt();
+        for (int i = 0; i < rows; i++) longitudesE7[i] = in.readInt();
+        for (int i = 0; i < rows; i++) epochSeconds[i] = in.readLong();
+        for (int i = 0; i < rows; i++) lineIds[i] = in.readShort();
+        in.readFully(eventTypes, 0, rows);
+        size = rows;
+    }
+
+    @Override
+    public String toString() {
+        return "DatagramBatch{size=" + size + ", capacity=" + capacity() + "}";
+    }
+}
@@ -55,5 +55,47 @@ public class MasterConfig {
     // Configuración de procesamiento
     public static final int PROGRESS_REPORT_INTERVAL = 10000; // cada 10,000 datagramas
     public static final int MONITOR_INTERVAL_MS = 2000; // cada 2 segundos
-    public static final int WORKER_TIMEOUT_MS = 5000; // 5 segundos
+    public static final int WORKER_TIMEOUT_MS = 5000; // sin tramas (créditos, latidos, resultados) de un worker: colgado
+    public static final int STRAGGLER_CHECK_MS = 1000; // cada cuánto se buscan workers rezagados
+    public static final int STRAGGLER_MIN_LAG_MS = 2000; // retraso mínimo para declarar rezagado a un worker
+    public static final double STRAGGLER_FACTOR = 4.0; // veces la mediana del retraso de los demás workers
+    public static final double STRAGGLER_RATE_FACTOR = 2.0; // veces menor que la mediana del ritmo de los demás
+    public static final int MAX_WORKERS = 256; // workers por ejecución, contando los que se unen durante ella
+    public static final int CHECKPOINT_INTERVAL_MS = 30000; // entre marcas de checkpoint (--checkpoint-interval)
+    
+    // Ingesta del CSV (--ingest)
+    public static final String INGEST_PIPELINE = "pipeline"; // lector → parsers → envío por worker
+    public static final String INGEST_MAPPED = "mapped";
+    public static final String INGEST_SCANNER = "scanner";
+    public static final String INGEST_RAW = "raw"; // bloques CSV sin parsear con transferTo, los workers parsean
+    public static final int RAW_CHUNK_SIZE = 1024 * 1024; // bytes por bloque de líneas en la ingesta raw
+    
+    // Transporte hacia los workers
+    public static final String TRANSPORT_BLOCKING = "blocking"; // hilo lector + hilo de envío por worker
+    public static final String TRANSPORT_NIO = "nio"; // un solo Selector para todos los workers
+    public static final String TRANSPORT_LOCAL = "local"; // workers como hilos del Master, lotes por colas sin serializar
+    public static final String TRANSPORT_SHM = "shm"; // workers del mismo host: datos por una cola en memoria compartida
+    public static final int SHM_RING_SIZE = 8 * 1024 * 1024; // bytes mínimos de la cola compartida por worker
+    public static final String SHM_RING_PREFIX = "sitm-mio-worker-";
+    // Hilos de las conexiones bloqueantes (--threads)
+    public static final String THREADS_PLATFORM = "platform"; // hilos del sistema operativo
+    public static final String THREADS_VIRTUAL = "virtual"; // hilos virtuales, requiere Java 21
+    // Reparto de cada lote entre los workers (--partition)
+    public static final String PARTITION_BUS = "bus"; // hashing consistente por busId: cada bus a un solo worker
+    public static final String PARTITION_RANGE = "range"; // rangos contiguos del lote, un tramo por worker
+    public static final int PARTITION_VIRTUAL_NODES = 128; // puntos por worker en el anillo de hashes
+    
+    // Balanceo según la carga de cada worker (--balance)
+    public static final String BALANCE_STEAL = "steal"; // reparto por ritmo medido y robo de particiones
+    public static final String BALANCE_STATIC = "static"; // dueños fijos y tramos iguales
+    public static final int LOAD_UPDATE_INTERVAL_MS = 500; // cada cuánto se mide el ritmo y se evalúa un robo
+    public static final int STEAL_MIN_BACKLOG_MS = 1000; // pendiente mínimo del worker atrasado para robarle
+    public static final double STEAL_LOAD_FACTOR = 2.0; // el atrasado debe tardar este factor más que el desocupado
+    public static final int PIPELINE_CHUNK_SIZE = 4 * 1024 * 1024; // bytes por bloque leído
+    public static final int PIPELINE_CHUNKS = 8; // bloques en vuelo entre lector y parsers
+    public static final int SENDER_QUEUE_BATCHES = 4; // sub-lotes en cola por worker
+    public static final int PARSED_AHEAD_BATCHES = 8; // lotes parseados por rango que esperan su turno (--parsers con mapped)
+    
+    // Filtro de ingesta por defecto: los workers solo procesan eventType 0
+    public static final int DEFAULT_EVENT_TYPE = 0;
 }
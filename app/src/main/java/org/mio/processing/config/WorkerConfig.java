@@ -4,6 +4,7 @@ public class WorkerConfig {
     // Configuración del Worker Node
     public static final String DEFAULT_MASTER_IP = "localhost";
     public static final int DEFAULT_MASTER_PORT = 8080;
+    public static final String IN_PROCESS_ADDRESS = "en proceso"; // Dirección de un worker que corre dentro del Master
     
     // Mensajes del Worker
     public static final String WORKER_BANNER = "=== WORKER %d INICIADO ===";
@@ -28,7 +29,7 @@ public class WorkerConfig {
         "Worker %d: Total arcos con velocidad: %d\n" +
         "Worker %d: Velocidad promedio general: %.2f km/h";
     
-    public static final String SENDING_RESULTS = "Worker %d: Enviando resultados al Master...";
+    public static final String SENDING_RESULTS = "Worker %d: Enviando últimos resultados al Master (%d arcos pendientes)...";
     public static final String RESULTS_SENT = "Worker %d: ✓ RESULTADOS ENVIADOS AL MASTER";
     public static final String WORKER_FINISHED = "=== WORKER %d - FINALIZADO ===";
     
@@ -36,11 +37,25 @@ public class WorkerConfig {
     public static final int PROGRESS_REPORT_INTERVAL = 1000; // cada 1,000 datagramas
     public static final int PROGRESS_TIME_INTERVAL_MS = 5000; // cada 5 segundos
     public static final int MAX_HISTORY_SIZE = 100; // máximo de datagramas por bus
+    public static final int RESULTS_INTERVAL_MS = 1000; // parcial de resultados al Master cada 1 segundo
+    public static final int CHUNK_BATCH_ROWS = 4096; // filas por lote al parsear bloques CSV (ingesta raw)
+    public static final int INITIAL_CREDITS = 4; // lotes que el Master puede tener en vuelo hacia este worker
+    public static final int HEARTBEAT_INTERVAL_MS = 500; // latido al Master, también durante un lote largo
+    public static final int CHECKPOINT_TAIL_POINTS = 1; // posiciones por bus en un checkpoint: la velocidad solo usa la anterior
+    public static final int DEFAULT_SHARDS = Runtime.getRuntime().availableProcessors(); // procesadores de buses, uno por núcleo
+    public static final int MAX_SAMPLE_GAP_SECONDS = 300; // entre posiciones de un bus; más es un historial viejo (el bus volvió de otro worker)
     public static final double MIN_SPEED_THRESHOLD = 0.0; // km/h mínimo
     public static final double MAX_SPEED_THRESHOLD = 100.0; // km/h máximo
     public static final int MIN_SAMPLES_FOR_AVERAGE = 5; // muestras mínimas para promedio
     
+    public static final String SHARDS_STARTED = "Worker %d: %d shards procesando buses en paralelo";
+    public static final String PROCESSING_RATE = "Worker %d: %d shards, %.0f datagramas/segundo procesando lotes (%.1f s ocupado)";
+    public static final String CHECKPOINT_SENT = "Worker %d: Checkpoint %d confirmado (%d buses, %.2f ms)";
+    public static final String CHECKPOINT_RESTORED = "Worker %d: Colas de %d buses restauradas del checkpoint %d";
+    public static final String CHUNK_STATS = "Worker %d: Bloques CSV: %d filas descartadas por el filtro, %d filas con error";
+    
     // Errores
+    public static final String CHUNK_ROW_ERROR = "Worker %d: Error parseando fila CSV: columna inválida %d";
     public static final String CONNECTION_ERROR = "Worker %d: Error de conexión: %s";
     public static final String PROCESSING_ERROR = "Worker %d: Error procesando datagrama: %s";
     public static final String DISCONNECTED = "Worker %d: Master cerró conexión";
@@ -0,0 +1,224 @@
+package org.mio.processing.experiments;
+
+import org.mio.model.Datagram;
+import org.mio.model.DatagramBatch;
+import org.mio.processing.ingest.DatagramCsvParser;
+import org.mio.processing.ingest.DatagramRowDecoder;
+import org.mio.util.MappedCsvScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Scanner;
+
+/**
+ * Benchmark de ingesta del CSV de datagramas: compara la ruta original del Master
+ * (Scanner + nextLine + split) contra el decodificador en sitio y el escáner mapeado
+ * en memoria. Reporta MB/s y la tasa de asignación (bytes por fila) de cada ruta.
+ * Solo mide lectura y parseo; no requiere workers conectados.
+ */
+public class IngestionBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 3;
+
+    private static final String[] PATHS = {
+        "Scanner + split", "Scanner + decoder", "Mapeado + decoder", "Mapeado, sin Datagram", "Mapeado + lote SoA"
+    };
+
+    private static final int BATCH_SIZE = 10000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Uso: IngestionBenchmark <archivo_csv> [filas]");
+            System.out.println("Ejemplo: IngestionBenchmark datagrams4history.csv 1000000");
+            return;
+        }
+
+        String csvFile = args[0];
+        long maxRows = args.length > 1 ? Long.parseLong(args[1].trim()) : Long.MAX_VALUE;
+
+        System.out.println("=== BENCHMARK DE INGESTA SITM-MIO ===");
+        System.out.println("Archivo: " + csvFile + " (" + new File(csvFile).length() + " bytes)");
+        System.out.println("Filas máximas: " + (maxRows == Long.MAX_VALUE ? "todas" : maxRows));
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (int path = 0; path < PATHS.length; path++) {
+                run(path, csvFile, maxRows);
+            }
+        }
+
+        Result[] best = new Result[PATHS.length];
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            for (int path = 0; path < PATHS.length; path++) {
+                Result result = run(path, csvFile, maxRows);
+                if (best[path] == null || result.nanos < best[path].nanos) {
+                    best[path] = result;
+                }
+            }
+        }
+
+        // Las rutas con Scanner no exponen el offset consumido: se usan los bytes medidos por la ruta mapeada
+        best[0].bytes = best[2].bytes;
+        best[1].bytes = best[2].bytes;
+
+        System.out.println();
+        System.out.println("RUTA                   | FILAS      | TIEMPO (ms) | MB/s     | FILAS/s    | BYTES ASIG./FILA | MB ASIG./s");
+        System.out.println("-----------------------|------------|-------------|----------|------------|------------------|-----------");
+        for (int path = 0; path < PATHS.length; path++) {
+            print(PATHS[path], best[path]);
+        }
+        System.out.println(String.format("%nMejora mapeado + decoder vs original: %.2fx tiempo, %.1fx menos asignación",
+            (double) best[0].nanos / best[2].nanos,
+            (double) best[0].allocated / Math.max(1, best[2].allocated)));
+        System.out.println(String.format("Mejora mapeado + lote SoA vs original: %.2fx tiempo, %.1fx menos asignación",
+            (double) best[0].nanos / best[4].nanos,
+            (double) best[0].allocated / Math.max(1, best[4].allocated)));
+    }
+
+    private static Result run(int path, String csvFile, long maxRows) throws IOException {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        Result result;
+        switch (path) {
+            case 0:
+                result = runScannerSplit(csvFile, maxRows);
+                break;
+            case 1:
+                result = runScannerDecoder(csvFile, maxRows);
+                break;
+            case 4:
+                result = runMappedBatch(csvFile, maxRows);
+                break;
+            default:
+                result = runMapped(csvFile, maxRows, path == 2);
+                break;
+        }
+        result.nanos = System.nanoTime() - start;
+        result.allocated = allocatedBytes() - allocatedBefore;
+        return result;
+    }
+
+    private static Result runScannerSplit(String csvFile, long maxRows) throws IOException {
+        Result result = new Result();
+        try (Scanner scanner = new Scanner(new File(csvFile), "UTF-8")) {
+            if (scanner.hasNextLine()) {
+                scanner.nextLine();
+            }
+            while (result.rows < maxRows && scanner.hasNextLine()) {
+                String[] row = scanner.nextLine().split(",");
+                result.rows++;
+                try {
+                    result.consume(DatagramCsvParser.fromFields(row));
+                } catch (RuntimeException e) {
+                    result.errors++;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Result runScannerDecoder(String csvFile, long maxRows) throws IOException {
+        Result result = new Result();
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+        try (Scanner scanner = new Scanner(new File(csvFile), "UTF-8")) {
+            if (scanner.hasNextLine()) {
+                scanner.nextLine();
+            }
+            while (result.rows < maxRows && scanner.hasNextLine()) {
+                result.rows++;
+                if (decoder.decode(scanner.nextLine())) {
+                    result.consume(decoder.toDatagram());
+                } else {
+                    result.errors++;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Result runMapped(String csvFile, long maxRows, boolean buildDatagrams) throws IOException {
+        Result result = new Result();
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+        try (MappedCsvScanner scanner = new MappedCsvScanner(Path.of(csvFile))) {
+            scanner.skipLine();
+            while (result.rows < maxRows && scanner.nextLine()) {
+                result.rows++;
+                if (!decoder.decode(scanner.buffer(), scanner.rowStart(), scanner.rowEnd())) {
+                    result.errors++;
+                } else if (buildDatagrams) {
+                    result.consume(decoder.toDatagram());
+                } else {
+                    result.checksum += decoder.getLatitudeE7() + decoder.getLineId() + decoder.getEpochSecond();
+                }
+            }
+            result.bytes = scanner.position();
+        }
+        return result;
+    }
+
+    /**
+     * Ruta actual del Master: filas decodificadas directo a las columnas de un DatagramBatch.
+     */
+    private static Result runMappedBatch(String csvFile, long maxRows) throws IOException {
+        Result result = new Result();
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+        DatagramBatch batch = new DatagramBatch(BATCH_SIZE);
+        try (MappedCsvScanner scanner = new MappedCsvScanner(Path.of(csvFile))) {
+            scanner.skipLine();
+            while (result.rows < maxRows && scanner.nextLine()) {
+                result.rows++;
+                if (!decoder.decode(scanner.buffer(), scanner.rowStart(), scanner.rowEnd()) || !decoder.appendTo(batch)) {
+                    result.errors++;
+                }
+                if (batch.isFull()) {
+                    result.consume(batch);
+                    batch.clear();
+                }
+            }
+            result.consume(batch);
+            result.bytes = scanner.position();
+        }
+        return result;
+    }
+
+    /**
+     * Bytes asignados por el hilo actual (extensión de HotSpot); 0 si la JVM no la soporta.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static void print(String name, Result result) {
+        double seconds = result.nanos / 1_000_000_000.0;
+        System.out.println(String.format("%-22s | %10d | %11.1f | %8.1f | %10.0f | %16.1f | %9.1f",
+            name, result.rows, result.nanos / 1_000_000.0,
+            result.bytes / (1024.0 * 1024.0) / seconds, result.rows / seconds,
+            (double) result.allocated / Math.max(1, result.rows),
+            result.allocated / (1024.0 * 1024.0) / seconds));
+    }
+
+    private static class Result {
+        long rows;
+        long errors;
+        long bytes;
+        long nanos;
+        long allocated;
+        double checksum; // evita que el JIT descarte el parseo
+
+        void consume(Datagram datagram) {
+            checksum += datagram.getLatitude() + datagram.getLineId();
+        }
+
+        void consume(DatagramBatch batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                checksum += batch.getLatitude(i) + batch.getLineId(i);
+            }
+        }
+    }
+}
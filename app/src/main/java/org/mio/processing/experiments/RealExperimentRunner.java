@@ -2,6 +2,9 @@ package org.mio.processing.experiments;
 
 import org.mio.graph.Graph;
 import org.mio.graph.GraphBuilder;
+import org.mio.processing.config.MasterConfig;
+import org.mio.processing.master.JobResult;
+import org.mio.processing.master.JobSpec;
 import org.mio.processing.master.MasterNodeService;
 
 import java.io.*;
@@ -25,17 +28,24 @@ public class RealExperimentRunner {
     private static final int[] BATCH_SIZES = {5_000, 10_000};
     
     private final List<ExperimentResult> results = new ArrayList<>();
-    private List<Process> workerProcesses = new ArrayList<>(); // Workers persistentes
-    private boolean workersInitialized = false; // Control de inicialización
+    private List<Process> workerProcesses = new ArrayList<>(); // Workers del experimento en curso (JVMs aparte)
+    private String transport = MasterConfig.TRANSPORT_LOCAL; // local: workers como hilos del Master
     
     public static void main(String[] args) {
         RealExperimentRunner runner = new RealExperimentRunner();
+        // --transport=blocking|nio|shm lanza los workers como JVMs aparte y los conecta por TCP
+        for (String arg : args) {
+            if (arg.startsWith("--transport=")) {
+                runner.transport = arg.substring("--transport=".length()).toLowerCase();
+            }
+        }
         
         System.out.println("=== SISTEMA DE EXPERIMENTOS REALES SITM-MIO ===");
         System.out.println("Configuraciones de prueba (PROCESAMIENTO REAL):");
         System.out.println("- Datagramas: " + Arrays.toString(DATAGRAM_SIZES));
         System.out.println("- Workers: " + Arrays.toString(WORKER_COUNTS));
         System.out.println("- Lotes: " + Arrays.toString(BATCH_SIZES));
+        System.out.println("- Transporte: " + runner.transport);
         System.out.println("\nADVERTENCIA: ESTOS EXPERIMENTOS USAN WORKERS REALES - TOMARAN TIEMPO REAL");
         System.out.println("   100K datagramas: ~2-5 minutos por configuración");
         System.out.println("   1M datagramas: ~10-20 minutos por configuración");
@@ -62,10 +72,6 @@ public class RealExperimentRunner {
         GraphBuilder builder = new GraphBuilder();
         Graph graph = builder.build();
         
-        // Inicializar workers persistentes (máximo necesario)
-        int maxWorkers = Arrays.stream(WORKER_COUNTS).max().orElse(3);
-        initializeWorkers(maxWorkers);
-        
         int totalExperiments = DATAGRAM_SIZES.length * WORKER_COUNTS.length * BATCH_SIZES.length;
         int currentExperiment = 0;
         
@@ -91,70 +97,51 @@ public class RealExperimentRunner {
                     } catch (IOException e) {
                         System.err.println("Error guardando resultados parciales: " + e.getMessage());
                     }
-                    
-                    // Pausa reducida entre experimentos para estabilizar el sistema
-                    if (currentExperiment < totalExperiments) {
-                        System.out.println("Pausando 5 segundos antes del siguiente experimento...");
-                        Thread.sleep(5000);
-                    }
                 }
             }
         }
         
         System.out.println("\n=== EXPERIMENTOS REALES COMPLETADOS ===");
         System.out.println("Total experimentos ejecutados: " + results.size());
-        
-        // Limpiar workers al final de todos los experimentos
-        cleanupWorkers();
     }
     
-    private void initializeWorkers(int maxWorkers) throws Exception {
-        if (!workersInitialized) {
-            System.out.println("=== INICIANDO WORKERS PERSISTENTES ===");
-            System.out.println("Iniciando " + maxWorkers + " workers para todos los experimentos...");
-            
-            for (int i = 1; i <= maxWorkers; i++) {
-                try {
-                    ProcessBuilder pb = new ProcessBuilder(
-                        "java", "-jar", "app\\build\\libs\\sitm-worker-1.0.jar",
-                        String.valueOf(i)
-                    );
-                    pb.directory(new File(System.getProperty("user.dir")));
-                    pb.redirectErrorStream(true);
-                    Process workerProcess = pb.start();
-                    workerProcesses.add(workerProcess);
-                    
-                    // Esperar un momento entre workers
-                    Thread.sleep(2000);
-                    System.out.println("Worker " + i + " iniciado y persistente");
-                } catch (Exception e) {
-                    System.err.println("Error iniciando worker " + i + ": " + e.getMessage());
-                }
+    private boolean isInProcess() {
+        return MasterConfig.TRANSPORT_LOCAL.equals(transport);
+    }
+    
+    /**
+     * Lanza los workers del experimento; el Master ya escucha, así se conectan al
+     * arrancar y terminan solos al recibir STOP.
+     */
+    private void startWorkers(int workerCount) {
+        for (int i = 1; i <= workerCount; i++) {
+            try {
+                ProcessBuilder pb = new ProcessBuilder(
+                    "java", "-jar", "app\\build\\libs\\sitm-worker-1.0.jar",
+                    String.valueOf(i)
+                );
+                pb.directory(new File(System.getProperty("user.dir")));
+                pb.redirectErrorStream(true);
+                pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+                workerProcesses.add(pb.start());
+            } catch (IOException e) {
+                System.err.println("Error iniciando worker " + i + ": " + e.getMessage());
             }
-            
-            // Esperar que todos los workers estén listos
-            System.out.println("Esperando que todos los workers se estabilicen...");
-            Thread.sleep(10000);
-            workersInitialized = true;
-            System.out.println("✓ Todos los workers persistentes iniciados");
         }
     }
     
-    private void cleanupWorkers() {
-        System.out.println("\n=== LIMPIANDO WORKERS PERSISTENTES ===");
+    private void stopWorkers() {
         for (Process workerProcess : workerProcesses) {
-            if (workerProcess.isAlive()) {
-                workerProcess.destroy();
-                try {
-                    workerProcess.waitFor(5, TimeUnit.SECONDS);
-                } catch (InterruptedException e) {
+            try {
+                if (!workerProcess.waitFor(5, TimeUnit.SECONDS)) {
                     workerProcess.destroyForcibly();
                 }
+            } catch (InterruptedException e) {
+                workerProcess.destroyForcibly();
+                Thread.currentThread().interrupt();
             }
         }
         workerProcesses.clear();
-        workersInitialized = false;
-        System.out.println("✓ Workers persistentes detenidos");
     }
     
     private ExperimentResult runSingleRealExperiment(Graph graph, int datagramSize, int workerCount, int batchSize) {
@@ -172,68 +159,49 @@ public class RealExperimentRunner {
             
             // Crear y configurar el master para procesamiento real
             MasterNodeService master = new MasterNodeService(graph, 8080);
-            master.setBatchSize(batchSize);
-            master.setAutoMode(true); // Activar modo automático para experimentos
-            master.setExpectedWorkers(workerCount); // Configurar número esperado de workers dinámicamente
-            
-            // Los workers ya están iniciados persistentemente, no iniciar nuevos
-            
-            // Esperar que workers estén listos para este experimento
-            System.out.println("  Esperando que workers se estabilicen para este experimento...");
-            Thread.sleep(3000); // 3 segundos para estabilización
-            
-            // Iniciar el servidor master en un thread separado
-            CountDownLatch masterReady = new CountDownLatch(1);
-            CountDownLatch masterDone = new CountDownLatch(1);
-            
-            Thread masterThread = new Thread(() -> {
-                try {
-                    masterReady.countDown(); // Señal que está listo
-                    master.start(CSV_FILE, datagramSize);
-                    masterDone.countDown(); // Señal que terminó
-                } catch (Exception e) {
-                    System.err.println("Error en master: " + e.getMessage());
-                    result.setErrorMessage("Master error: " + e.getMessage());
-                }
-            });
-            
-            masterThread.start();
-            masterReady.await(); // Esperar que master esté listo
-            
-            // Medir tiempo de procesamiento real
-            long processingStartTime = System.nanoTime();
-            
-            // Esperar a que el master termine (con timeout)
-            boolean completed = masterDone.await(30, TimeUnit.MINUTES); // 30 minutos máximo
-            
-            long processingEndTime = System.nanoTime();
-            long endTime = System.nanoTime();
+            if (!master.setTransport(transport)) {
+                throw new IllegalArgumentException("Transporte desconocido: " + transport);
+            }
             
-            if (!completed) {
+            // El trabajo empieza apenas se registran los workers y termina con su último parcial
+            CompletableFuture<JobResult> job = master.submit(new JobSpec(CSV_FILE, datagramSize, batchSize, workerCount));
+            if (!isInProcess()) {
+                startWorkers(workerCount);
+            }
+            JobResult jobResult;
+            try {
+                jobResult = job.get(30, TimeUnit.MINUTES); // 30 minutos máximo
+            } catch (TimeoutException e) {
+                job.cancel(true); // Cierra el Master
                 result.setSuccess(false);
                 result.setErrorMessage("Experimento timeout después de 30 minutos");
-                master.shutdown(); // Forzar cierre
                 return result;
+            } finally {
+                stopWorkers();
             }
             
-            // Calcular métricas reales
+            long endTime = System.nanoTime();
+            
+            // Métricas medidas por el Master: del inicio del reparto al último parcial
             result.setTotalTimeMs((endTime - startTime) / 1_000_000);
-            result.setProcessingTimeMs((processingEndTime - processingStartTime) / 1_000_000);
-            result.setThroughputDatagramsPerSecond((double) datagramSize / (result.getProcessingTimeMs() / 1000.0));
+            result.setProcessingTimeMs(jobResult.getProcessingMillis());
+            result.setThroughputDatagramsPerSecond(jobResult.getThroughput());
             result.setDatagramsPerWorker((double) datagramSize / workerCount);
             result.setBatchesNeeded((double) datagramSize / batchSize);
             result.setSuccess(true);
             
-            System.out.println("  ✓ Procesamiento REAL completado en " + (result.getProcessingTimeMs()/1000) + " segundos");
+            System.out.println("  ✓ Procesamiento REAL completado: " + jobResult);
             
+        } catch (ExecutionException e) {
+            result.setSuccess(false);
+            result.setErrorMessage("Master error: " + e.getCause().getMessage());
+            System.err.println("  ✗ Error en experimento real: " + e.getCause().getMessage());
         } catch (Exception e) {
             result.setSuccess(false);
             result.setErrorMessage(e.getMessage());
             System.err.println("  ✗ Error en experimento real: " + e.getMessage());
         }
         
-        // NO detener workers aquí - son persistentes entre experimentos
-        
         return result;
     }
     
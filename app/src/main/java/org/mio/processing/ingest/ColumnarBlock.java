@@ -0,0 +1,122 @@
+package org.mio.processing.ingest;
+
+import org.mio.model.Datagram;
+import org.mio.model.DatagramBatch;
+
+/**
+ * Bloque de datagramas en memoria con una columna primitiva por campo.
+ * Es la unidad de lectura y escritura del formato columnar (.mioc).
+ */
+public class ColumnarBlock {
+
+    private static final int DEFAULT_ORIENTATION = 1;
+
+    private final int capacity;
+    private final int[] busIds;
+    private final int[] lineIds;
+    private final int[] latitudesE7;
+    private final int[] longitudesE7;
+    private final long[] epochSeconds;
+    private final int[] stopIds;
+    private final int[] odometers;
+    private final int[] tripIds;
+    private final byte[] eventTypes;
+    private int size;
+
+    public ColumnarBlock(int capacity) {
+        this.capacity = capacity;
+        this.busIds = new int[capacity];
+        this.lineIds = new int[capacity];
+        this.latitudesE7 = new int[capacity];
+        this.longitudesE7 = new int[capacity];
+        this.epochSeconds = new long[capacity];
+        this.stopIds = new int[capacity];
+        this.odometers = new int[capacity];
+        this.tripIds = new int[capacity];
+        this.eventTypes = new byte[capacity];
+    }
+
+    public void add(int busId, int lineId, int latitudeE7, int longitudeE7, long epochSecond,
+                    byte eventType, int stopId, int odometer, int tripId) {
+        busIds[size] = busId;
+        lineIds[size] = lineId;
+        latitudesE7[size] = latitudeE7;
+        longitudesE7[size] = longitudeE7;
+        epochSeconds[size] = epochSecond;
+        eventTypes[size] = eventType;
+        stopIds[size] = stopId;
+        odometers[size] = odometer;
+        tripIds[size] = tripId;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return capacity; }
+
+    // Acceso directo a las columnas para lectura y escritura en bloque
+    int[] busIds() { return busIds; }
+    int[] lineIds() { return lineIds; }
+    int[] latitudesE7() { return latitudesE7; }
+    int[] longitudesE7() { return longitudesE7; }
+    long[] epochSeconds() { return epochSeconds; }
+    int[] stopIds() { return stopIds; }
+    int[] odometers() { return odometers; }
+    int[] tripIds() { return tripIds; }
+    byte[] eventTypes() { return eventTypes; }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    public int getBusId(int i) { return busIds[i]; }
+    public int getLineId(int i) { return lineIds[i]; }
+    public int getLatitudeE7(int i) { return latitudesE7[i]; }
+    public int getLongitudeE7(int i) { return longitudesE7[i]; }
+    public long getEpochSecond(int i) { return epochSeconds[i]; }
+    public byte getEventType(int i) { return eventTypes[i]; }
+    public int getStopId(int i) { return stopIds[i]; }
+    public int getOdometer(int i) { return odometers[i]; }
+    public int getTripId(int i) { return tripIds[i]; }
+
+    /**
+     * Copia filas desde 'from' al lote hasta llenarlo o agotar el bloque.
+     * Retorna la cantidad de filas copiadas.
+     */
+    public int appendTo(DatagramBatch batch, int from) {
+        return appendTo(batch, from, null);
+    }
+
+    /**
+     * Igual que appendTo(batch, from), pero solo agrega las filas que pasan el filtro.
+     * Retorna la cantidad de filas recorridas del bloque (agregadas o descartadas).
+     */
+    public int appendTo(DatagramBatch batch, int from, DatagramFilter filter) {
+        int i = from;
+        while (i < size && !batch.isFull()) {
+            if (filter == null || filter.matches(eventTypes[i], latitudesE7[i], longitudesE7[i],
+                    lineIds[i], epochSeconds[i], busIds[i])) {
+                batch.add(busIds[i], latitudesE7[i], longitudesE7[i], epochSeconds[i], lineIds[i], eventTypes[i]);
+            }
+            i++;
+        }
+        return i - from;
+    }
+
+    /**
+     * Construye el Datagram de la fila i (coordenadas de vuelta a grados decimales).
+     */
+    public Datagram toDatagram(int i) {
+        return new Datagram(Integer.toString(busIds[i]),
+            latitudesE7[i] / DatagramCsvParser.COORDINATE_SCALE,
+            longitudesE7[i] / DatagramCsvParser.COORDINATE_SCALE,
+            epochSeconds[i], lineIds[i], DEFAULT_ORIENTATION, Integer.toString(eventTypes[i]));
+    }
+}
@@ -0,0 +1,91 @@
+package org.mio.processing.ingest;
+
+import org.mio.util.MappedCsvScanner;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * Conversión única de datagrams4history.csv al formato columnar .mioc.
+ * Los experimentos repetidos leen luego el archivo binario sin parsear texto.
+ */
+public class ColumnarConverter {
+
+    private static final long PROGRESS_INTERVAL = 1_000_000;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Uso: java -jar sitm-converter-1.0.jar <archivo_csv> <archivo_salida.mioc> [filas_por_bloque]");
+            System.out.println("Ejemplo: java -jar sitm-converter-1.0.jar datagrams4history.csv datagrams4history.mioc");
+            return;
+        }
+
+        String csvFile = args[0].replace("\"", "").trim();
+        String outFile = args[1].replace("\"", "").trim();
+        int blockRows = args.length > 2 ? Integer.parseInt(args[2].trim()) : ColumnarDatagramWriter.DEFAULT_BLOCK_ROWS;
+
+        System.out.println("=== CONVERSIÓN A FORMATO COLUMNAR ===");
+        System.out.println("Entrada: " + csvFile + " (" + new File(csvFile).length() + " bytes)");
+        System.out.println("Salida: " + outFile);
+        System.out.println("Filas por bloque: " + blockRows);
+
+        try {
+            long startTime = System.currentTimeMillis();
+            long[] counts = convert(Path.of(csvFile), Path.of(outFile), blockRows);
+            double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+            System.out.println("✓ Conversión completada en " + String.format("%.1f", seconds) + " segundos");
+            System.out.println("Filas escritas: " + counts[0] + " | Filas con error: " + counts[1]);
+            System.out.println("Tamaño final: " + new File(outFile).length() + " bytes");
+        } catch (Exception e) {
+            System.err.println("Error convirtiendo archivo: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Convierte el CSV y retorna {filas escritas, filas con error}.
+     */
+    public static long[] convert(Path csvFile, Path outFile, int blockRows) throws Exception {
+        long written = 0;
+        long errors = 0;
+
+        try (MappedCsvScanner scanner = new MappedCsvScanner(csvFile);
+             ColumnarDatagramWriter writer = new ColumnarDatagramWriter(outFile, blockRows)) {
+            scanner.skipLine();
+
+            while (scanner.nextRow()) {
+                try {
+                    if (scanner.fieldCount() < DatagramCsvParser.FIELD_COUNT) {
+                        throw new IllegalArgumentException("Fila incompleta");
+                    }
+                    int eventType = scanner.parseInt(DatagramCsvParser.COL_EVENT_TYPE);
+                    if (eventType < Byte.MIN_VALUE || eventType > Byte.MAX_VALUE) {
+                        throw new IllegalArgumentException("eventType fuera de rango: " + eventType);
+                    }
+                    writer.append(
+                        scanner.parseInt(DatagramCsvParser.COL_BUS_ID),
+                        scanner.parseInt(DatagramCsvParser.COL_LINE_ID),
+                        (int) Math.round(scanner.parseDouble(DatagramCsvParser.COL_LATITUDE)),
+                        (int) Math.round(scanner.parseDouble(DatagramCsvParser.COL_LONGITUDE)),
+                        scanner.parseEpochSecond(DatagramCsvParser.COL_DATAGRAM_DATE),
+                        (byte) eventType,
+                        scanner.parseInt(DatagramCsvParser.COL_STOP_ID),
+                        scanner.parseInt(DatagramCsvParser.COL_ODOMETER),
+                        scanner.parseInt(DatagramCsvParser.COL_TRIP_ID));
+                    written++;
+                } catch (RuntimeException e) {
+                    errors++;
+                    if (errors == 1) {
+                        System.err.println("Fila inválida omitida: " + e.getMessage());
+                    }
+                }
+
+                if ((written + errors) % PROGRESS_INTERVAL == 0) {
+                    System.out.println("Convertidas " + written + " filas...");
+                }
+            }
+        }
+        return new long[] {written, errors};
+    }
+}
@@ -0,0 +1,106 @@
+package org.mio.processing.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lee archivos .mioc generados por ColumnarDatagramWriter.
+ * Cada bloque se copia en bloque a las columnas primitivas: no hay parseo de texto.
+ */
+public class ColumnarDatagramReader implements Closeable {
+
+    private final FileChannel channel;
+    private final int blockRows;
+    private final long totalRows;
+    private final int blockCount;
+    private final ByteBuffer buffer;
+    private final ByteBuffer countBuffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private int blocksRead;
+
+    public ColumnarDatagramReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(ColumnarDatagramWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header);
+        header.flip();
+        if (header.getInt() != ColumnarDatagramWriter.MAGIC) {
+            channel.close();
+            throw new IOException("No es un archivo columnar de datagramas: " + path);
+        }
+        int version = header.getInt();
+        if (version != ColumnarDatagramWriter.VERSION) {
+            channel.close();
+            throw new IOException("Versión de formato columnar no soportada: " + version);
+        }
+        this.blockRows = header.getInt();
+        this.totalRows = header.getLong();
+        this.blockCount = header.getInt();
+        this.buffer = ByteBuffer.allocateDirect(blockRows * ColumnarDatagramWriter.BYTES_PER_ROW)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static boolean isColumnarFile(String path) {
+        return path.toLowerCase().endsWith(ColumnarDatagramWriter.EXTENSION);
+    }
+
+    public int getBlockRows() { return blockRows; }
+    public long getTotalRows() { return totalRows; }
+    public int getBlockCount() { return blockCount; }
+
+    /**
+     * Carga el siguiente bloque en 'block' (de capacidad >= getBlockRows()).
+     * Retorna false cuando no quedan bloques.
+     */
+    public boolean nextBlock(ColumnarBlock block) throws IOException {
+        if (blocksRead >= blockCount) {
+            return false;
+        }
+        countBuffer.clear();
+        readFully(countBuffer);
+        int n = countBuffer.getInt(0);
+        if (n <= 0 || n > blockRows || n > block.capacity()) {
+            throw new IOException("Bloque columnar corrupto: " + n + " filas");
+        }
+
+        buffer.clear();
+        buffer.limit(n * ColumnarDatagramWriter.BYTES_PER_ROW);
+        readFully(buffer);
+        buffer.flip();
+
+        getInts(block.busIds(), n);
+        getInts(block.lineIds(), n);
+        getInts(block.latitudesE7(), n);
+        getInts(block.longitudesE7(), n);
+        buffer.asLongBuffer().get(block.epochSeconds(), 0, n);
+        buffer.position(buffer.position() + n * Long.BYTES);
+        getInts(block.stopIds(), n);
+        getInts(block.odometers(), n);
+        getInts(block.tripIds(), n);
+        buffer.get(block.eventTypes(), 0, n);
+        block.setSize(n);
+        blocksRead++;
+        return true;
+    }
+
+    private void getInts(int[] column, int n) {
+        buffer.asIntBuffer().get(column, 0, n);
+        buffer.position(buffer.position() + n * Integer.BYTES);
+    }
+
+    private void readFully(ByteBuffer target) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target) < 0) {
+                throw new IOException("Fin de archivo inesperado en el archivo columnar");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,101 @@
+package org.mio.processing.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Escribe datagramas en el formato binario columnar (.mioc).
+ *
+ * Estructura: header de 32 bytes (magic, versión, filas por bloque, total de filas,
+ * cantidad de bloques) seguido de bloques. Cada bloque empieza con su cantidad de filas
+ * y guarda una columna contigua por campo: busId, lineId, latitud y longitud en
+ * punto fijo (grados * 10^7), segundos epoch, stopId, odómetro, tripId y eventType.
+ */
+public class ColumnarDatagramWriter implements Closeable {
+
+    static final int MAGIC = 0x4D494F43; // "MIOC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int BYTES_PER_ROW = 7 * Integer.BYTES + Long.BYTES + Byte.BYTES;
+    public static final int DEFAULT_BLOCK_ROWS = 65536;
+    public static final String EXTENSION = ".mioc";
+
+    private final FileChannel channel;
+    private final ColumnarBlock block;
+    private final ByteBuffer buffer;
+    private long totalRows;
+    private int blockCount;
+
+    public ColumnarDatagramWriter(Path path, int blockRows) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        this.block = new ColumnarBlock(blockRows);
+        this.buffer = ByteBuffer.allocateDirect(Integer.BYTES + blockRows * BYTES_PER_ROW).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(HEADER_SIZE);
+    }
+
+    public void append(int busId, int lineId, int latitudeE7, int longitudeE7, long epochSecond,
+                       byte eventType, int stopId, int odometer, int tripId) throws IOException {
+        block.add(busId, lineId, latitudeE7, longitudeE7, epochSecond, eventType, stopId, odometer, tripId);
+        if (block.isFull()) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        int n = block.size();
+        if (n == 0) {
+            return;
+        }
+        buffer.clear();
+        buffer.putInt(n);
+        putInts(block.busIds(), n);
+        putInts(block.lineIds(), n);
+        putInts(block.latitudesE7(), n);
+        putInts(block.longitudesE7(), n);
+        buffer.asLongBuffer().put(block.epochSeconds(), 0, n);
+        buffer.position(buffer.position() + n * Long.BYTES);
+        putInts(block.stopIds(), n);
+        putInts(block.odometers(), n);
+        putInts(block.tripIds(), n);
+        buffer.put(block.eventTypes(), 0, n);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        totalRows += n;
+        blockCount++;
+        block.clear();
+    }
+
+    private void putInts(int[] column, int n) {
+        buffer.asIntBuffer().put(column, 0, n);
+        buffer.position(buffer.position() + n * Integer.BYTES);
+    }
+
+    public long getTotalRows() {
+        return totalRows + block.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(block.capacity());
+            header.putLong(totalRows);
+            header.putInt(blockCount);
+            header.rewind();
+            channel.write(header, 0);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package org.mio.processing.ingest;
+
+import org.mio.util.ByteRangeSplitter;
+import org.mio.util.MappedCsvScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Índice de bloques (zone map) del CSV de datagramas, guardado junto al archivo como
+ * "<csv>.idx". Por cada bloque de filas registra su rango de bytes, la cantidad de filas
+ * y los valores mínimo/máximo de datagramDate, lineId y busId, para que el Master lea
+ * solo los bloques que pueden contener filas de una selección.
+ *
+ * Formato (little-endian): header de 36 bytes (magic, versión, filas por bloque,
+ * tamaño y fecha de modificación del CSV, cantidad de bloques, reservado) seguido de
+ * una entrada de 52 bytes por bloque. Si el CSV cambia, el índice se reconstruye.
+ */
+public class DatagramBlockIndex {
+
+    static final int MAGIC = 0x4D494F58; // "MIOX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 36;
+    static final int ENTRY_SIZE = 52;
+    public static final int DEFAULT_BLOCK_ROWS = 65536;
+    public static final String EXTENSION = ".idx";
+
+    /**
+     * Bloque de filas [offset, offset + length) con sus rangos de valores.
+     * Las filas que no se pudieron decodificar no afectan los rangos.
+     */
+    public static final class Block {
+        private final long offset;
+        private final long length;
+        private final int rows;
+        private final long minEpoch;
+        private final long maxEpoch;
+        private final int minLineId;
+        private final int maxLineId;
+        private final int minBusId;
+        private final int maxBusId;
+
+        Block(long offset, long length, int rows, long minEpoch, long maxEpoch,
+              int minLineId, int maxLineId, int minBusId, int maxBusId) {
+            this.offset = offset;
+            this.length = length;
+            this.rows = rows;
+            this.minEpoch = minEpoch;
+            this.maxEpoch = maxEpoch;
+            this.minLineId = minLineId;
+            this.maxLineId = maxLineId;
+            this.minBusId = minBusId;
+            this.maxBusId = maxBusId;
+        }
+
+        public long getOffset() { return offset; }
+        public long getLength() { return length; }
+        public int getRows() { return rows; }
+        public long getMinEpoch() { return minEpoch; }
+        public long getMaxEpoch() { return maxEpoch; }
+        public int getMinLineId() { return minLineId; }
+        public int getMaxLineId() { return maxLineId; }
+        public int getMinBusId() { return minBusId; }
+        public int getMaxBusId() { return maxBusId; }
+
+        /**
+         * Indica si ninguna fila del bloque se pudo decodificar (rangos vacíos).
+         */
+        public boolean isEmpty() { return minEpoch > maxEpoch; }
+    }
+
+    private final int blockRows;
+    private final List<Block> blocks;
+
+    private DatagramBlockIndex(int blockRows, List<Block> blocks) {
+        this.blockRows = blockRows;
+        this.blocks = Collections.unmodifiableList(blocks);
+    }
+
+    public int getBlockRows() { return blockRows; }
+    public List<Block> getBlocks() { return blocks; }
+
+    public static Path indexPathFor(Path csvFile) {
+        return csvFile.resolveSibling(csvFile.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Carga el índice del CSV si existe y está vigente; si no, lo construye y lo guarda.
+     */
+    public static DatagramBlockIndex loadOrBuild(Path csvFile) throws IOException {
+        Path indexFile = indexPathFor(csvFile);
+        if (Files.exists(indexFile)) {
+            DatagramBlockIndex index = load(indexFile, csvFile);
+            if (index != null) {
+                return index;
+            }
+            System.out.println("Índice desactualizado, reconstruyendo: " + indexFile);
+        }
+        DatagramBlockIndex index = build(csvFile, DEFAULT_BLOCK_ROWS);
+        index.write(indexFile, csvFile);
+        return index;
+    }
+
+    /**
+     * Recorre el CSV una vez y calcula los rangos de cada bloque de 'blockRows' filas.
+     */
+    public static DatagramBlockIndex build(Path csvFile, int blockRows) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+
+        try (MappedCsvScanner scanner = new MappedCsvScanner(csvFile)) {
+            scanner.skipLine();
+            long blockStart = scanner.position();
+            int rows = 0;
+            long minEpoch = Long.MAX_VALUE, maxEpoch = Long.MIN_VALUE;
+            int minLine = Integer.MAX_VALUE, maxLine = Integer.MIN_VALUE;
+            int minBus = Integer.MAX_VALUE, maxBus = Integer.MIN_VALUE;
+
+            while (scanner.nextLine()) {
+                rows++;
+                if (decoder.decode(scanner.buffer(), scanner.rowStart(), scanner.rowEnd())) {
+                    long epoch = decoder.getEpochSecond();
+                    int line = decoder.getLineId();
+                    int bus = decoder.getBusId();
+                    if (epoch < minEpoch) minEpoch = epoch;
+                    if (epoch > maxEpoch) maxEpoch = epoch;
+                    if (line < minLine) minLine = line;
+                    if (line > maxLine) maxLine = line;
+                    if (bus < minBus) minBus = bus;
+                    if (bus > maxBus) maxBus = bus;
+                }
+
+                if (rows == blockRows) {
+                    long end = scanner.position();
+                    blocks.add(new Block(blockStart, end - blockStart, rows, minEpoch, maxEpoch,
+                        minLine, maxLine, minBus, maxBus));
+                    blockStart = end;
+                    rows = 0;
+                    minEpoch = Long.MAX_VALUE; maxEpoch = Long.MIN_VALUE;
+                    minLine = Integer.MAX_VALUE; maxLine = Integer.MIN_VALUE;
+                    minBus = Integer.MAX_VALUE; maxBus = Integer.MIN_VALUE;
+                }
+            }
+            if (rows > 0) {
+                blocks.add(new Block(blockStart, scanner.position() - blockStart, rows, minEpoch, maxEpoch,
+                    minLine, maxLine, minBus, maxBus));
+            }
+        }
+        return new DatagramBlockIndex(blockRows, blocks);
+    }
+
+    public void write(Path indexFile, Path csvFile) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + blocks.size() * ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(blockRows);
+        buffer.putLong(Files.size(csvFile));
+        buffer.putLong(Files.getLastModifiedTime(csvFile).toMillis());
+        buffer.putInt(blocks.size());
+        buffer.putInt(0); // reservado
+        for (Block block : blocks) {
+            buffer.putLong(block.offset);
+            buffer.putLong(block.length);
+            buffer.putInt(block.rows);
+            buffer.putLong(block.minEpoch);
+            buffer.putLong(block.maxEpoch);
+            buffer.putInt(block.minLineId);
+            buffer.putInt(block.maxLineId);
+            buffer.putInt(block.minBusId);
+            buffer.putInt(block.maxBusId);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Lee el índice; retorna null si no corresponde al CSV actual (tamaño o fecha distintos).
+     */
+    public static DatagramBlockIndex load(Path indexFile, Path csvFile) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        int blockRows = buffer.getInt();
+        long sourceSize = buffer.getLong();
+        long sourceModified = buffer.getLong();
+        int blockCount = buffer.getInt();
+        buffer.getInt(); // reservado
+        if (sourceSize != Files.size(csvFile)
+            || sourceModified != Files.getLastModifiedTime(csvFile).toMillis()
+            || buffer.remaining() != (long) blockCount * ENTRY_SIZE) {
+            return null;
+        }
+
+        List<Block> blocks = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            blocks.add(new Block(buffer.getLong(), buffer.getLong(), buffer.getInt(), buffer.getLong(),
+                buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()));
+        }
+        return new DatagramBlockIndex(blockRows, blocks);
+    }
+
+    /**
+     * Rangos de bytes de los bloques que pueden contener filas del filtro.
+     * Los bloques contiguos se unen en un solo rango.
+     */
+    public List<ByteRangeSplitter.Range> select(DatagramFilter filter) {
+        List<ByteRangeSplitter.Range> ranges = new ArrayList<>();
+        long start = -1;
+        long end = -1;
+        for (Block block : blocks) {
+            if (!filter.mayMatch(block)) {
+                continue;
+            }
+            if (block.offset == end) {
+                end += block.length;
+            } else {
+                if (start >= 0) {
+                    ranges.add(new ByteRangeSplitter.Range(start, end));
+                }
+                start = block.offset;
+                end = block.offset + block.length;
+            }
+        }
+        if (start >= 0) {
+            ranges.add(new ByteRangeSplitter.Range(start, end));
+        }
+        return ranges;
+    }
+
+    public long totalBytes() {
+        long total = 0;
+        for (Block block : blocks) {
+            total += block.length;
+        }
+        return total;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Uso: DatagramBlockIndex <archivo_csv> [filas_por_bloque]");
+            System.out.println("Ejemplo: DatagramBlockIndex datagrams4history.csv 65536");
+            return;
+        }
+
+        Path csvFile = Path.of(args[0].replace("\"", "").trim());
+        int blockRows = args.length > 1 ? Integer.parseInt(args[1].trim()) : DEFAULT_BLOCK_ROWS;
+        Path indexFile = indexPathFor(csvFile);
+
+        System.out.println("=== ÍNDICE DE BLOQUES ===");
+        System.out.println("Entrada: " + csvFile + " (" + new File(csvFile.toString()).length() + " bytes)");
+        System.out.println("Filas por bloque: " + blockRows);
+
+        try {
+            long startTime = System.currentTimeMillis();
+            DatagramBlockIndex index = build(csvFile, blockRows);
+            index.write(indexFile, csvFile);
+            double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+            System.out.println("✓ Índice construido en " + String.format("%.1f", seconds) + " segundos");
+            System.out.println("Bloques: " + index.getBlocks().size() + " | Archivo: " + indexFile);
+        } catch (Exception e) {
+            System.err.println("Error construyendo índice: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
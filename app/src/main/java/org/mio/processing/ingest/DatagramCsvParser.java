@@ -0,0 +1,60 @@
+package org.mio.processing.ingest;
+
+import org.mio.model.Datagram;
+import org.mio.util.EpochTime;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Columnas de datagrams4history.csv y conversión original de filas a Datagram
+ * (split + replace/trim). La ingesta del Master usa DatagramRowDecoder; esta ruta
+ * se conserva como referencia para IngestionBenchmark.
+ * Formato real: eventType, registerdate, stopId, odometer, latitude, longitude,
+ * taskId, lineId, tripId, unknown1, datagramDate, busId
+ */
+public final class DatagramCsvParser {
+
+    public static final int COL_EVENT_TYPE = 0;
+    public static final int COL_STOP_ID = 2;
+    public static final int COL_ODOMETER = 3;
+    public static final int COL_LATITUDE = 4;
+    public static final int COL_LONGITUDE = 5;
+    public static final int COL_LINE_ID = 7;
+    public static final int COL_TRIP_ID = 8;
+    public static final int COL_DATAGRAM_DATE = 10;
+    public static final int COL_BUS_ID = 11;
+    public static final int FIELD_COUNT = 12;
+
+    // Las coordenadas vienen escaladas (ej. -764873683), dividir por 10000000
+    public static final double COORDINATE_SCALE = 10000000.0;
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int DEFAULT_ORIENTATION = 1;
+
+    private DatagramCsvParser() {
+    }
+
+    /**
+     * Fila ya separada con split(",").
+     */
+    public static Datagram fromFields(String[] row) {
+        if (row.length < FIELD_COUNT) {
+            throw new IllegalArgumentException("Fila con " + row.length + " columnas, se esperaban " + FIELD_COUNT);
+        }
+
+        String eventType = row[COL_EVENT_TYPE].replace("\"", "").trim();
+        String latitudeStr = row[COL_LATITUDE].replace("\"", "").trim();
+        String longitudeStr = row[COL_LONGITUDE].replace("\"", "").trim();
+        String lineIdStr = row[COL_LINE_ID].replace("\"", "").trim();
+        String datagramDate = row[COL_DATAGRAM_DATE].replace("\"", "").trim();
+        String busId = row[COL_BUS_ID].replace("\"", "").trim();
+
+        double latitude = Double.parseDouble(latitudeStr) / COORDINATE_SCALE;
+        double longitude = Double.parseDouble(longitudeStr) / COORDINATE_SCALE;
+        long timestamp = EpochTime.fromLocalDateTime(LocalDateTime.parse(datagramDate, FORMATTER));
+        int lineId = Integer.parseInt(lineIdStr);
+
+        return new Datagram(busId, latitude, longitude, timestamp, lineId, DEFAULT_ORIENTATION, eventType);
+    }
+}
@@ -0,0 +1,261 @@
+package org.mio.processing.ingest;
+
+import org.mio.util.EpochTime;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Predicados de selección de datagramas que el Master aplica durante la ingesta:
+ * eventType, conjunto de líneas, conjunto de buses, rango de datagramDate y caja
+ * geográfica. Se evalúan por bloque contra el índice (mayMatch) y por columna mientras
+ * DatagramRowDecoder recorre la fila, para descartarla antes de parsear el resto.
+ */
+public class DatagramFilter {
+
+    private long fromEpoch = Long.MIN_VALUE;
+    private long toEpoch = Long.MAX_VALUE;
+    private int[] lineIds; // ordenado; null = todas las líneas
+    private int[] busIds; // ordenado; null = todos los buses
+    private int[] eventTypes; // ordenado; null = todos los tipos
+    private boolean hasBox;
+    private int minLatitudeE7;
+    private int maxLatitudeE7;
+    private int minLongitudeE7;
+    private int maxLongitudeE7;
+
+    /**
+     * Rango inclusivo [fromEpoch, toEpoch] en segundos epoch.
+     */
+    public void setTimeRange(long fromEpoch, long toEpoch) {
+        this.fromEpoch = fromEpoch;
+        this.toEpoch = toEpoch;
+    }
+
+    public void setFrom(long fromEpoch) {
+        this.fromEpoch = fromEpoch;
+    }
+
+    public void setTo(long toEpoch) {
+        this.toEpoch = toEpoch;
+    }
+
+    public void setLines(int... lineIds) {
+        this.lineIds = sorted(lineIds);
+    }
+
+    public void setBuses(int... busIds) {
+        this.busIds = sorted(busIds);
+    }
+
+    public void setEventTypes(int... eventTypes) {
+        this.eventTypes = sorted(eventTypes);
+    }
+
+    /**
+     * Caja geográfica inclusiva en grados decimales.
+     */
+    public void setBoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        this.hasBox = true;
+        this.minLatitudeE7 = (int) Math.round(Math.min(minLatitude, maxLatitude) * DatagramCsvParser.COORDINATE_SCALE);
+        this.maxLatitudeE7 = (int) Math.round(Math.max(minLatitude, maxLatitude) * DatagramCsvParser.COORDINATE_SCALE);
+        this.minLongitudeE7 = (int) Math.round(Math.min(minLongitude, maxLongitude) * DatagramCsvParser.COORDINATE_SCALE);
+        this.maxLongitudeE7 = (int) Math.round(Math.max(minLongitude, maxLongitude) * DatagramCsvParser.COORDINATE_SCALE);
+    }
+
+    private static int[] sorted(int[] values) {
+        if (values == null) {
+            return null;
+        }
+        int[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /**
+     * Indica si el filtro no restringe nada (toda fila pasa).
+     */
+    public boolean isEmpty() {
+        return !hasBlockPredicates() && eventTypes == null && !hasBox;
+    }
+
+    /**
+     * Indica si hay predicados que el índice de bloques puede usar (fechas, líneas, buses).
+     */
+    public boolean hasBlockPredicates() {
+        return fromEpoch != Long.MIN_VALUE || toEpoch != Long.MAX_VALUE || lineIds != null || busIds != null;
+    }
+
+    /**
+     * Indica si el bloque puede contener alguna fila que pase el filtro.
+     */
+    public boolean mayMatch(DatagramBlockIndex.Block block) {
+        if (block.isEmpty()) {
+            return false;
+        }
+        if (block.getMaxEpoch() < fromEpoch || block.getMinEpoch() > toEpoch) {
+            return false;
+        }
+        return intersects(lineIds, block.getMinLineId(), block.getMaxLineId())
+            && intersects(busIds, block.getMinBusId(), block.getMaxBusId());
+    }
+
+    /**
+     * Indica si algún valor del conjunto cae en [min, max] (conjunto null = todos).
+     */
+    private static boolean intersects(int[] values, int min, int max) {
+        if (values == null) {
+            return true;
+        }
+        int i = Arrays.binarySearch(values, min);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < values.length && values[i] <= max;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        return values == null || Arrays.binarySearch(values, value) >= 0;
+    }
+
+    // Predicados por columna, en el orden en que el decodificador las encuentra
+    public boolean acceptsEventType(int eventType) { return contains(eventTypes, eventType); }
+    public boolean acceptsLatitude(int latitudeE7) { return !hasBox || (latitudeE7 >= minLatitudeE7 && latitudeE7 <= maxLatitudeE7); }
+    public boolean acceptsLongitude(int longitudeE7) { return !hasBox || (longitudeE7 >= minLongitudeE7 && longitudeE7 <= maxLongitudeE7); }
+    public boolean acceptsLine(int lineId) { return contains(lineIds, lineId); }
+    public boolean acceptsTime(long epochSecond) { return epochSecond >= fromEpoch && epochSecond <= toEpoch; }
+    public boolean acceptsBus(int busId) { return contains(busIds, busId); }
+
+    /**
+     * Evalúa todos los predicados sobre una fila ya decodificada (ej. bloques columnares).
+     */
+    public boolean matches(int eventType, int latitudeE7, int longitudeE7, int lineId, long epochSecond, int busId) {
+        return acceptsEventType(eventType) && acceptsLatitude(latitudeE7) && acceptsLongitude(longitudeE7)
+            && acceptsLine(lineId) && acceptsTime(epochSecond) && acceptsBus(busId);
+    }
+
+    /**
+     * Bytes que ocupa el filtro codificado con writeTo.
+     */
+    public int encodedSize() {
+        return 2 * Long.BYTES + idsSize(lineIds) + idsSize(busIds) + idsSize(eventTypes) + Byte.BYTES + 4 * Integer.BYTES;
+    }
+
+    /**
+     * Codifica el filtro en binario para enviarlo a los workers (ingesta raw).
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putLong(fromEpoch);
+        buffer.putLong(toEpoch);
+        putIds(buffer, lineIds);
+        putIds(buffer, busIds);
+        putIds(buffer, eventTypes);
+        buffer.put(hasBox ? (byte) 1 : (byte) 0);
+        buffer.putInt(minLatitudeE7).putInt(maxLatitudeE7).putInt(minLongitudeE7).putInt(maxLongitudeE7);
+    }
+
+    public static DatagramFilter readFrom(ByteBuffer buffer) {
+        DatagramFilter filter = new DatagramFilter();
+        filter.fromEpoch = buffer.getLong();
+        filter.toEpoch = buffer.getLong();
+        filter.lineIds = getIds(buffer);
+        filter.busIds = getIds(buffer);
+        filter.eventTypes = getIds(buffer);
+        filter.hasBox = buffer.get() != 0;
+        filter.minLatitudeE7 = buffer.getInt();
+        filter.maxLatitudeE7 = buffer.getInt();
+        filter.minLongitudeE7 = buffer.getInt();
+        filter.maxLongitudeE7 = buffer.getInt();
+        return filter;
+    }
+
+    // Conjunto de ids: cantidad (-1 = todos) y los valores ordenados
+    private static int idsSize(int[] ids) {
+        return Integer.BYTES * (1 + (ids == null ? 0 : ids.length));
+    }
+
+    private static void putIds(ByteBuffer buffer, int[] ids) {
+        buffer.putInt(ids == null ? -1 : ids.length);
+        if (ids != null) {
+            for (int id : ids) {
+                buffer.putInt(id);
+            }
+        }
+    }
+
+    private static int[] getIds(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0) {
+            return null;
+        }
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = buffer.getInt();
+        }
+        return ids;
+    }
+
+    /**
+     * Parsea una fecha "yyyy-MM-dd", "yyyy-MM-dd HH:mm:ss" o "yyyy-MM-ddTHH:mm:ss".
+     * Con solo la fecha, 'endOfDay' elige el último segundo del día en lugar del primero.
+     */
+    public static long parseBound(String text, boolean endOfDay) {
+        String value = text.trim();
+        long epoch;
+        if (value.length() == 10) {
+            epoch = EpochTime.parse(value + " 00:00:00");
+            if (epoch != EpochTime.INVALID && endOfDay) {
+                epoch += 86399;
+            }
+        } else {
+            epoch = EpochTime.parse(value);
+        }
+        if (epoch == EpochTime.INVALID) {
+            throw new IllegalArgumentException("Fecha inválida: " + text);
+        }
+        return epoch;
+    }
+
+    /**
+     * Parsea una lista de enteros separados por coma (ej. "131,2842").
+     */
+    public static int[] parseIds(String text) {
+        String[] parts = text.split(",");
+        int[] ids = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ids[i] = Integer.parseInt(parts[i].trim());
+        }
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder();
+        if (eventTypes != null) {
+            append(description, "eventType " + Arrays.toString(eventTypes));
+        }
+        if (fromEpoch != Long.MIN_VALUE || toEpoch != Long.MAX_VALUE) {
+            append(description, "fechas [" + (fromEpoch == Long.MIN_VALUE ? "-" : EpochTime.format(fromEpoch)) + ", "
+                + (toEpoch == Long.MAX_VALUE ? "-" : EpochTime.format(toEpoch)) + "]");
+        }
+        if (lineIds != null) {
+            append(description, "líneas " + Arrays.toString(lineIds));
+        }
+        if (busIds != null) {
+            append(description, "buses " + Arrays.toString(busIds));
+        }
+        if (hasBox) {
+            append(description, String.format("caja [%.6f, %.6f] - [%.6f, %.6f]",
+                minLatitudeE7 / DatagramCsvParser.COORDINATE_SCALE, minLongitudeE7 / DatagramCsvParser.COORDINATE_SCALE,
+                maxLatitudeE7 / DatagramCsvParser.COORDINATE_SCALE, maxLongitudeE7 / DatagramCsvParser.COORDINATE_SCALE));
+        }
+        return description.length() == 0 ? "sin filtro" : description.toString();
+    }
+
+    private static void append(StringBuilder description, String part) {
+        if (description.length() > 0) {
+            description.append(", ");
+        }
+        description.append(part);
+    }
+}
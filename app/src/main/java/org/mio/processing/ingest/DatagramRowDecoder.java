@@ -0,0 +1,291 @@
+package org.mio.processing.ingest;
+
+import org.mio.model.Datagram;
+import org.mio.model.DatagramBatch;
+import org.mio.util.EpochTime;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodificador de filas de datagramas sin asignaciones por campo.
+ *
+ * Recorre la fila una sola vez y parsea en sitio solo las columnas que usa el sistema
+ * (eventType, latitude, longitude, lineId, datagramDate, busId); el resto se salta.
+ * Soporta enteros entre comillas, coordenadas escaladas y el timestamp fijo
+ * "yyyy-MM-dd HH:mm:ss", que se convierte a segundos epoch. La fila se copia a un
+ * arreglo de bytes reutilizable y se recorre con acceso directo al arreglo. Una instancia
+ * se reutiliza para todas las filas de un hilo: no es thread-safe.
+ *
+ * Con un DatagramFilter, cada columna se evalúa apenas se parsea y la fila se descarta
+ * sin recorrer las columnas siguientes (isFiltered() distingue el descarte de un error).
+ */
+public final class DatagramRowDecoder {
+
+    private static final int DEFAULT_ORIENTATION = 1;
+    private static final String[] SMALL_INTS = new String[128];
+
+    static {
+        for (int i = 0; i < SMALL_INTS.length; i++) {
+            SMALL_INTS[i] = Integer.toString(i);
+        }
+    }
+
+    private byte[] row = new byte[256];
+    private int eventType;
+    private int latitudeE7;
+    private int longitudeE7;
+    private int lineId;
+    private long epochSecond;
+    private int busId;
+    private int errorColumn;
+    private DatagramFilter filter;
+    private boolean filtered;
+    private long filteredRows;
+    private long filteredBytes;
+
+    public void setFilter(DatagramFilter filter) {
+        this.filter = filter == null || filter.isEmpty() ? null : filter;
+    }
+
+    /**
+     * Decodifica una línea de texto (ruta Scanner). Retorna false si la fila es inválida.
+     */
+    public boolean decode(CharSequence line) {
+        int length = line.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            row[i] = (byte) line.charAt(i);
+        }
+        return decodeRow(length);
+    }
+
+    /**
+     * Decodifica la fila [start, end) de un buffer de bytes (ruta mapeada).
+     */
+    public boolean decode(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        ensureCapacity(length);
+        buffer.get(start, row, 0, length);
+        return decodeRow(length);
+    }
+
+    /**
+     * Decodifica la fila [start, end) de un arreglo de bytes (ruta por bloques).
+     */
+    public boolean decode(byte[] data, int start, int end) {
+        int length = end - start;
+        ensureCapacity(length);
+        System.arraycopy(data, start, row, 0, length);
+        return decodeRow(length);
+    }
+
+    private void ensureCapacity(int length) {
+        if (row.length < length) {
+            row = new byte[Math.max(length, row.length * 2)];
+        }
+    }
+
+    private boolean decodeRow(int end) {
+        byte[] row = this.row;
+        int column = 0;
+        int fieldStart = 0;
+        errorColumn = -1;
+        filtered = false;
+
+        for (int i = 0; i <= end && column <= DatagramCsvParser.COL_BUS_ID; i++) {
+            if (i == end || row[i] == ',') {
+                if (!decodeColumn(column, row, fieldStart, i)) {
+                    if (filtered) {
+                        filteredRows++;
+                        filteredBytes += end;
+                    } else {
+                        errorColumn = column;
+                    }
+                    return false;
+                }
+                column++;
+                fieldStart = i + 1;
+            }
+        }
+
+        if (column <= DatagramCsvParser.COL_BUS_ID) {
+            errorColumn = column;
+            return false;
+        }
+        return true;
+    }
+
+    private boolean decodeColumn(int column, byte[] row, int start, int end) {
+        switch (column) {
+            case DatagramCsvParser.COL_EVENT_TYPE:
+            case DatagramCsvParser.COL_LATITUDE:
+            case DatagramCsvParser.COL_LONGITUDE:
+            case DatagramCsvParser.COL_LINE_ID:
+            case DatagramCsvParser.COL_DATAGRAM_DATE:
+            case DatagramCsvParser.COL_BUS_ID:
+                break;
+            default:
+                return true; // Columna descartada: ni se recorre
+        }
+
+        // Equivalente a replace("\"", "").trim() para comillas en los bordes
+        while (start < end && isBlankOrQuote(row[start])) start++;
+        while (end > start && isBlankOrQuote(row[end - 1])) end--;
+        if (start == end) {
+            return false;
+        }
+
+        boolean valid;
+        switch (column) {
+            case DatagramCsvParser.COL_EVENT_TYPE:
+                valid = (eventType = (int) parseScaled(row, start, end)) != Integer.MIN_VALUE;
+                break;
+            case DatagramCsvParser.COL_LATITUDE:
+                valid = (latitudeE7 = (int) parseScaled(row, start, end)) != Integer.MIN_VALUE;
+                break;
+            case DatagramCsvParser.COL_LONGITUDE:
+                valid = (longitudeE7 = (int) parseScaled(row, start, end)) != Integer.MIN_VALUE;
+                break;
+            case DatagramCsvParser.COL_LINE_ID:
+                valid = (lineId = (int) parseScaled(row, start, end)) != Integer.MIN_VALUE;
+                break;
+            case DatagramCsvParser.COL_BUS_ID:
+                valid = (busId = (int) parseScaled(row, start, end)) != Integer.MIN_VALUE;
+                break;
+            default:
+                valid = parseTimestamp(row, start, end);
+                break;
+        }
+        if (valid && filter != null && !accepts(column)) {
+            filtered = true;
+            return false;
+        }
+        return valid;
+    }
+
+    private boolean accepts(int column) {
+        switch (column) {
+            case DatagramCsvParser.COL_EVENT_TYPE:
+                return filter.acceptsEventType(eventType);
+            case DatagramCsvParser.COL_LATITUDE:
+                return filter.acceptsLatitude(latitudeE7);
+            case DatagramCsvParser.COL_LONGITUDE:
+                return filter.acceptsLongitude(longitudeE7);
+            case DatagramCsvParser.COL_LINE_ID:
+                return filter.acceptsLine(lineId);
+            case DatagramCsvParser.COL_BUS_ID:
+                return filter.acceptsBus(busId);
+            default:
+                return filter.acceptsTime(epochSecond);
+        }
+    }
+
+    private static boolean isBlankOrQuote(byte c) {
+        return c == '"' || c == ' ' || c == '\t';
+    }
+
+    /**
+     * Parsea un entero con signo; si trae parte decimal se redondea al entero más cercano.
+     * Retorna Integer.MIN_VALUE si el texto no es un número o no cabe en un int.
+     */
+    private static long parseScaled(byte[] row, int start, int end) {
+        boolean negative = false;
+        byte first = row[start];
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+        }
+        if (start == end) {
+            return Integer.MIN_VALUE;
+        }
+
+        long value = 0;
+        int i = start;
+        for (; i < end; i++) {
+            int digit = row[i] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                return Integer.MIN_VALUE;
+            }
+        }
+        if (i < end) {
+            // Solo se admite una parte decimal: se redondea con su primer dígito
+            if (row[i] != '.') {
+                return Integer.MIN_VALUE;
+            }
+            if (i + 1 < end) {
+                int digit = row[i + 1] - '0';
+                if (digit < 0 || digit > 9) {
+                    return Integer.MIN_VALUE;
+                }
+                if (digit >= 5) {
+                    value++;
+                }
+            }
+            for (int j = i + 1; j < end; j++) {
+                byte c = row[j];
+                if (c < '0' || c > '9') {
+                    return Integer.MIN_VALUE;
+                }
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    private boolean parseTimestamp(byte[] row, int start, int end) {
+        long parsed = EpochTime.parse(row, start, end - start);
+        if (parsed == EpochTime.INVALID) {
+            return false;
+        }
+        epochSecond = parsed;
+        return true;
+    }
+
+    public int getEventType() { return eventType; }
+    public int getLatitudeE7() { return latitudeE7; }
+    public int getLongitudeE7() { return longitudeE7; }
+    public int getLineId() { return lineId; }
+    public long getEpochSecond() { return epochSecond; }
+    public int getBusId() { return busId; }
+
+    /**
+     * Columna que hizo fallar la última decodificación (-1 si no hubo error).
+     */
+    public int getErrorColumn() { return errorColumn; }
+
+    /**
+     * Indica si la última fila se descartó por el filtro (no es un error).
+     */
+    public boolean isFiltered() { return filtered; }
+
+    // Acumulados de filas descartadas por el filtro y sus bytes de texto
+    public long getFilteredRows() { return filteredRows; }
+    public long getFilteredBytes() { return filteredBytes; }
+
+    /**
+     * Agrega la última fila decodificada al lote. Retorna false si lineId o eventType
+     * no caben en las columnas del lote.
+     */
+    public boolean appendTo(DatagramBatch batch) {
+        if (!DatagramBatch.fits(lineId, eventType)) {
+            errorColumn = DatagramBatch.fits(lineId, 0) ? DatagramCsvParser.COL_EVENT_TYPE : DatagramCsvParser.COL_LINE_ID;
+            return false;
+        }
+        batch.add(busId, latitudeE7, longitudeE7, epochSecond, lineId, eventType);
+        return true;
+    }
+
+    /**
+     * Construye el Datagram de la última fila decodificada.
+     */
+    public Datagram toDatagram() {
+        return new Datagram(Integer.toString(busId),
+            latitudeE7 / DatagramCsvParser.COORDINATE_SCALE,
+            longitudeE7 / DatagramCsvParser.COORDINATE_SCALE,
+            epochSecond, lineId, DEFAULT_ORIENTATION,
+            eventType >= 0 && eventType < SMALL_INTS.length ? SMALL_INTS[eventType] : Integer.toString(eventType));
+    }
+}
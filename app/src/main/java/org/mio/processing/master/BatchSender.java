@@ -0,0 +1,109 @@
+package org.mio.processing.master;
+
+import org.mio.model.DatagramBatch;
+import org.mio.processing.protocol.CheckpointMark;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Etapa de envío de un worker con socket bloqueante: un hilo propio toma sub-lotes
+ * (o bloques CSV en la ingesta raw) de una cola acotada y los escribe en el socket, para que la red se solape con la
+ * lectura y el parseo. Si el worker es lento la cola se llena y los productores se bloquean.
+ */
+class BatchSender implements WorkerSender, Runnable {
+
+    private static final Object END = new Object();
+
+    private final WorkerConnection worker;
+    private final BlockingQueue<Object> queue; // DatagramBatch, RawChunk o CheckpointMark
+    private final StageStats stats;
+    private final Thread thread;
+
+    BatchSender(WorkerConnection worker, int capacity, ConnectionThreads threads) {
+        this.worker = worker;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.stats = new StageStats("envío W" + worker.getWorkerId(), queue);
+        this.thread = threads.newThread(this, "sender-worker-" + worker.getWorkerId());
+    }
+
+    @Override
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void enqueue(DatagramBatch batch, StageStats producer) throws InterruptedException {
+        // Un rezagado puede no vaciar nunca su cola: sus lotes ya pasaron a otros
+        if (worker.getCredits().track(batch)) {
+            producer.put(queue, batch, this::isAbandoned);
+        }
+    }
+
+    @Override
+    public void enqueue(RawChunk chunk, StageStats producer) throws InterruptedException {
+        if (worker.getCredits().track(chunk)) {
+            producer.put(queue, chunk, this::isAbandoned);
+        }
+    }
+
+    @Override
+    public void enqueue(CheckpointMark mark, StageStats producer) throws InterruptedException {
+        producer.put(queue, mark, this::isAbandoned);
+    }
+
+    private boolean isAbandoned() {
+        return !worker.isActive() || worker.getCredits().isReassigned();
+    }
+
+    /**
+     * Espera a que se envíe todo lo encolado y termina el hilo.
+     */
+    @Override
+    public void finish() throws InterruptedException {
+        queue.put(END);
+        thread.join();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Object item = stats.take(queue);
+                if (item == END) {
+                    return;
+                }
+                if (item instanceof CheckpointMark) {
+                    worker.sendCheckpoint((CheckpointMark) item);
+                    continue;
+                }
+                // Bloqueo = espera de crédito del worker + escritura en el socket
+                long start = System.nanoTime();
+                if (worker.getCredits().acquire()) {
+                    if (item instanceof RawChunk) {
+                        RawChunk chunk = (RawChunk) item;
+                        worker.sendChunk(chunk);
+                        stats.addItems(chunk.getRows());
+                    } else {
+                        DatagramBatch batch = (DatagramBatch) item;
+                        worker.sendBatch(batch);
+                        stats.addItems(batch.size());
+                    }
+                }
+                stats.addStall(System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public StageStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public WorkerConnection getWorker() {
+        return worker;
+    }
+}
@@ -0,0 +1,282 @@
+package org.mio.processing.master;
+
+import org.mio.model.DatagramBatch;
+import org.mio.processing.config.MasterConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Reparto de datagramas por busId con hashing consistente: cada worker ocupa
+ * 'virtualNodes' puntos de un anillo de hashes y un bus va al worker del primer punto
+ * a partir del hash de su id. Todo el recorrido de un bus llega así al mismo worker,
+ * con su historial completo, y si un worker deja de procesar solo sus buses pasan
+ * al punto siguiente. Cada punto es una partición de buses: con 'load', un worker que
+ * se vacía roba particiones enteras al más atrasado y los buses de la partición pasan
+ * juntos, sin repartirse. Cuando un worker se une o se pierde durante la ejecución el
+ * anillo se rearma con los activos, y solo cambian de dueño las particiones de los
+ * puntos afectados. Puede usarse desde varios hilos de ingesta a la vez.
+ */
+class BusPartitioner {
+
+    private final List<WorkerSender> senders;
+    private final int virtualNodes;
+    private final AtomicLongArray rows = new AtomicLongArray(MasterConfig.MAX_WORKERS);
+    private final List<Set<Integer>> buses = new CopyOnWriteArrayList<>();
+    private final WorkerLoad load; // null: dueños fijos
+    private volatile Ring ring;
+    private int steals;
+
+    /**
+     * Anillo de una membresía: se reemplaza entero cuando cambian los workers activos.
+     */
+    private static final class Ring {
+        final int[] points; // Hashes, ordenados
+        final AtomicIntegerArray owners; // Índice en 'senders' del dueño actual de cada partición
+        final AtomicLongArray recentRows; // Filas por partición desde el último rebalanceo
+
+        Ring(int[] points, AtomicIntegerArray owners) {
+            this.points = points;
+            this.owners = owners;
+            this.recentRows = new AtomicLongArray(points.length);
+        }
+    }
+
+    BusPartitioner(List<WorkerSender> senders, int virtualNodes, WorkerLoad load) {
+        this.senders = senders;
+        this.load = load;
+        this.virtualNodes = Math.max(1, virtualNodes);
+        rebuild();
+    }
+
+    /**
+     * Rearma el anillo con los workers activos (todos si ninguno lo está).
+     */
+    synchronized void rebuild() {
+        List<Integer> members = new ArrayList<>();
+        for (int s = 0; s < senders.size(); s++) {
+            if (s == buses.size()) {
+                buses.add(ConcurrentHashMap.newKeySet());
+            }
+            if (senders.get(s).getWorker().isActive()) {
+                members.add(s);
+            }
+        }
+        if (members.isEmpty()) {
+            for (int s = 0; s < senders.size(); s++) {
+                members.add(s);
+            }
+        }
+        long[] hashes = new long[members.size() * virtualNodes];
+        for (int m = 0; m < members.size(); m++) {
+            int s = members.get(m);
+            // Puntos derivados del id del worker: no dependen del orden de conexión
+            int workerId = senders.get(s).getWorker().getWorkerId();
+            for (int v = 0; v < virtualNodes; v++) {
+                int hash = mix(workerId * 0x9E3779B9 + v);
+                hashes[m * virtualNodes + v] = ((long) hash << 32) | s;
+            }
+        }
+        Arrays.sort(hashes);
+        int[] points = new int[hashes.length];
+        AtomicIntegerArray owners = new AtomicIntegerArray(hashes.length);
+        for (int i = 0; i < hashes.length; i++) {
+            points[i] = (int) (hashes[i] >> 32);
+            owners.set(i, (int) hashes[i]);
+        }
+        ring = new Ring(points, owners);
+    }
+
+    /**
+     * Separa el lote en un sub-lote por worker, conservando el orden de las filas de
+     * cada bus, y los encola en los envíos. Las filas sin worker activo se descartan.
+     */
+    void dispatch(DatagramBatch batch, StageStats producer) throws InterruptedException {
+        int size = batch.size();
+        Ring current = ring;
+        if (size == 0 || current.points.length == 0) {
+            return;
+        }
+        // Después del anillo: todo dueño del anillo tiene lugar en 'active'
+        boolean[] active = new boolean[senders.size()];
+        for (int s = 0; s < active.length; s++) {
+            active[s] = senders.get(s).getWorker().isActive();
+        }
+        if (load != null && load.update()) {
+            rebalance(current, active);
+        }
+        int[] busIds = batch.busIds();
+        int[] target = new int[size];
+        int[] counts = new int[active.length];
+        int[] partitionCounts = new int[current.points.length];
+        int lastBus = 0;
+        int lastPartition = -1;
+        int lastOwner = -1;
+        for (int i = 0; i < size; i++) {
+            // Filas seguidas del mismo bus son frecuentes: evita repetir la búsqueda
+            if (lastPartition < 0 || busIds[i] != lastBus) {
+                lastBus = busIds[i];
+                lastPartition = partitionOf(current, lastBus, active);
+                lastOwner = lastPartition < 0 ? -1 : current.owners.get(lastPartition);
+                if (lastOwner >= 0) {
+                    buses.get(lastOwner).add(lastBus);
+                }
+            }
+            target[i] = lastOwner;
+            if (lastOwner >= 0) {
+                counts[lastOwner]++;
+                partitionCounts[lastPartition]++;
+            }
+        }
+        for (int p = 0; p < partitionCounts.length; p++) {
+            if (partitionCounts[p] > 0) {
+                current.recentRows.addAndGet(p, partitionCounts[p]);
+            }
+        }
+        DatagramBatch[] parts = new DatagramBatch[active.length];
+        for (int s = 0; s < parts.length; s++) {
+            if (counts[s] > 0) {
+                parts[s] = new DatagramBatch(counts[s]);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (target[i] >= 0) {
+                parts[target[i]].addRow(batch, i);
+            }
+        }
+        for (int s = 0; s < parts.length; s++) {
+            if (parts[s] != null) {
+                rows.addAndGet(s, parts[s].size());
+                if (load != null) {
+                    load.addDispatched(s, parts[s].size());
+                }
+                senders.get(s).enqueue(parts[s], producer);
+            }
+        }
+    }
+
+    /**
+     * Partición del bus: la de su punto, o la siguiente cuyo dueño siga activo (-1 si no queda ninguno).
+     */
+    private static int partitionOf(Ring ring, int busId, boolean[] active) {
+        int index = Arrays.binarySearch(ring.points, mix(busId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        for (int i = 0; i < ring.points.length; i++) {
+            int partition = (index + i) % ring.points.length;
+            if (active[ring.owners.get(partition)]) {
+                return partition;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Robo de trabajo: si el worker activo más atrasado tardaría bastante más en vaciar lo
+     * pendiente que el más desocupado, este toma una de sus particiones con tráfico
+     * reciente, de tamaño cercano a la mitad de la diferencia entre ambos. Lo ya encolado
+     * sigue en el worker original; el nuevo dueño arma el historial de esos buses desde
+     * su primera fila. Si un bus vuelve a un dueño anterior, el worker descarta la
+     * muestra contra su posición vieja (WorkerConfig.MAX_SAMPLE_GAP_SECONDS).
+     */
+    private synchronized void rebalance(Ring current, boolean[] active) {
+        int[] points = current.points;
+        AtomicIntegerArray owners = current.owners;
+        AtomicLongArray recentRows = current.recentRows;
+        int idle = -1;
+        int busy = -1;
+        for (int s = 0; s < active.length; s++) {
+            if (!active[s]) {
+                continue;
+            }
+            if (idle < 0 || load.getDrainMillis(s) < load.getDrainMillis(idle)) {
+                idle = s;
+            }
+            if (busy < 0 || load.getDrainMillis(s) > load.getDrainMillis(busy)) {
+                busy = s;
+            }
+        }
+        long[] recent = new long[points.length];
+        long busyRecent = 0;
+        long idleRecent = 0;
+        int busyPartitions = 0;
+        for (int p = 0; p < points.length; p++) {
+            recent[p] = recentRows.getAndSet(p, 0);
+            int owner = owners.get(p);
+            if (owner == busy && recent[p] > 0) {
+                busyRecent += recent[p];
+                busyPartitions++;
+            } else if (owner == idle) {
+                idleRecent += recent[p];
+            }
+        }
+        if (idle < 0 || idle == busy || busyPartitions < 2) {
+            return;
+        }
+        double busyDrain = load.getDrainMillis(busy);
+        double idleDrain = load.getDrainMillis(idle);
+        if (busyDrain < MasterConfig.STEAL_MIN_BACKLOG_MS || busyDrain < MasterConfig.STEAL_LOAD_FACTOR * idleDrain) {
+            return;
+        }
+        long goal = Math.max(1, (busyRecent - idleRecent) / 2);
+        int stolen = -1;
+        for (int p = 0; p < points.length; p++) {
+            if (owners.get(p) == busy && recent[p] > 0
+                && (stolen < 0 || Math.abs(recent[p] - goal) < Math.abs(recent[stolen] - goal))) {
+                stolen = p;
+            }
+        }
+        owners.set(stolen, idle);
+        steals++;
+        System.out.println(String.format("Master: Worker %d toma la partición %d de Worker %d (vaciado estimado %s vs %.0f ms, %d filas recientes)",
+            senders.get(idle).getWorker().getWorkerId(), stolen, senders.get(busy).getWorker().getWorkerId(),
+            Double.isInfinite(busyDrain) ? "sin ritmo" : String.format("%.0f ms", busyDrain), idleDrain, recent[stolen]));
+    }
+
+    /**
+     * Mezcla final de MurmurHash3: ids consecutivos quedan repartidos en todo el anillo.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    void printStats() {
+        System.out.println("\n=== PARTICIÓN POR BUS ===");
+        System.out.println("WORKER | PARTICIONES | BUSES  | FILAS       | % FILAS");
+        System.out.println("-------|-------------|--------|-------------|--------");
+        long total = 0;
+        long max = 0;
+        for (int s = 0; s < senders.size(); s++) {
+            total += rows.get(s);
+            max = Math.max(max, rows.get(s));
+        }
+        Ring current = ring;
+        int[] partitions = new int[senders.size()];
+        for (int p = 0; p < current.points.length; p++) {
+            partitions[current.owners.get(p)]++;
+        }
+        for (int s = 0; s < senders.size(); s++) {
+            System.out.println(String.format("W%-5d | %11d | %6d | %11d | %6.1f%%",
+                senders.get(s).getWorker().getWorkerId(), partitions[s], buses.get(s).size(), rows.get(s),
+                100.0 * rows.get(s) / Math.max(1, total)));
+        }
+        double mean = (double) total / Math.max(1, senders.size());
+        System.out.println(String.format("Desbalance: %.2f (filas del worker más cargado / promedio), %d nodos virtuales por worker",
+            mean > 0 ? max / mean : 0.0, virtualNodes));
+        if (load != null) {
+            System.out.println("Particiones movidas por robo de trabajo: " + steals);
+        }
+    }
+}
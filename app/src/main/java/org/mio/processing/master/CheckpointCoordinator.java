@@ -0,0 +1,374 @@
+package org.mio.processing.master;
+
+import org.mio.model.ArcSpeed;
+import org.mio.processing.protocol.BusTails;
+import org.mio.processing.protocol.CheckpointMark;
+import org.mio.processing.protocol.FrameReader;
+import org.mio.processing.protocol.ResultDelta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checkpoints periódicos de la ingesta por etapas y su reanudación. Cada
+ * CHECKPOINT_INTERVAL_MS el hilo de ingesta, después de repartir un lote, encola una
+ * marca en el envío de cada worker activo, detrás de los lotes anteriores. Cada worker
+ * la devuelve después del parcial con las muestras de esos lotes, con las colas de sus
+ * buses. Con todas las confirmaciones, el checkpoint es la posición en el archivo y los
+ * datagramas repartidos antes de la marca, más las muestras y colas anteriores a ella.
+ * Un hilo escritor lo guarda con escritura atómica (archivo temporal y move), fuera del
+ * camino de ingesta. Hay una marca en curso a la vez; si se pierde o se atrasa un worker
+ * mientras tanto, sus lotes se reenvían detrás de las marcas y el checkpoint se abandona.
+ *
+ * Formato (big-endian, como las tramas): magic, versión, tamaño y fecha de modificación
+ * del CSV, id, posición, datagramas y filtro, seguidos de los arcos (ResultDelta) y las
+ * colas de buses (BusTails).
+ */
+class CheckpointCoordinator {
+
+    static final int MAGIC = 0x4D494F43; // "MIOC"
+    static final int VERSION = 1;
+
+    private final Path file;
+    private final Path csvFile;
+    private final String filter;
+    private final long intervalNanos;
+    private final MasterNodeService master;
+    private final ExecutorService writer;
+    // Último checkpoint guardado: solo el hilo escritor
+    private final Map<String, ArcSpeed> saved = new HashMap<>();
+    private final BusTails savedTails = new BusTails();
+    // Desde el último checkpoint completo: lo anterior a la marca en curso y lo posterior
+    private Map<String, ArcSpeed> beforeMark = new HashMap<>();
+    private BusTails beforeMarkTails = new BusTails();
+    private Map<String, ArcSpeed> afterMark = new HashMap<>();
+    private BusTails afterMarkTails = new BusTails();
+    private Pending pending;
+    private long nextId = 1;
+    private int generation; // Cambia con cada worker perdido o rezagado
+    private long lastMark = System.nanoTime(); // Solo el hilo de ingesta
+    // Datos del checkpoint desde el que se reanuda (null si se empieza de cero)
+    private ResultDelta resumedResults;
+    private BusTails resumedTails;
+    private long resumedId;
+    private long resumedOffset;
+    private long resumedDatagrams;
+    // Costo
+    private int completed;
+    private int abandoned;
+    private long markNanos; // Hilo de ingesta encolando marcas
+    private long markWaitNanos; // Parte de markNanos esperando lugar en colas llenas (contrapresión)
+    private long snapshots;
+    private long snapshotNanos;
+    private long maxSnapshotNanos;
+    private long writeNanos;
+    private long maxWriteNanos;
+    private long lastBytes;
+
+    /**
+     * Marca en curso: workers que deben confirmarla y los que ya lo hicieron.
+     */
+    private static final class Pending {
+        final long id;
+        final long offset;
+        final long datagrams;
+        final int generation;
+        final Set<WorkerChannel> participants = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<WorkerChannel> confirmed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Pending(long id, long offset, long datagrams, int generation) {
+            this.id = id;
+            this.offset = offset;
+            this.datagrams = datagrams;
+            this.generation = generation;
+        }
+    }
+
+    CheckpointCoordinator(Path file, Path csvFile, String filter, long intervalMillis, MasterNodeService master) {
+        this.file = file;
+        this.csvFile = csvFile;
+        this.filter = filter;
+        this.intervalNanos = intervalMillis * 1_000_000L;
+        this.master = master;
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Carga el checkpoint del archivo si existe y corresponde al mismo CSV y filtro.
+     * Retorna true si el trabajo se reanuda desde él.
+     */
+    boolean load() throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            System.err.println("Master: " + file + " no es un checkpoint válido, se empieza de cero");
+            return false;
+        }
+        long csvSize = buffer.getLong();
+        long csvModified = buffer.getLong();
+        long id = buffer.getLong();
+        long offset = buffer.getLong();
+        long datagrams = buffer.getLong();
+        String savedFilter = FrameReader.readString(buffer);
+        if (csvSize != Files.size(csvFile) || csvModified != Files.getLastModifiedTime(csvFile).toMillis()
+            || !savedFilter.equals(filter)) {
+            System.err.println("Master: El checkpoint " + file + " es de otro CSV o de otro filtro, se empieza de cero");
+            return false;
+        }
+        resumedResults = ResultDelta.decode(buffer);
+        resumedTails = BusTails.readFrom(buffer);
+        resumedId = id;
+        resumedOffset = offset;
+        resumedDatagrams = datagrams;
+        nextId = id + 1;
+        for (ResultDelta.Entry entry : resumedResults.getEntries()) {
+            master.mergeEntry(saved, entry);
+        }
+        savedTails.merge(resumedTails);
+        System.out.println(String.format("Master: Reanudando desde el checkpoint %d: posición %d, %d datagramas, %d arcos, %d buses",
+            id, offset, datagrams, saved.size(), resumedTails.size()));
+        return true;
+    }
+
+    ResultDelta getResumedResults() { return resumedResults; }
+    BusTails getResumedTails() { return resumedTails; }
+    long getResumedId() { return resumedId; }
+    long getResumedOffset() { return resumedOffset; }
+    long getResumedDatagrams() { return resumedDatagrams; }
+
+    /**
+     * Después de repartir un lote (hilo de ingesta): si pasó el intervalo y no hay marca en
+     * curso ni reenvíos pendientes, encola una marca a cada worker activo. 'offset' es la
+     * línea que sigue al lote y 'datagrams' los repartidos hasta él.
+     */
+    void batchDispatched(long offset, long datagrams, List<WorkerSender> senders, AtomicInteger pendingReplays,
+                         StageStats producer) throws InterruptedException {
+        long start = System.nanoTime();
+        if (offset < 0 || start - lastMark < intervalNanos) {
+            return;
+        }
+        int currentGeneration;
+        synchronized (this) {
+            if (pending != null) {
+                return;
+            }
+            currentGeneration = generation;
+        }
+        // Lotes de un worker perdido que todavía se están reenviando quedarían detrás de la marca
+        if (pendingReplays.get() > 0) {
+            return;
+        }
+        List<WorkerSender> targets = new ArrayList<>();
+        Pending mark;
+        synchronized (this) {
+            mark = new Pending(nextId++, offset, datagrams, currentGeneration);
+            for (WorkerSender sender : senders) {
+                if (sender.getWorker().isActive()) {
+                    targets.add(sender);
+                    mark.participants.add(sender.getWorker());
+                }
+            }
+            if (targets.isEmpty()) {
+                return;
+            }
+            pending = mark;
+        }
+        lastMark = start;
+        // Con colas llenas la marca espera como lo haría el lote siguiente; se mide aparte
+        double stallMs = producer.getStallMs();
+        for (WorkerSender sender : targets) {
+            sender.enqueue(new CheckpointMark(mark.id, 0, new BusTails()), producer);
+        }
+        synchronized (this) {
+            markNanos += System.nanoTime() - start;
+            markWaitNanos += (long) ((producer.getStallMs() - stallMs) * 1_000_000);
+        }
+    }
+
+    /**
+     * Parcial aceptado de un worker: cuenta para la marca en curso si el worker todavía
+     * no la confirmó (y la recibió); si no, para la siguiente.
+     */
+    synchronized void resultsAccepted(WorkerChannel worker, ResultDelta delta) {
+        Map<String, ArcSpeed> target = isAfterMark(worker) ? afterMark : beforeMark;
+        for (ResultDelta.Entry entry : delta.getEntries()) {
+            master.mergeEntry(target, entry);
+        }
+    }
+
+    /**
+     * Confirmación de una marca: sus muestras ya llegaron en el parcial anterior.
+     */
+    synchronized void confirmed(WorkerChannel worker, CheckpointMark mark) {
+        (isAfterMark(worker) ? afterMarkTails : beforeMarkTails).merge(mark.getTails());
+        if (pending == null || mark.getId() != pending.id || !pending.participants.contains(worker)
+            || !pending.confirmed.add(worker)) {
+            return; // Marca abandonada o del trabajo reanudado
+        }
+        snapshots++;
+        snapshotNanos += mark.getSnapshotNanos();
+        maxSnapshotNanos = Math.max(maxSnapshotNanos, mark.getSnapshotNanos());
+        if (pending.confirmed.size() < pending.participants.size()) {
+            return;
+        }
+        if (pending.generation != generation) {
+            abandon("un worker se perdió antes de la marca");
+            return;
+        }
+        Pending done = pending;
+        Map<String, ArcSpeed> results = beforeMark;
+        BusTails tails = beforeMarkTails;
+        beforeMark = afterMark;
+        beforeMarkTails = afterMarkTails;
+        afterMark = new HashMap<>();
+        afterMarkTails = new BusTails();
+        pending = null;
+        writer.execute(() -> save(done, results, tails));
+    }
+
+    /**
+     * Un worker se perdió o se declaró rezagado: sus lotes se reenvían detrás de las
+     * marcas ya encoladas, así que la marca en curso no es consistente.
+     */
+    synchronized void workerLost(WorkerChannel worker) {
+        generation++;
+        if (pending != null) {
+            abandon("se perdió o se atrasó Worker " + worker.getWorkerId());
+        }
+    }
+
+    private boolean isAfterMark(WorkerChannel worker) {
+        return pending != null && (!pending.participants.contains(worker) || pending.confirmed.contains(worker));
+    }
+
+    private void abandon(String reason) {
+        System.out.println("Master: Checkpoint " + pending.id + " abandonado: " + reason);
+        for (ArcSpeed speed : afterMark.values()) {
+            ArcSpeed target = beforeMark.putIfAbsent(keyOf(speed), speed);
+            if (target != null) {
+                addSamples(target, speed);
+            }
+        }
+        beforeMarkTails.merge(afterMarkTails);
+        afterMark = new HashMap<>();
+        afterMarkTails = new BusTails();
+        pending = null;
+        abandoned++;
+    }
+
+    /**
+     * Hilo escritor: suma el intervalo al último checkpoint y lo guarda de forma atómica.
+     */
+    private void save(Pending mark, Map<String, ArcSpeed> results, BusTails tails) {
+        long start = System.nanoTime();
+        for (ArcSpeed speed : results.values()) {
+            ArcSpeed target = saved.putIfAbsent(keyOf(speed), speed);
+            if (target != null) {
+                addSamples(target, speed);
+            }
+        }
+        savedTails.merge(tails);
+        byte[] filterText = filter.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Integer.BYTES + 5 * Long.BYTES + Integer.BYTES + filterText.length
+            + ResultDelta.maxEncodedSize(saved.size()) + savedTails.encodedSize());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(Files.size(csvFile));
+            buffer.putLong(Files.getLastModifiedTime(csvFile).toMillis());
+            buffer.putLong(mark.id);
+            buffer.putLong(mark.offset);
+            buffer.putLong(mark.datagrams);
+            buffer.putInt(filterText.length).put(filterText);
+            ResultDelta.encode(false, mark.datagrams, saved.values(), buffer);
+            savedTails.writeTo(buffer);
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Master: No se pudo guardar el checkpoint " + mark.id + ": " + e.getMessage());
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        synchronized (this) {
+            completed++;
+            writeNanos += elapsed;
+            maxWriteNanos = Math.max(maxWriteNanos, elapsed);
+            lastBytes = buffer.limit();
+        }
+        System.out.println(String.format("Master: Checkpoint %d guardado: posición %d, %d datagramas, %d arcos, %d buses (%d KB, %.1f ms)",
+            mark.id, mark.offset, mark.datagrams, saved.size(), savedTails.size(), buffer.limit() / 1024, elapsed / 1e6));
+    }
+
+    /**
+     * Espera la última escritura y reporta el costo. Con el trabajo completo el
+     * checkpoint ya no sirve y se borra, para que una nueva ejecución empiece de cero.
+     */
+    void finish(boolean jobComplete) {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        printStats();
+        if (jobComplete) {
+            try {
+                if (Files.deleteIfExists(file)) {
+                    System.out.println("Master: Trabajo completo, checkpoint " + file + " eliminado");
+                }
+            } catch (IOException e) {
+                System.err.println("Master: No se pudo eliminar el checkpoint " + file + ": " + e.getMessage());
+            }
+        } else if (Files.exists(file)) {
+            System.out.println("Master: Trabajo incompleto, se conserva el checkpoint " + file);
+        }
+    }
+
+    private synchronized void printStats() {
+        System.out.println(String.format("Checkpoints: %d guardados, %d abandonados | marcas en la ingesta: %.1f ms en total (%.1f esperando colas llenas)"
+                + " | snapshot en workers: %.2f ms promedio (máx %.2f) | escritura: %.1f ms promedio (máx %.1f), último %d KB",
+            completed, abandoned, markNanos / 1e6, markWaitNanos / 1e6,
+            snapshots == 0 ? 0 : snapshotNanos / 1e6 / snapshots, maxSnapshotNanos / 1e6,
+            completed == 0 ? 0 : writeNanos / 1e6 / completed, maxWriteNanos / 1e6, lastBytes / 1024));
+    }
+
+    private static String keyOf(ArcSpeed speed) {
+        return speed.getArc().getFrom().getStopId() + "-" + speed.getArc().getTo().getStopId() + "-" + speed.getArc().getLineId();
+    }
+
+    private static void addSamples(ArcSpeed target, ArcSpeed source) {
+        target.merge(source.getSampleCount(), source.getTotalSpeed(), source.getMinSpeed(),
+            source.getMaxSpeed(), source.getLastUpdatedEpochSecond());
+    }
+}
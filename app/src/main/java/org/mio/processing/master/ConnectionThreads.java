@@ -0,0 +1,101 @@
+package org.mio.processing.master;
+
+import org.mio.processing.config.MasterConfig;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Hilos de las conexiones bloqueantes con los workers (aceptación, lectores y envíos):
+ * de plataforma (defecto) o virtuales. Los virtuales son de Java 21 y se crean por
+ * reflexión, así el proyecto sigue compilando con Java 17; en una JVM anterior se usan
+ * hilos de plataforma. En ambos modos cada conexión tiene su hilo: la cantidad de
+ * workers no queda limitada por el tamaño de un pool.
+ */
+final class ConnectionThreads {
+
+    private final String mode;
+    private final Method ofVirtual; // Thread.ofVirtual(), null con hilos de plataforma
+    private final Method name;
+    private final Method namePrefix;
+    private final Method unstarted;
+    private final Method factory;
+    private final Method perTaskExecutor;
+
+    private ConnectionThreads(String mode, Method[] virtual) {
+        this.mode = mode;
+        this.ofVirtual = virtual == null ? null : virtual[0];
+        this.name = virtual == null ? null : virtual[1];
+        this.namePrefix = virtual == null ? null : virtual[2];
+        this.unstarted = virtual == null ? null : virtual[3];
+        this.factory = virtual == null ? null : virtual[4];
+        this.perTaskExecutor = virtual == null ? null : virtual[5];
+    }
+
+    /**
+     * Hilos del modo pedido, o de plataforma si la JVM no tiene hilos virtuales.
+     */
+    static ConnectionThreads create(String mode) {
+        if (!MasterConfig.THREADS_VIRTUAL.equals(mode)) {
+            return new ConnectionThreads(MasterConfig.THREADS_PLATFORM, null);
+        }
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Method[] virtual = {
+                Thread.class.getMethod("ofVirtual"),
+                builder.getMethod("name", String.class),
+                builder.getMethod("name", String.class, long.class),
+                builder.getMethod("unstarted", Runnable.class),
+                builder.getMethod("factory"),
+                Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+            };
+            return new ConnectionThreads(MasterConfig.THREADS_VIRTUAL, virtual);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Master: Los hilos virtuales requieren Java 21 (esta JVM es "
+                + Runtime.version().feature() + "), se usan hilos de plataforma");
+            return new ConnectionThreads(MasterConfig.THREADS_PLATFORM, null);
+        }
+    }
+
+    boolean isVirtual() {
+        return ofVirtual != null;
+    }
+
+    String getMode() {
+        return mode;
+    }
+
+    /**
+     * Hilo sin iniciar; los de plataforma son daemon, como los virtuales.
+     */
+    Thread newThread(Runnable task, String threadName) {
+        if (!isVirtual()) {
+            Thread thread = new Thread(task, threadName);
+            thread.setDaemon(true);
+            return thread;
+        }
+        try {
+            Object builder = name.invoke(ofVirtual.invoke(null), threadName);
+            return (Thread) unstarted.invoke(builder, task);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo crear el hilo virtual " + threadName, e);
+        }
+    }
+
+    /**
+     * Un hilo por conexión de worker: virtual, o de plataforma en un pool sin límite fijo.
+     */
+    ExecutorService newConnectionExecutor() {
+        if (!isVirtual()) {
+            return Executors.newCachedThreadPool();
+        }
+        try {
+            Object builder = namePrefix.invoke(ofVirtual.invoke(null), "reader-worker-", 0L);
+            return (ExecutorService) perTaskExecutor.invoke(null, factory.invoke(builder));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo crear el ejecutor de hilos virtuales", e);
+        }
+    }
+}
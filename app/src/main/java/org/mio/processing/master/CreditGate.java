@@ -0,0 +1,428 @@
+package org.mio.processing.master;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Créditos de envío de un worker: cada crédito permite un lote en vuelo. El worker
+ * los otorga al conectarse y a medida que termina lotes, y el Master solo envía
+ * contra crédito disponible, así la memoria en tránsito queda acotada. Registra
+ * los bytes y filas en vuelo y el retraso (envío → lote procesado) del worker.
+ * También retiene cada lote entregado al envío hasta que un parcial de resultados
+ * posterior a su confirmación lo cubre, para reenviarlo si el worker se pierde o
+ * se atrasa. Cualquier trama del worker (crédito, latido o resultados) cuenta como
+ * señal de vida.
+ */
+class CreditGate {
+
+    // Lock y no synchronized: un hilo virtual que espera crédito no retiene su hilo portador
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition creditChanged = lock.newCondition();
+    private final ArrayDeque<long[]> inFlight = new ArrayDeque<>(); // {bytes, filas, nanos de envío}
+    private final ArrayDeque<Object> unacknowledged = new ArrayDeque<>(); // Encolados o en vuelo, en orden de envío
+    private final ArrayDeque<Long> trackedAt = new ArrayDeque<>(); // nanoTime de entrega de cada uno
+    private final List<Object> unreported = new ArrayList<>(); // Procesados, sin parcial de resultados aún
+    private Consumer<Object> orphans; // Destino de lo que llegue después de perder al worker
+    private volatile Runnable listener; // Avisa al Master de confirmaciones, reasignaciones y cierre
+    private int available;
+    private int unmatchedCompletions; // Confirmaciones que llegaron antes de registrar el envío
+    private boolean closed;
+    private long inFlightBytes;
+    private long inFlightRows;
+    private long maxInFlightBytes;
+    private long sentBatches;
+    private long processedRows;
+    private long lagNanosTotal;
+    private long lagSamples;
+    private long maxLagNanos;
+    private long waitNanos;
+    private long waitingSince;
+    private long lastHeard = System.nanoTime();
+    private long reportedBatches; // Lotes terminados según el último latido
+    private int busyMillis; // Tiempo en el lote actual según el último latido
+
+    /**
+     * Trama CREDIT del worker: nuevos créditos, lotes terminados y filas procesadas en total.
+     */
+    void grant(int credits, int completedBatches, long processedRows) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            lastHeard = now;
+            available += credits;
+            this.processedRows = Math.max(this.processedRows, processedRows);
+            for (int i = 0; i < completedBatches && !unacknowledged.isEmpty(); i++) {
+                unreported.add(unacknowledged.poll());
+                trackedAt.poll();
+            }
+            for (int i = 0; i < completedBatches; i++) {
+                long[] batch = inFlight.poll();
+                if (batch == null) {
+                    unmatchedCompletions += completedBatches - i;
+                    break;
+                }
+                complete(batch, now);
+            }
+            if (waitingSince != 0 && available > 0) {
+                waitNanos += now - waitingSince;
+                waitingSince = 0;
+            }
+            creditChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        changed();
+    }
+
+    private void complete(long[] batch, long now) {
+        inFlightBytes -= batch[0];
+        inFlightRows -= batch[1];
+        long lag = now - batch[2];
+        lagNanosTotal += lag;
+        lagSamples++;
+        maxLagNanos = Math.max(maxLagNanos, lag);
+    }
+
+    /**
+     * Espera un crédito (envío bloqueante). Retorna false si el worker se desconectó o
+     * sus lotes ya pasaron a otros.
+     */
+    boolean acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (available == 0 && !closed && orphans == null) {
+                long start = System.nanoTime();
+                while (available == 0 && !closed && orphans == null) {
+                    creditChanged.await();
+                }
+                waitNanos += System.nanoTime() - start;
+            }
+            if (closed || orphans != null) {
+                return false;
+            }
+            available--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Toma un crédito si hay, sin esperar (hilo del selector NIO).
+     */
+    boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (available > 0) {
+                available--;
+                return true;
+            }
+            if (waitingSince == 0) {
+                waitingSince = System.nanoTime();
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registra un lote enviado contra un crédito ya tomado.
+     */
+    void sent(long bytes, int rows) {
+        lock.lock();
+        try {
+            long[] batch = {bytes, rows, System.nanoTime()};
+            sentBatches++;
+            inFlightBytes += bytes;
+            inFlightRows += rows;
+            maxInFlightBytes = Math.max(maxInFlightBytes, inFlightBytes);
+            if (unmatchedCompletions > 0) {
+                unmatchedCompletions--;
+                complete(batch, batch[2]);
+            } else {
+                inFlight.add(batch);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retiene un lote (DatagramBatch o RawChunk) antes de encolarlo para el worker.
+     * Retorna false si el worker ya se perdió: el lote pasó a otro worker y no hay que encolarlo.
+     */
+    boolean track(Object item) {
+        Consumer<Object> handler;
+        lock.lock();
+        try {
+            if (orphans == null) {
+                unacknowledged.add(item);
+                trackedAt.add(System.nanoTime());
+                return true;
+            }
+            handler = orphans;
+        } finally {
+            lock.unlock();
+        }
+        handler.accept(item);
+        return false;
+    }
+
+    /**
+     * Trama HEARTBEAT: filas y lotes terminados en total, y tiempo en el lote actual.
+     */
+    void heartbeat(long processedRows, long completedBatches, int busyMillis) {
+        lock.lock();
+        try {
+            lastHeard = System.nanoTime();
+            this.processedRows = Math.max(this.processedRows, processedRows);
+            this.reportedBatches = completedBatches;
+            this.busyMillis = busyMillis;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Trama RESULTS: sus muestras incluyen todos los lotes confirmados antes, que ya no
+     * hace falta reenviar. Retorna false si los lotes del worker ya pasaron a otros: el
+     * parcial se descarta para no contar dos veces esas muestras.
+     */
+    boolean resultsReceived() {
+        lock.lock();
+        try {
+            lastHeard = System.nanoTime();
+            if (orphans != null) {
+                return false;
+            }
+            unreported.clear();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Worker perdido o rezagado: retorna, en orden, los lotes sin resultados entregados y desvía a
+     * 'handler' los que se encolen de aquí en adelante.
+     */
+    List<Object> reassign(Consumer<Object> handler) {
+        List<Object> pending;
+        lock.lock();
+        try {
+            orphans = handler;
+            pending = new ArrayList<>(unreported);
+            pending.addAll(unacknowledged);
+            unreported.clear();
+            unacknowledged.clear();
+            trackedAt.clear();
+            creditChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        changed();
+        return pending;
+    }
+
+    /**
+     * Lotes entregados al envío que el worker todavía no terminó.
+     */
+    int getPendingItems() {
+        lock.lock();
+        try {
+            return unacknowledged.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Indica si los lotes del worker ya se reasignaron (se perdió o se atrasó).
+     */
+    boolean isReassigned() {
+        lock.lock();
+        try {
+            return orphans != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            creditChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        changed();
+    }
+
+    /**
+     * Quien debe enterarse de que cambiaron los lotes pendientes del worker (el Master
+     * antes de STOP). Se le avisa fuera del lock.
+     */
+    void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    private void changed() {
+        Runnable current = listener;
+        if (current != null) {
+            current.run();
+        }
+    }
+
+    public int getAvailable() {
+        lock.lock();
+        try {
+            return available;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSentBatches() {
+        lock.lock();
+        try {
+            return sentBatches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getInFlightBytes() {
+        lock.lock();
+        try {
+            return inFlightBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getInFlightRows() {
+        lock.lock();
+        try {
+            return inFlightRows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlightBatches() {
+        lock.lock();
+        try {
+            return inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaxInFlightBytes() {
+        lock.lock();
+        try {
+            return maxInFlightBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getProcessedRows() {
+        lock.lock();
+        try {
+            return processedRows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getAverageLagMillis() {
+        lock.lock();
+        try {
+            return lagSamples == 0 ? 0 : lagNanosTotal / 1e6 / lagSamples;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getMaxLagMillis() {
+        lock.lock();
+        try {
+            return maxLagNanos / 1e6;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getWaitMillis() {
+        lock.lock();
+        try {
+            return waitNanos / 1e6;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getBusyMillis() {
+        lock.lock();
+        try {
+            return busyMillis;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getSilenceMillis() {
+        lock.lock();
+        try {
+            return (System.nanoTime() - lastHeard) / 1e6;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Antigüedad del lote sin terminar más viejo, contando su espera en la cola de envío
+     * (0 si el worker está al día).
+     */
+    public double getPendingAgeMillis() {
+        lock.lock();
+        try {
+            Long oldest = trackedAt.peek();
+            return oldest == null ? 0 : (System.nanoTime() - oldest) / 1e6;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lotes enviados que el worker no había terminado en su último latido (su cola).
+     */
+    public long getQueuedBatches() {
+        lock.lock();
+        try {
+            return Math.max(0, sentBatches - reportedBatches);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Antigüedad del lote en vuelo más viejo (0 si el worker está al día).
+     */
+    public double getCurrentLagMillis() {
+        lock.lock();
+        try {
+            long[] oldest = inFlight.peek();
+            return oldest == null ? 0 : (System.nanoTime() - oldest[2]) / 1e6;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
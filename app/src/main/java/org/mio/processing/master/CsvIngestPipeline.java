@@ -0,0 +1,493 @@
+package org.mio.processing.master;
+
+import org.mio.model.DatagramBatch;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.ingest.DatagramRowDecoder;
+import org.mio.util.ByteRangeSplitter;
+import org.mio.util.CompressedInput;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingesta del CSV en etapas: un hilo lector llena bloques de bytes alineados a línea
+ * y varios hilos parser los decodifican a DatagramBatch y los entregan al sink
+ * (las colas de envío por worker). Los bloques salen de un pool fijo, así que la
+ * memoria no crece: si los parsers se atrasan, el lector espera un bloque libre.
+ * Con varios parsers los lotes se entregan en el orden de los bloques, para que cada
+ * bus llegue a su worker en el orden del archivo.
+ * Con un CSV ".gz" el lector es la etapa de descompresión: infla directo en los bloques.
+ */
+class CsvIngestPipeline {
+
+    /**
+     * Destino de los lotes parseados. Puede bloquear (contrapresión de los envíos).
+     * 'endOffset' es la posición en el archivo de la línea que sigue a la última del
+     * lote (-1 en un archivo comprimido); con un solo parser crece lote a lote.
+     */
+    interface BatchSink {
+        void accept(DatagramBatch batch, int rows, int errorRows, long endOffset) throws InterruptedException;
+    }
+
+    /**
+     * Fuente de bytes del lector: -1 al final.
+     */
+    private interface Source {
+        int read(byte[] data, int offset, int length) throws IOException;
+    }
+
+    private static final class Chunk {
+        final byte[] data;
+        final List<ParsedBatch> parsed = new ArrayList<>(); // Lotes del bloque, en orden (varios parsers)
+        int length;
+        long offset; // Posición en el archivo de data[0]
+        long sequence; // Orden del bloque en la lectura
+
+        Chunk(int size) {
+            this.data = new byte[size];
+        }
+    }
+
+    private static final Chunk END = new Chunk(0);
+    private static final long POLL_MS = 100;
+
+    private final Path path;
+    private final boolean compressed;
+    private final int parserThreads;
+    private final int batchSize;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> filled;
+    private final StageStats readerStats;
+    private final StageStats parserStats;
+    private final AtomicLong filteredRows = new AtomicLong();
+    private final AtomicLong filteredBytes = new AtomicLong();
+    private volatile long sourceBytes; // bytes leídos de disco
+    private volatile long decodedBytes; // bytes de texto entregados a los parsers
+    private volatile IOException readError; // Falla del lector: run la relanza
+    private List<ByteRangeSplitter.Range> ranges; // null = todo el archivo
+    private long resumeOffset; // Inicio de línea desde el que se lee (trabajo reanudado), 0 = desde el header
+    private DatagramFilter filter; // null = sin predicados por fila
+    private long nextSequence; // Solo el hilo lector
+    private final Map<Long, Chunk> parsedChunks = new HashMap<>(); // Bloques parseados que esperan su turno
+    private int finishedParsers; // Guardado por parsedChunks
+
+    CsvIngestPipeline(Path path, int parserThreads, int batchSize, int chunkSize, int chunkCount) {
+        this.path = path;
+        this.compressed = CompressedInput.isGzip(path.toString());
+        this.parserThreads = parserThreads;
+        this.batchSize = batchSize;
+        this.free = new ArrayBlockingQueue<>(chunkCount);
+        // Espacio extra para las marcas de fin, que nunca deben bloquear al lector
+        this.filled = new ArrayBlockingQueue<>(chunkCount + parserThreads);
+        for (int i = 0; i < chunkCount; i++) {
+            free.add(new Chunk(chunkSize));
+        }
+        this.readerStats = new StageStats(compressed ? "descompresión" : "lectura", null);
+        this.parserStats = new StageStats("parseo", filled);
+    }
+
+    StageStats getReaderStats() { return readerStats; }
+    StageStats getParserStats() { return parserStats; }
+    long getFilteredRows() { return filteredRows.get(); }
+    long getFilteredBytes() { return filteredBytes.get(); }
+    long getSourceBytes() { return sourceBytes; }
+    long getDecodedBytes() { return decodedBytes; }
+    boolean isCompressed() { return compressed; }
+
+    /**
+     * Limita la lectura a estos rangos de bytes, alineados a inicio de línea (por ejemplo,
+     * los bloques seleccionados con el índice). No aplica a archivos comprimidos.
+     */
+    void setRanges(List<ByteRangeSplitter.Range> ranges) {
+        this.ranges = ranges;
+    }
+
+    /**
+     * Lee solo desde 'offset', un inicio de línea (el de un checkpoint), dentro de los
+     * rangos si los hay. No aplica a archivos comprimidos.
+     */
+    void resumeAt(long offset) {
+        this.resumeOffset = offset;
+    }
+
+    void setFilter(DatagramFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Ejecuta el pipeline hasta agotar el archivo o entregar 'target' datagramas válidos.
+     * Con varios parsers, el hilo que llama entrega los lotes en el orden de los bloques.
+     */
+    void run(long target, AtomicBoolean stop, BatchSink sink) throws Exception {
+        AtomicLong reserved = new AtomicLong();
+        boolean ordered = parserThreads > 1;
+        Thread reader = new Thread(() -> read(stop), "csv-reader");
+        reader.start();
+
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < parserThreads; i++) {
+                futures.add(parsers.submit(() -> {
+                    try {
+                        parse(target, reserved, stop, ordered ? null : sink);
+                    } catch (Exception | Error e) {
+                        stop.set(true); // El lector deja de llenar bloques y el reparto no espera el que falta
+                        throw e;
+                    } finally {
+                        parserFinished();
+                    }
+                    return null;
+                }));
+            }
+            if (ordered) {
+                dispatchInOrder(target, stop, sink);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            stop.set(true);
+            throw e;
+        } finally {
+            parsers.shutdownNow();
+            reader.interrupt();
+            reader.join();
+        }
+        if (readError != null) {
+            throw readError; // El archivo no se leyó completo: el trabajo no terminó
+        }
+    }
+
+    private void read(AtomicBoolean stop) {
+        try {
+            if (compressed) {
+                readCompressed(stop);
+            } else {
+                readPlain(stop);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            readError = e;
+            stop.set(true);
+            System.err.println("Master: Error leyendo archivo: " + e.getMessage());
+        } finally {
+            for (int i = 0; i < parserThreads; i++) {
+                filled.offer(END);
+            }
+        }
+    }
+
+    private void readPlain(AtomicBoolean stop) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<ByteRangeSplitter.Range> toRead = ranges;
+            if (toRead == null) {
+                // Todo el archivo, sin el header
+                long size = channel.size();
+                toRead = List.of(new ByteRangeSplitter.Range(ByteRangeSplitter.nextLineStart(channel, 0, size), size));
+            }
+            for (ByteRangeSplitter.Range range : toRead) {
+                if (range.getEnd() <= resumeOffset) {
+                    continue;
+                }
+                if (range.getStart() < resumeOffset) {
+                    range = new ByteRangeSplitter.Range(resumeOffset, range.getEnd());
+                }
+                if (!readRange(channel, range, stop)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Lectura secuencial del gzip: el Inflater escribe directo en los bloques del pool,
+     * así que la descompresión se solapa con el parseo sin copias extra.
+     */
+    private void readCompressed(AtomicBoolean stop) throws IOException, InterruptedException {
+        try (FileInputStream file = new FileInputStream(path.toFile());
+             InputStream in = CompressedInput.openGzip(file)) {
+            // Saltar header
+            int c;
+            while ((c = in.read()) >= 0 && c != '\n') {
+                // descartar
+            }
+            readChunks(in::read, -1, stop);
+            sourceBytes = file.getChannel().position();
+        }
+    }
+
+    /**
+     * Lee un rango con lecturas posicionales. Retorna false si se pidió detener.
+     */
+    private boolean readRange(FileChannel channel, ByteRangeSplitter.Range range, AtomicBoolean stop)
+            throws IOException, InterruptedException {
+        long[] position = {range.getStart()};
+        boolean completed = readChunks((data, offset, length) -> {
+            int capacity = (int) Math.min(length, range.getEnd() - position[0]);
+            if (capacity <= 0) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(data, offset, capacity), position[0]);
+            if (read > 0) {
+                position[0] += read;
+            }
+            return read;
+        }, range.getStart(), stop);
+        sourceBytes += position[0] - range.getStart();
+        return completed;
+    }
+
+    /**
+     * Llena bloques cortados en fin de línea hasta agotar la fuente, que empieza en la
+     * posición 'start' del archivo (-1 si no se conoce). Retorna false si se pidió detener.
+     */
+    private boolean readChunks(Source source, long start, AtomicBoolean stop) throws IOException, InterruptedException {
+        Chunk chunk = nextFree(stop);
+        int carry = 0;
+        if (chunk != null) {
+            chunk.offset = start;
+        }
+        while (chunk != null) {
+            int length = carry;
+            boolean last = false;
+            while (length < chunk.data.length && !last) {
+                int read = source.read(chunk.data, length, chunk.data.length - length);
+                if (read < 0) {
+                    last = true;
+                } else {
+                    length += read;
+                }
+            }
+            int end = last ? length : lastLineEnd(chunk.data, length);
+            if (end == 0 && !last) {
+                throw new IOException("Línea de más de " + chunk.data.length + " bytes");
+            }
+
+            // El resto de la última línea incompleta pasa al siguiente bloque
+            Chunk next = last ? null : nextFree(stop);
+            carry = length - end;
+            if (next != null) {
+                System.arraycopy(chunk.data, end, next.data, 0, carry);
+                next.offset = chunk.offset < 0 ? -1 : chunk.offset + end;
+            }
+            chunk.length = end;
+            chunk.sequence = nextSequence++;
+            decodedBytes += end;
+            readerStats.put(filled, chunk);
+            readerStats.addItems(1);
+            if (last) {
+                return true;
+            }
+            chunk = next;
+        }
+        return false;
+    }
+
+    /**
+     * Espera un bloque libre (contrapresión de los parsers) o null si se pidió detener.
+     */
+    private Chunk nextFree(AtomicBoolean stop) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            while (!stop.get()) {
+                Chunk chunk = free.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (chunk != null) {
+                    return chunk;
+                }
+            }
+            return null;
+        } finally {
+            readerStats.addStall(System.nanoTime() - start);
+        }
+    }
+
+    private static int lastLineEnd(byte[] data, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (data[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Parsea bloques hasta END. Con 'sink' null (varios parsers) cada bloque se corta
+     * en sus propios lotes, que se dejan en el bloque para dispatchInOrder.
+     */
+    private void parse(long target, AtomicLong reserved, AtomicBoolean stop, BatchSink sink) throws InterruptedException {
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+        decoder.setFilter(filter);
+        DatagramBatch batch = new DatagramBatch(batchSize);
+        int[] counters = new int[2]; // filas y errores del lote en curso
+        long consumed = -1; // Posición en el archivo de la próxima línea sin parsear
+
+        while (true) {
+            Chunk chunk = parserStats.take(filled);
+            if (chunk == END) {
+                break;
+            }
+            boolean handedOff = false;
+            try {
+                byte[] data = chunk.data;
+                int lineStart = 0;
+                while (lineStart < chunk.length && !stop.get()) {
+                    int lineEnd = lineStart;
+                    while (lineEnd < chunk.length && data[lineEnd] != '\n') {
+                        lineEnd++;
+                    }
+                    parseLine(decoder, data, lineStart, lineEnd, batch, counters);
+                    lineStart = lineEnd + 1;
+                    consumed = chunk.offset < 0 ? -1 : chunk.offset + Math.min(lineStart, chunk.length);
+                    if (batch.isFull()) {
+                        if (sink == null) {
+                            keep(chunk, batch, counters, consumed);
+                        } else {
+                            flush(batch, counters, consumed, target, reserved, stop, sink);
+                        }
+                    }
+                }
+                if (sink == null) {
+                    if (!batch.isEmpty()) {
+                        keep(chunk, batch, counters, consumed);
+                    }
+                    publish(chunk);
+                    handedOff = true;
+                }
+            } finally {
+                if (!handedOff) {
+                    free.put(chunk);
+                }
+            }
+        }
+        if (sink != null && !batch.isEmpty() && !stop.get()) {
+            flush(batch, counters, consumed, target, reserved, stop, sink);
+        }
+        filteredRows.addAndGet(decoder.getFilteredRows());
+        filteredBytes.addAndGet(decoder.getFilteredBytes());
+    }
+
+    private void parseLine(DatagramRowDecoder decoder, byte[] data, int start, int end,
+                           DatagramBatch batch, int[] counters) {
+        if (end > start && data[end - 1] == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return;
+        }
+        counters[0]++;
+        // Las filas descartadas por el filtro no llegan a armarse ni cuentan como error
+        if (!(decoder.decode(data, start, end) && decoder.appendTo(batch)) && !decoder.isFiltered() && ++counters[1] == 1) {
+            System.err.println("Master: Error parsing datagram: columna inválida " + decoder.getErrorColumn());
+        }
+    }
+
+    private static void keep(Chunk chunk, DatagramBatch batch, int[] counters, long endOffset) {
+        chunk.parsed.add(new ParsedBatch(batch.slice(0, batch.size()), counters[0], counters[1], endOffset));
+        batch.clear();
+        counters[0] = 0;
+        counters[1] = 0;
+    }
+
+    private void publish(Chunk chunk) {
+        synchronized (parsedChunks) {
+            parsedChunks.put(chunk.sequence, chunk);
+            parsedChunks.notifyAll();
+        }
+    }
+
+    private void parserFinished() {
+        synchronized (parsedChunks) {
+            finishedParsers++;
+            parsedChunks.notifyAll();
+        }
+    }
+
+    /**
+     * Etapa de reorden: entrega los lotes de cada bloque en el orden de lectura y recién
+     * entonces devuelve el bloque al pool, así los parsers no se adelantan más que el pool.
+     */
+    private void dispatchInOrder(long target, AtomicBoolean stop, BatchSink sink) throws InterruptedException {
+        long reserved = 0;
+        for (long sequence = 0; ; sequence++) {
+            Chunk chunk = nextParsed(sequence, stop);
+            if (chunk == null) {
+                return;
+            }
+            try {
+                for (ParsedBatch parsed : chunk.parsed) {
+                    if (stop.get()) {
+                        break;
+                    }
+                    if (reserved >= target) {
+                        stop.set(true);
+                        break;
+                    }
+                    if (reserved + parsed.batch.size() > target) {
+                        parsed.batch.truncate((int) (target - reserved));
+                    }
+                    reserved += parsed.batch.size();
+                    sink.accept(parsed.batch, parsed.rows, parsed.errorRows, parsed.endOffset);
+                }
+            } finally {
+                chunk.parsed.clear();
+                free.put(chunk);
+            }
+        }
+    }
+
+    /**
+     * Espera el bloque 'sequence' ya parseado, o null si los parsers terminaron sin él
+     * (fin del archivo) o se pidió detener.
+     */
+    private Chunk nextParsed(long sequence, AtomicBoolean stop) throws InterruptedException {
+        synchronized (parsedChunks) {
+            while (!stop.get()) {
+                Chunk chunk = parsedChunks.remove(sequence);
+                if (chunk != null) {
+                    return chunk;
+                }
+                if (finishedParsers == parserThreads) {
+                    return null;
+                }
+                parsedChunks.wait(POLL_MS); // POLL_MS: 'stop' no avisa
+            }
+            return null;
+        }
+    }
+
+    private void flush(DatagramBatch batch, int[] counters, long endOffset, long target, AtomicLong reserved,
+                       AtomicBoolean stop, BatchSink sink) throws InterruptedException {
+        // Reservar cupo del objetivo global antes de distribuir
+        long before = reserved.getAndAdd(batch.size());
+        if (before >= target) {
+            stop.set(true);
+        } else {
+            if (before + batch.size() > target) {
+                batch.truncate((int) (target - before));
+            }
+            sink.accept(batch, counters[0], counters[1], endOffset);
+        }
+        batch.clear();
+        counters[0] = 0;
+        counters[1] = 0;
+    }
+}
@@ -0,0 +1,61 @@
+package org.mio.processing.master;
+
+import org.mio.model.ArcSpeed;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Resultado de un trabajo: velocidades por arco agregadas y tiempos medidos en los
+ * eventos del protocolo (registro de los workers, STOP y último parcial), sin esperas fijas.
+ */
+public final class JobResult {
+
+    private final long datagrams;
+    private final int workers;
+    private final long workerWaitMillis; // Hasta que se registró el último worker esperado
+    private final long distributionMillis; // Del inicio del reparto hasta STOP
+    private final long resultsMillis; // De STOP al último parcial
+    private final Map<String, ArcSpeed> arcSpeeds;
+    private final int lostWorkers;
+    private final int stragglers;
+
+    JobResult(long datagrams, int workers, long workerWaitMillis, long distributionMillis, long resultsMillis,
+              Map<String, ArcSpeed> arcSpeeds, int lostWorkers, int stragglers) {
+        this.datagrams = datagrams;
+        this.workers = workers;
+        this.workerWaitMillis = workerWaitMillis;
+        this.distributionMillis = distributionMillis;
+        this.resultsMillis = resultsMillis;
+        this.arcSpeeds = Collections.unmodifiableMap(arcSpeeds);
+        this.lostWorkers = lostWorkers;
+        this.stragglers = stragglers;
+    }
+
+    public long getDatagrams() { return datagrams; }
+    public int getWorkers() { return workers; }
+    public long getWorkerWaitMillis() { return workerWaitMillis; }
+    public long getDistributionMillis() { return distributionMillis; }
+    public long getResultsMillis() { return resultsMillis; }
+    public Map<String, ArcSpeed> getArcSpeeds() { return arcSpeeds; }
+    public int getLostWorkers() { return lostWorkers; }
+    public int getStragglers() { return stragglers; }
+
+    /**
+     * Tiempo de procesamiento: reparto más espera de los últimos parciales.
+     */
+    public long getProcessingMillis() {
+        return distributionMillis + resultsMillis;
+    }
+
+    public double getThroughput() {
+        long millis = getProcessingMillis();
+        return millis > 0 ? datagrams * 1000.0 / millis : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d datagramas, %d workers, %d ms (reparto %d ms, resultados %d ms), %.1f datagramas/segundo, %d arcos",
+            datagrams, workers, getProcessingMillis(), distributionMillis, resultsMillis, getThroughput(), arcSpeeds.size());
+    }
+}
@@ -0,0 +1,34 @@
+package org.mio.processing.master;
+
+/**
+ * Trabajo para MasterNodeService.submit: archivo de datagramas, cuántos procesar,
+ * tamaño de lote y cuántos workers registrados esperar antes de repartir. El resto de
+ * la configuración (transporte, ingesta, reparto, filtro) se toma del Master.
+ */
+public final class JobSpec {
+
+    private final String csvPath;
+    private final int datagramCount;
+    private final int batchSize;
+    private final int workers;
+
+    public JobSpec(String csvPath, int datagramCount, int batchSize, int workers) {
+        if (datagramCount <= 0 || batchSize <= 0 || workers <= 0) {
+            throw new IllegalArgumentException("Datagramas, tamaño de lote y workers deben ser mayores que 0");
+        }
+        this.csvPath = csvPath;
+        this.datagramCount = datagramCount;
+        this.batchSize = batchSize;
+        this.workers = workers;
+    }
+
+    public String getCsvPath() { return csvPath; }
+    public int getDatagramCount() { return datagramCount; }
+    public int getBatchSize() { return batchSize; }
+    public int getWorkers() { return workers; }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d datagramas, lotes de %d, %d workers)", csvPath, datagramCount, batchSize, workers);
+    }
+}
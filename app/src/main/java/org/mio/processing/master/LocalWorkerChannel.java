@@ -0,0 +1,195 @@
+package org.mio.processing.master;
+
+import org.mio.model.ArcSpeed;
+import org.mio.model.DatagramBatch;
+import org.mio.processing.config.MasterConfig;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.protocol.CheckpointMark;
+import org.mio.processing.protocol.ResultDelta;
+import org.mio.processing.transport.LocalMasterLink;
+import org.mio.processing.transport.MasterLink;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Worker que corre como hilo del mismo proceso: los sub-lotes pasan como objetos por
+ * una cola acotada y el worker responde créditos y resultados con llamadas directas,
+ * sin sockets ni serialización. La cola es a la vez la etapa de envío.
+ */
+class LocalWorkerChannel implements WorkerChannel, WorkerSender, LocalMasterLink.Master {
+
+    private final MasterNodeService master;
+    private final Map<String, ArcSpeed> results = new ConcurrentHashMap<>();
+    private final CreditGate credits = new CreditGate();
+    // Espacio extra para FILTER y STOP
+    private final BlockingQueue<Object> inbox = new ArrayBlockingQueue<>(MasterConfig.SENDER_QUEUE_BATCHES + 2);
+    private final LocalMasterLink link = new LocalMasterLink(inbox, this);
+    private volatile StageStats stats = new StageStats("envío", inbox);
+    private volatile boolean processing = true;
+    private volatile int workerId;
+
+    LocalWorkerChannel(MasterNodeService master) {
+        this.master = master;
+    }
+
+    /**
+     * Conexión que usa el WorkerNodeService del mismo proceso.
+     */
+    MasterLink getLink() {
+        return link;
+    }
+
+    // --- LocalMasterLink.Master: llamadas desde el hilo del worker ---
+
+    @Override
+    public void registered(int workerId, String address) {
+        this.workerId = workerId;
+        System.out.println("Master: Worker " + workerId + " conectado (" + address + ")");
+        master.workerJoined(this);
+    }
+
+    @Override
+    public void credit(int credits, int completedBatches, long processedRows) {
+        this.credits.grant(credits, completedBatches, processedRows);
+    }
+
+    @Override
+    public void heartbeat(long processedRows, long completedBatches, int busyMillis) {
+        credits.heartbeat(processedRows, completedBatches, busyMillis);
+    }
+
+    @Override
+    public void results(ResultDelta delta) {
+        master.addWorkerResults(this, results, delta);
+        if (delta.isLast()) {
+            processing = false;
+            credits.close();
+            master.workerFinished();
+        }
+    }
+
+    @Override
+    public void checkpoint(CheckpointMark mark) {
+        master.checkpointConfirmed(this, mark);
+    }
+
+    // --- WorkerSender ---
+
+    @Override
+    public void start() {
+        stats = new StageStats("envío W" + workerId, inbox);
+    }
+
+    @Override
+    public void enqueue(DatagramBatch batch, StageStats producer) throws InterruptedException {
+        // El sub-lote ya es una copia propia (slice): pasa al worker sin copiar
+        if (credits.track(batch) && acquireCredit()) {
+            credits.sent(0, batch.size());
+            producer.put(inbox, batch);
+            stats.addItems(batch.size());
+        }
+    }
+
+    @Override
+    public void enqueue(RawChunk chunk, StageStats producer) throws InterruptedException {
+        if (credits.track(chunk) && acquireCredit()) {
+            try {
+                producer.put(inbox, chunk.read());
+                credits.sent(0, chunk.getRows());
+                stats.addItems(chunk.getRows());
+            } catch (IOException e) {
+                System.err.println("Error leyendo bloque para Worker " + workerId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void enqueue(CheckpointMark mark, StageStats producer) throws InterruptedException {
+        producer.put(inbox, mark);
+    }
+
+    /**
+     * Espera crédito del worker; el tiempo cuenta como bloqueo de la etapa de envío.
+     */
+    private boolean acquireCredit() throws InterruptedException {
+        long start = System.nanoTime();
+        boolean acquired = credits.acquire();
+        stats.addStall(System.nanoTime() - start);
+        return acquired;
+    }
+
+    @Override
+    public void finish() {
+        // Sin hilo de envío: lo encolado ya está en manos del worker
+    }
+
+    @Override
+    public StageStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public WorkerChannel getWorker() {
+        return this;
+    }
+
+    // --- WorkerChannel ---
+
+    @Override
+    public void sendFilter(DatagramFilter filter) {
+        put(filter);
+    }
+
+    @Override
+    public void sendCheckpoint(CheckpointMark mark) {
+        put(mark);
+    }
+
+    @Override
+    public void sendStop() {
+        put(LocalMasterLink.STOP);
+    }
+
+    private void put(Object message) {
+        try {
+            inbox.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public CreditGate getCredits() {
+        return credits;
+    }
+
+    @Override
+    public WorkerSender newSender() {
+        return this;
+    }
+
+    @Override
+    public int getWorkerId() {
+        return workerId;
+    }
+
+    @Override
+    public boolean isProcessing() {
+        return processing;
+    }
+
+    @Override
+    public Map<String, ArcSpeed> getResults() {
+        return new HashMap<>(results);
+    }
+
+    @Override
+    public long getBytesSent() {
+        return 0;
+    }
+}
@@ -4,15 +4,31 @@ import org.mio.graph.Graph;
 import org.mio.graph.GraphBuilder;
 import org.mio.model.*;
 import org.mio.processing.config.MasterConfig;
-import org.mio.processing.master.WorkerConnection;
+import org.mio.processing.config.WorkerConfig;
+import org.mio.processing.ingest.ColumnarBlock;
+import org.mio.processing.ingest.ColumnarDatagramReader;
+import org.mio.processing.ingest.DatagramBlockIndex;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.ingest.DatagramRowDecoder;
+import org.mio.processing.protocol.BatchCodec;
+import org.mio.processing.protocol.CheckpointMark;
+import org.mio.processing.protocol.ResultDelta;
+import org.mio.processing.worker.WorkerNodeService;
+import org.mio.util.ByteRangeSplitter;
+import org.mio.util.CompressedInput;
+import org.mio.util.MappedCsvScanner;
 
 import java.io.*;
 import java.net.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class MasterNodeService {
@@ -24,6 +40,11 @@ public class MasterNodeService {
                 System.out.println("Uso: java -jar sitm-master-1.0.jar <archivo_csv> <datagramas_a_procesar>");
                 System.out.println("Ejemplo: java -jar sitm-master-1.0.jar datagrams.csv 1000000");
                 System.out.println("Opciones de datagramas: 1000, 10000, 100000, 1000000");
+                System.out.println("Opciones adicionales: --ingest=pipeline|mapped|scanner|raw --parsers=<hilos> --transport=blocking|nio|local|shm --workers=<n>");
+                System.out.println("Reparto: --partition=bus|range --vnodes=<nodos virtuales por worker> --balance=steal|static");
+                System.out.println("Selección: --from=<yyyy-MM-dd[THH:mm:ss]> --to=<yyyy-MM-dd[THH:mm:ss]> --lines=<id,id,...>");
+                System.out.println("           --buses=<id,id,...> --events=<tipo,...>|all --bbox=<latMin,lonMin,latMax,lonMax>");
+                System.out.println("Checkpoints: --checkpoint=<archivo> --checkpoint-interval=<ms>");
                 System.out.println();
                 System.out.println("EJEMPLOS CON RUTA COMPLETA:");
                 System.out.println("java -jar sitm-master-1.0.jar \"C:\\ruta\\datagrams.csv\" 1000000");
@@ -75,6 +96,11 @@ public class MasterNodeService {
             
             // Iniciar Master Node Service
             MasterNodeService masterService = new MasterNodeService(graph, 8080);
+            for (int i = 2; i < args.length; i++) {
+                if (!applyOption(masterService, args[i].trim())) {
+                    System.err.println("Opción desconocida ignorada: " + args[i]);
+                }
+            }
             masterService.start(csvFilePath, datagramCount);
             
         } catch (Exception e) {
@@ -84,24 +110,144 @@ public class MasterNodeService {
         }
     }
     
+    /**
+     * Aplica una opción de línea de comandos con formato --clave=valor.
+     */
+    private static boolean applyOption(MasterNodeService master, String option) {
+        int eq = option.indexOf('=');
+        if (!option.startsWith("--") || eq < 0) {
+            return false;
+        }
+        String key = option.substring(2, eq);
+        String value = option.substring(eq + 1);
+        switch (key) {
+            case "ingest":
+                return master.setIngestMode(value.toLowerCase());
+            case "parsers":
+                master.setParserThreads(Integer.parseInt(value));
+                return true;
+            case "transport":
+                return master.setTransport(value.toLowerCase());
+            case "threads":
+                return master.setThreadMode(value.toLowerCase());
+            case "workers":
+                master.setExpectedWorkers(Integer.parseInt(value));
+                return true;
+            case "partition":
+                return master.setPartitionMode(value.toLowerCase());
+            case "vnodes":
+                master.setVirtualNodes(Integer.parseInt(value));
+                return true;
+            case "balance":
+                return master.setBalanceMode(value.toLowerCase());
+            case "speculation":
+                if (!"on".equalsIgnoreCase(value) && !"off".equalsIgnoreCase(value)) {
+                    return false;
+                }
+                master.setSpeculation("on".equalsIgnoreCase(value));
+                return true;
+            case "checkpoint":
+                master.setCheckpoint(value);
+                return true;
+            case "checkpoint-interval":
+                master.setCheckpointInterval(Long.parseLong(value));
+                return true;
+            case "from":
+                master.getFilter().setFrom(DatagramFilter.parseBound(value, false));
+                return true;
+            case "to":
+                master.getFilter().setTo(DatagramFilter.parseBound(value, true));
+                return true;
+            case "lines":
+                master.getFilter().setLines(DatagramFilter.parseIds(value));
+                return true;
+            case "buses":
+                master.getFilter().setBuses(DatagramFilter.parseIds(value));
+                return true;
+            case "events":
+                master.getFilter().setEventTypes("all".equalsIgnoreCase(value) ? null : DatagramFilter.parseIds(value));
+                return true;
+            case "bbox":
+                String[] corners = value.split(",");
+                if (corners.length != 4) {
+                    return false;
+                }
+                master.getFilter().setBoundingBox(Double.parseDouble(corners[0].trim()), Double.parseDouble(corners[1].trim()),
+                    Double.parseDouble(corners[2].trim()), Double.parseDouble(corners[3].trim()));
+                return true;
+            default:
+                return false;
+        }
+    }
+    
     // ... (rest of the code remains the same)
     private final Graph graph;
     private final int masterPort;
-    private final List<WorkerConnection> workers;
-    private final Map<String, ArcSpeed> aggregatedResults;
-    private final ExecutorService executor;
+    private final List<WorkerChannel> workers;
+    private final Map<String, ArcSpeed> aggregatedResults; // Se actualiza con cada parcial de los workers
+    private final Map<String, Arc> arcsByKey = new HashMap<>(); // Arcos del grafo por clave origen-destino-línea
+    private final Object resultsMonitor = new Object(); // Avisa cuando un worker se registra o termina
+    private final AtomicLong resultFrames = new AtomicLong();
+    private final AtomicLong resultBytes = new AtomicLong();
+    private ExecutorService executor; // Lectores de las conexiones bloqueantes, creado al iniciar
     private ServerSocket serverSocket;
+    private NioWorkerServer nioServer;
+    private String transport = MasterConfig.TRANSPORT_BLOCKING; // Conexiones con los workers
+    private String threadMode = MasterConfig.THREADS_PLATFORM;
+    private volatile ConnectionThreads threads = ConnectionThreads.create(MasterConfig.THREADS_PLATFORM);
     private volatile boolean running;
     private int customBatchSize = 10000; // Tamaño de lote configurable
     private boolean autoMode = false; // Modo automático para experimentos
     private int expectedWorkers = 3; // Número esperado de workers configurable
+    private String ingestMode = MasterConfig.INGEST_PIPELINE; // Ruta de lectura del CSV
+    private String partitionMode = MasterConfig.PARTITION_BUS; // Reparto de cada lote entre workers
+    private int virtualNodes = MasterConfig.PARTITION_VIRTUAL_NODES;
+    private volatile BusPartitioner busPartitioner; // null en el reparto por rangos
+    private String balanceMode = MasterConfig.BALANCE_STEAL;
+    private volatile WorkerLoad workerLoad; // null con balanceo estático
+    private boolean speculation = true; // Reenvío de los lotes de workers rezagados
+    private volatile StragglerDetector stragglerDetector; // null sin especulación o fuera del reparto
+    private int parserThreads = 1; // Hilos parser (pipeline o rangos mapeados)
+    private String checkpointPath; // null = sin checkpoints
+    private long checkpointIntervalMillis = MasterConfig.CHECKPOINT_INTERVAL_MS;
+    private volatile CheckpointCoordinator checkpoints; // null sin checkpoints en la ejecución actual
+    private volatile boolean ingestComplete; // La ingesta terminó sin errores
+    private volatile boolean resultsLost; // Un worker se perdió después de STOP con lotes sin resultados
+    private final DatagramRowDecoder rowDecoder = new DatagramRowDecoder(); // Solo para el hilo productor
+    private final List<WorkerSender> senders = new CopyOnWriteArrayList<>(); // Etapa de envío, una por worker; crece si se unen workers
+    private volatile List<StageStats> ingestStages = new ArrayList<>();
+    private volatile StageStats ingestStats = new StageStats("ingesta", null); // Etapa que entrega a los envíos
+    private DatagramFilter filter = createDefaultFilter(); // Predicados aplicados en la ingesta
+    // Ahorro del filtro en la última ejecución
+    private final AtomicLong filteredRows = new AtomicLong();
+    private final AtomicLong filteredBytes = new AtomicLong();
+    private final AtomicLong skippedRows = new AtomicLong();
+    private final AtomicLong skippedBytes = new AtomicLong();
+    private volatile boolean rawIngest; // La última ejecución envió bloques CSV sin parsear
+    private volatile boolean distributing; // Ejecución repartiendo lotes: los workers que se unen entran en ella
+    private final AtomicInteger pendingReplays = new AtomicInteger(); // Lotes de workers perdidos que falta reenviar
+    private final ArrayDeque<Object> replays = new ArrayDeque<>(); // Esos lotes, en orden; los reenvía el hilo de ingesta
+    private final Object ackMonitor = new Object(); // Avisa a la espera previa a STOP que cambiaron los lotes pendientes
+    private long ackEvents; // Cambios avisados en ackMonitor (protegido por él)
+    private final AtomicInteger replayCursor = new AtomicInteger(); // Ronda de bloques raw reenviados
+    private final AtomicInteger joinedWorkers = new AtomicInteger();
+    private final AtomicInteger lostWorkers = new AtomicInteger();
+    private final AtomicLong replayedBatches = new AtomicLong();
+    private final AtomicLong replayedRows = new AtomicLong();
+    private final AtomicInteger stragglers = new AtomicInteger();
+    private final AtomicInteger discardedResults = new AtomicInteger(); // Parciales de workers cuyos lotes pasaron a otros
+    private final AtomicInteger registeredWorkers = new AtomicInteger();
+    private final AtomicBoolean jobStarted = new AtomicBoolean(); // Un trabajo por instancia
+    private long workerWaitMillis;
 
     public MasterNodeService(Graph graph, int masterPort) {
         this.graph = graph;
         this.masterPort = masterPort;
-        this.workers = new ArrayList<>();
+        this.workers = new CopyOnWriteArrayList<>();
         this.aggregatedResults = new ConcurrentHashMap<>();
-        this.executor = Executors.newFixedThreadPool(10);
+        for (Arc arc : graph.getArcs()) {
+            arcsByKey.putIfAbsent(arc.getFrom().getStopId() + "-" + arc.getTo().getStopId() + "-" + arc.getLineId(), arc);
+        }
         this.running = true;
     }
     
@@ -116,48 +262,144 @@ public class MasterNodeService {
     public void setExpectedWorkers(int expectedWorkers) {
         this.expectedWorkers = expectedWorkers;
     }
+    
+    /**
+     * Ruta de ingesta del CSV: pipeline (defecto), mapped, scanner o raw. Retorna false si no existe.
+     */
+    public boolean setIngestMode(String ingestMode) {
+        switch (ingestMode) {
+            case MasterConfig.INGEST_PIPELINE:
+            case MasterConfig.INGEST_MAPPED:
+            case MasterConfig.INGEST_SCANNER:
+            case MasterConfig.INGEST_RAW:
+                this.ingestMode = ingestMode;
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Transporte hacia los workers: blocking (hilo por conexión), nio (un selector),
+     * local (workers como hilos de este proceso) o shm (cola en memoria compartida con
+     * workers del mismo host). Retorna false si no existe.
+     */
+    public boolean setTransport(String transport) {
+        switch (transport) {
+            case MasterConfig.TRANSPORT_BLOCKING:
+            case MasterConfig.TRANSPORT_NIO:
+            case MasterConfig.TRANSPORT_LOCAL:
+            case MasterConfig.TRANSPORT_SHM:
+                this.transport = transport;
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Hilos de aceptación, lectura y envío de las conexiones bloqueantes: platform
+     * (defecto) o virtual (Java 21). Retorna false si no existe.
+     */
+    public boolean setThreadMode(String threadMode) {
+        switch (threadMode) {
+            case MasterConfig.THREADS_PLATFORM:
+            case MasterConfig.THREADS_VIRTUAL:
+                this.threadMode = threadMode;
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    ConnectionThreads getThreads() {
+        return threads;
+    }
+    
+    /**
+     * Reparto de los lotes: bus (hashing consistente por busId, defecto) o range
+     * (tramos contiguos). Retorna false si no existe.
+     */
+    public boolean setPartitionMode(String partitionMode) {
+        switch (partitionMode) {
+            case MasterConfig.PARTITION_BUS:
+            case MasterConfig.PARTITION_RANGE:
+                this.partitionMode = partitionMode;
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Balanceo: steal (reparto según el ritmo de cada worker y robo de particiones de
+     * buses, defecto) o static (partes iguales). Retorna false si no existe.
+     */
+    public boolean setBalanceMode(String balanceMode) {
+        switch (balanceMode) {
+            case MasterConfig.BALANCE_STEAL:
+            case MasterConfig.BALANCE_STATIC:
+                this.balanceMode = balanceMode;
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Activa (defecto) o desactiva el reenvío especulativo de los lotes de workers rezagados.
+     */
+    public void setSpeculation(boolean speculation) {
+        this.speculation = speculation;
+    }
+    
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = Math.max(1, virtualNodes);
+    }
+    
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = Math.max(1, parserThreads);
+    }
+    
+    public void setFilter(DatagramFilter filter) {
+        this.filter = filter;
+    }
+    
+    /**
+     * Archivo de checkpoints: si existe y es del mismo CSV y filtro, el trabajo se reanuda
+     * desde él; al completarse se borra.
+     */
+    public void setCheckpoint(String checkpointPath) {
+        this.checkpointPath = checkpointPath;
+    }
+    
+    public void setCheckpointInterval(long checkpointIntervalMillis) {
+        this.checkpointIntervalMillis = Math.max(1, checkpointIntervalMillis);
+    }
+    
+    public DatagramFilter getFilter() {
+        return filter;
+    }
+    
+    /**
+     * Filtro por defecto: solo eventType 0, el único que usan los workers.
+     */
+    private static DatagramFilter createDefaultFilter() {
+        DatagramFilter defaultFilter = new DatagramFilter();
+        defaultFilter.setEventTypes(MasterConfig.DEFAULT_EVENT_TYPE);
+        return defaultFilter;
+    }
 
     public void start(String csvFilePath, int datagramCount) throws IOException {
-        // Mostrar banner del Master
-        System.out.println(MasterConfig.MASTER_BANNER);
-        System.out.println(MasterConfig.MASTER_ROLE);
-        System.out.println("Puerto: " + masterPort);
-        System.out.println("Datagramas a procesar: " + datagramCount);
-        System.out.println(MasterConfig.SERVER_STARTING);
-        
-        serverSocket = new ServerSocket(masterPort);
-        
-        // Thread para aceptar conexiones de workers
-        Thread acceptThread = new Thread(() -> {
-            while (running) {
-                try {
-                    Socket workerSocket = serverSocket.accept();
-                    WorkerConnection worker = new WorkerConnection(workerSocket, this);
-                    workers.add(worker);
-                    executor.submit(worker);
-                } catch (IOException e) {
-                    if (running) {
-                        System.err.println("Error aceptando conexión: " + e.getMessage());
-                    }
-                }
-            }
-        });
-        
-        acceptThread.start();
-        
-        System.out.println(MasterConfig.SERVER_STARTED);
-        System.out.println(MasterConfig.WAITING_WORKERS);
-        System.out.println("Master: Workers conectados: " + workers.size() + "/" + expectedWorkers);
-        
-        // Esperar a que todos los workers se conecten
-        while (workers.size() < expectedWorkers) {
-            try {
-                Thread.sleep(1000);
-                System.out.println("Master: Workers conectados: " + workers.size() + "/" + expectedWorkers + " (esperando...)");
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            }
+        if (!jobStarted.compareAndSet(false, true)) {
+            throw new IllegalStateException("Este Master ya ejecutó un trabajo");
+        }
+        startServer(datagramCount);
+        try {
+            awaitWorkers();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
         }
         
         System.out.println(MasterConfig.ALL_WORKERS_CONNECTED);
@@ -169,20 +411,143 @@ public class MasterNodeService {
             scanner.nextLine();
             scanner.close();
         } else {
-            // Modo automático: iniciar procesamiento después de 2 segundos
-            System.out.println("Master: Modo automático - Iniciando procesamiento en 2 segundos...");
-            try {
-                Thread.sleep(2000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            System.out.println("Master: Modo automático - Iniciando procesamiento");
         }
         
         // Iniciar procesamiento
         processDatagrams(csvFilePath, datagramCount);
     }
+    
+    /**
+     * Ejecuta un trabajo sin intervención: abre el puerto antes de retornar, espera a que
+     * se registren spec.getWorkers() workers y reparte sin pausas fijas. El futuro se
+     * completa al llegar el último parcial, con el Master ya cerrado; cancelarlo cierra el
+     * Master. Cada instancia ejecuta un solo trabajo.
+     */
+    public CompletableFuture<JobResult> submit(JobSpec spec) {
+        if (!jobStarted.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Este Master ya ejecutó un trabajo"));
+        }
+        setBatchSize(spec.getBatchSize());
+        setExpectedWorkers(spec.getWorkers());
+        setAutoMode(true);
+        try {
+            startServer(spec.getDatagramCount());
+        } catch (IOException e) {
+            shutdown();
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<JobResult> job = new CompletableFuture<>();
+        Thread jobThread = new Thread(() -> {
+            try {
+                awaitWorkers();
+                System.out.println(MasterConfig.ALL_WORKERS_CONNECTED);
+                job.complete(processDatagrams(spec.getCsvPath(), spec.getDatagramCount()));
+            } catch (Exception e) {
+                shutdown();
+                job.completeExceptionally(e);
+            }
+        }, "master-job");
+        job.whenComplete((result, error) -> {
+            if (job.isCancelled()) {
+                shutdown();
+            }
+        });
+        jobThread.start();
+        return job;
+    }
+    
+    /**
+     * Abre el puerto (o lanza los workers en proceso) y empieza a aceptar workers.
+     */
+    private void startServer(int datagramCount) throws IOException {
+        // Mostrar banner del Master
+        System.out.println(MasterConfig.MASTER_BANNER);
+        System.out.println(MasterConfig.MASTER_ROLE);
+        System.out.println("Puerto: " + masterPort);
+        System.out.println("Datagramas a procesar: " + datagramCount);
+        System.out.println(MasterConfig.SERVER_STARTING);
+        
+        if (MasterConfig.TRANSPORT_NIO.equals(transport)) {
+            // Un solo hilo selector para aceptar, leer y escribir a todos los workers
+            nioServer = new NioWorkerServer(masterPort, this, workers);
+            nioServer.start();
+            System.out.println("Master: Transporte NIO (un selector para todos los workers)");
+        } else if (MasterConfig.TRANSPORT_LOCAL.equals(transport)) {
+            // Workers como hilos de este proceso, con el mismo grafo: sin sockets ni serialización
+            System.out.println("Master: Transporte en proceso (" + expectedWorkers + " workers como hilos)");
+            for (int i = 1; i <= expectedWorkers; i++) {
+                LocalWorkerChannel worker = new LocalWorkerChannel(this);
+                workers.add(worker);
+                WorkerNodeService service = new WorkerNodeService(i, worker.getLink(), graph);
+                // Los workers comparten los núcleos de este proceso
+                service.setShards(WorkerConfig.DEFAULT_SHARDS / expectedWorkers);
+                Thread workerThread = new Thread(service, "worker-" + i);
+                workerThread.setDaemon(true);
+                workerThread.start();
+            }
+        } else {
+            // Socket con canal: la ingesta raw transfiere bloques del archivo directo al socket
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(masterPort));
+            serverSocket = serverChannel.socket();
+            boolean sharedMemory = MasterConfig.TRANSPORT_SHM.equals(transport);
+            if (sharedMemory) {
+                System.out.println("Master: Transporte por memoria compartida (colas en " + ShmWorkerConnection.ringDirectory() + ")");
+            }
+            
+            threads = ConnectionThreads.create(threadMode);
+            executor = threads.newConnectionExecutor();
+            System.out.println("Master: Conexiones con hilos " + (threads.isVirtual() ? "virtuales" : "de plataforma")
+                + " (uno por worker para leer y otro para enviar)");
+            
+            // Thread para aceptar conexiones de workers
+            Thread acceptThread = threads.newThread(() -> {
+                while (running) {
+                    try {
+                        Socket workerSocket = serverSocket.accept();
+                        WorkerConnection worker = sharedMemory
+                            ? new ShmWorkerConnection(workerSocket, this, customBatchSize)
+                            : new WorkerConnection(workerSocket, this);
+                        workers.add(worker);
+                        executor.submit(worker);
+                    } catch (IOException e) {
+                        if (running) {
+                            System.err.println("Error aceptando conexión: " + e.getMessage());
+                        }
+                    }
+                }
+            }, "accept-workers");
+            
+            acceptThread.start();
+        }
+        
+        System.out.println(MasterConfig.SERVER_STARTED);
+        System.out.println(MasterConfig.WAITING_WORKERS);
+    }
+    
+    /**
+     * Espera a que se registren los workers esperados: despierta con cada registro, sin sondeo.
+     */
+    private void awaitWorkers() throws InterruptedException {
+        long start = System.nanoTime();
+        synchronized (resultsMonitor) {
+            int shown = -1;
+            while (registeredWorkers.get() < expectedWorkers) {
+                if (!running) {
+                    throw new IllegalStateException("Master detenido antes de registrarse los workers");
+                }
+                if (registeredWorkers.get() != shown) {
+                    shown = registeredWorkers.get();
+                    System.out.println("Master: Workers conectados: " + shown + "/" + expectedWorkers + " (esperando...)");
+                }
+                resultsMonitor.wait();
+            }
+        }
+        workerWaitMillis = (System.nanoTime() - start) / 1_000_000;
+    }
 
-    private void processDatagrams(String csvFilePath, int datagramCount) {
+    private JobResult processDatagrams(String csvFilePath, int datagramCount) {
         // Limpiar la ruta: remover comillas si existen
         csvFilePath = csvFilePath.replace("\"", "").trim();
         final String finalCsvPath = csvFilePath; // Para lambda
@@ -197,12 +562,48 @@ public class MasterNodeService {
         System.out.println(MasterConfig.LOADING_DATAGRAMS);
         
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         AtomicLong totalProcessed = new AtomicLong(0);
 
+        // Etapa de envío: un hilo y una cola acotada por worker
+        startSenders();
+        ingestStats = new StageStats("ingesta", null);
+        ingestStages = new ArrayList<>(List.of(ingestStats));
+        filteredRows.set(0);
+        filteredBytes.set(0);
+        skippedRows.set(0);
+        skippedBytes.set(0);
+        rawIngest = false;
+        rowDecoder.setFilter(filter);
+        System.out.println("Master: Filtro de ingesta: " + filter);
+        ingestComplete = false;
+        resultsLost = false;
+        checkpoints = checkpointPath != null ? startCheckpoints(finalCsvPath) : null;
+
         // Cargar datagramas y distribuir a workers usando procesamiento por lotes
         Thread producerThread = new Thread(() -> {
             try {
-                loadDatagramsInBatches(finalCsvPath, datagramCount); // Usar datagramCount dinámico
+                boolean compressed = CompressedInput.isGzip(finalCsvPath);
+                if (ColumnarDatagramReader.isColumnarFile(finalCsvPath)) {
+                    totalProcessed.set(loadDatagramsColumnar(finalCsvPath, datagramCount));
+                } else if (compressed && (MasterConfig.INGEST_MAPPED.equals(ingestMode) || MasterConfig.INGEST_RAW.equals(ingestMode))) {
+                    System.out.println("Master: Un archivo gzip no se puede mapear ni transferir sin descomprimir, se usa la ingesta por etapas");
+                    totalProcessed.set(loadDatagramsPipelined(finalCsvPath, datagramCount));
+                } else if (MasterConfig.INGEST_RAW.equals(ingestMode)) {
+                    // Antes que el índice: el filtro completo lo aplican los workers al parsear
+                    totalProcessed.set(loadDatagramsRaw(finalCsvPath, datagramCount));
+                } else if (filter.hasBlockPredicates()) {
+                    // La selección usa el índice de bloques, disponible en la ruta por etapas
+                    totalProcessed.set(loadDatagramsPipelined(finalCsvPath, datagramCount));
+                } else if (MasterConfig.INGEST_SCANNER.equals(ingestMode)) {
+                    totalProcessed.set(loadDatagramsInBatches(finalCsvPath, datagramCount)); // Usar datagramCount dinámico
+                } else if (MasterConfig.INGEST_MAPPED.equals(ingestMode)) {
+                    totalProcessed.set(parserThreads > 1
+                        ? loadDatagramsParallel(finalCsvPath, datagramCount)
+                        : loadDatagramsMapped(finalCsvPath, datagramCount));
+                } else {
+                    totalProcessed.set(loadDatagramsPipelined(finalCsvPath, datagramCount));
+                }
                 System.out.println("Master: ✓ Procesamiento por lotes completado");
             } catch (Exception e) {
                 System.err.println("Master: Error cargando datagramas: " + e.getMessage());
@@ -219,30 +620,39 @@ public class MasterNodeService {
             Thread.currentThread().interrupt();
         }
             
+        // Vaciar las colas de envío antes de la señal de parada; hasta aquí un worker
+        // perdido todavía tiene a quién pasar sus lotes
+        awaitAcknowledged();
+        finishSenders();
+        distributing = false;
         System.out.println(MasterConfig.DISTRIBUTION_COMPLETE);
+        
+        // La señal de parada se envía cuando ningún hilo de ingesta sigue distribuyendo
+        System.out.println(MasterConfig.SENDING_STOP_SIGNAL);
+        sendStopToAllWorkers();
+        
         System.out.println(MasterConfig.WAITING_RESULTS);
         
-        // Esperar a que todos los workers terminen
+        // Los parciales ya están agregados; solo falta la última trama de cada worker
+        long stopSent = System.currentTimeMillis();
+        long stopNanos = System.nanoTime();
         try {
-            while (workers.stream().anyMatch(w -> w.isProcessing())) {
-                Thread.sleep(1000);
-                System.out.println("Master: Workers procesando... (" + 
-                                 workers.stream().mapToInt(w -> w.getResults().size()).sum() + " arcos calculados hasta ahora)");
+            synchronized (resultsMonitor) {
+                // Solo los workers de esta ejecución: uno que se conecte después de STOP queda para la siguiente
+                while (senders.stream().anyMatch(s -> s.getWorker().isActive())) {
+                    resultsMonitor.wait(1000);
+                    abandonSilentWorkers();
+                    if (senders.stream().anyMatch(s -> s.getWorker().isActive())) {
+                        System.out.println("Master: Workers procesando... (" + aggregatedResults.size()
+                                         + " arcos agregados hasta ahora)");
+                    }
+                }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-
-        System.out.println(MasterConfig.SENDING_STOP_SIGNAL);
-        for (WorkerConnection worker : workers) {
-            worker.sendStop();
-        }
-
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        long resultsNanos = System.nanoTime();
+        System.out.println("Master: Resultados finales recibidos " + (System.currentTimeMillis() - stopSent) + " ms después de STOP");
         System.out.println(MasterConfig.PROCESSING_COMPLETE);
         System.out.println(MasterConfig.AGGREGATING_RESULTS);
         
@@ -255,13 +665,68 @@ public class MasterNodeService {
         System.out.println(String.format("Resumen: %d workers, %.0f segundos, %.1f datagramas/segundo, %d arcos con velocidad", 
             workers.size(), processingTime, 
             totalProcessed.get() / processingTime, aggregatedResults.size()));
+        printPipelineStats();
+        printCreditStats();
+        printFilterStats();
+        CheckpointCoordinator coordinator = checkpoints;
+        if (coordinator != null) {
+            coordinator.finish(ingestComplete && !resultsLost);
+        }
+        if (joinedWorkers.get() > 0 || lostWorkers.get() > 0 || stragglers.get() > 0) {
+            System.out.println(String.format("Membresía: %d workers se unieron, %d se perdieron y %d quedaron rezagados; %d lotes (%d filas) reenviados, %d parciales descartados",
+                joinedWorkers.get(), lostWorkers.get(), stragglers.get(), replayedBatches.get(), replayedRows.get(),
+                discardedResults.get()));
+        }
+        if (busPartitioner != null && !rawIngest) {
+            busPartitioner.printStats();
+        }
+        if (workerLoad != null && !rawIngest) {
+            workerLoad.printStats();
+        }
 
         printSpeedResults();
+        JobResult result = new JobResult(totalProcessed.get(), senders.size(), workerWaitMillis,
+            (stopNanos - startNanos) / 1_000_000, (resultsNanos - stopNanos) / 1_000_000,
+            new HashMap<>(aggregatedResults), lostWorkers.get(), stragglers.get());
         shutdown();
+        return result;
+    }
+
+    /**
+     * Checkpoints de esta ejecución, o null si la ingesta no los admite. Si hay un
+     * checkpoint válido, sus agregados pasan a los resultados y sus colas de buses a
+     * cada worker antes del primer lote.
+     */
+    private CheckpointCoordinator startCheckpoints(String csvPath) {
+        if (!MasterConfig.INGEST_PIPELINE.equals(ingestMode) || parserThreads > 1
+            || CompressedInput.isGzip(csvPath) || ColumnarDatagramReader.isColumnarFile(csvPath)) {
+            System.out.println("Master: Los checkpoints requieren la ingesta por etapas con un parser y un CSV sin comprimir;"
+                + " se ejecuta sin checkpoints");
+            return null;
+        }
+        CheckpointCoordinator coordinator = new CheckpointCoordinator(Path.of(checkpointPath), Path.of(csvPath),
+            filter.toString(), checkpointIntervalMillis, this);
+        try {
+            if (coordinator.load()) {
+                for (ResultDelta.Entry entry : coordinator.getResumedResults().getEntries()) {
+                    mergeEntry(aggregatedResults, entry);
+                }
+                CheckpointMark resumed = new CheckpointMark(coordinator.getResumedId(), 0, coordinator.getResumedTails());
+                for (WorkerSender sender : senders) {
+                    sender.getWorker().sendCheckpoint(resumed);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Master: No se pudo leer el checkpoint " + checkpointPath + " (" + e.getMessage()
+                + "), se empieza de cero");
+            coordinator = new CheckpointCoordinator(Path.of(checkpointPath), Path.of(csvPath),
+                filter.toString(), checkpointIntervalMillis, this);
+        }
+        System.out.println("Master: Checkpoints cada " + checkpointIntervalMillis + " ms en " + checkpointPath);
+        return coordinator;
     }
 
-    private void loadDatagramsInBatches(String filePath, int targetDatagrams) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private long loadDatagramsInBatches(String filePath, int targetDatagrams) {
         AtomicLong totalProcessed = new AtomicLong(0);
         AtomicBoolean stopProcessing = new AtomicBoolean(false);
         
@@ -271,43 +736,35 @@ public class MasterNodeService {
         System.out.println("Master: Iniciando procesamiento por lotes de " + batchSize + " datagramas...");
         System.out.println("Master: Objetivo total: " + targetDatagrams + " datagramas");
         
-        try (Scanner scanner = new Scanner(new File(filePath), "UTF-8")) {
+        try (Scanner scanner = new Scanner(CompressedInput.open(Path.of(filePath)), "UTF-8")) {
             // Saltar header
             if (scanner.hasNextLine()) {
                 scanner.nextLine();
             }
             
-            List<String[]> batch = new ArrayList<>();
+            List<String> batch = new ArrayList<>();
             int batchCount = 0;
             
             while (scanner.hasNextLine() && !stopProcessing.get() && totalProcessed.get() < targetDatagrams) {
-                String line = scanner.nextLine();
-                String[] row = line.split(",");
-                batch.add(row);
+                batch.add(scanner.nextLine());
                 
                 // Procesar lote cuando alcanza el tamaño o cuando tenemos suficientes para alcanzar el objetivo
                 if (batch.size() >= batchSize || 
                     (totalProcessed.get() + batch.size() >= targetDatagrams && batch.size() > 0)) {
                     
-                    processBatch(batch, formatter, totalProcessed, stopProcessing, targetDatagrams);
+                    processBatch(batch, totalProcessed, stopProcessing, targetDatagrams);
                     batch.clear();
                     batchCount++;
                     
                     // Mostrar progreso
                     System.out.println("Master: Progreso - Lote " + batchCount + 
                                      " completado (" + totalProcessed.get() + "/" + targetDatagrams + ")");
-                    
-                    // Pequeña pausa para permitir GC
-                    if (batchCount % 10 == 0) {
-                        System.gc();
-                        Thread.sleep(100);
-                    }
                 }
             }
             
             // Procesar último lote si tiene datos y no hemos alcanzado el objetivo
             if (!batch.isEmpty() && !stopProcessing.get() && totalProcessed.get() < targetDatagrams) {
-                processBatch(batch, formatter, totalProcessed, stopProcessing, targetDatagrams);
+                processBatch(batch, totalProcessed, stopProcessing, targetDatagrams);
                 batchCount++;
             }
             
@@ -315,133 +772,939 @@ public class MasterNodeService {
             System.err.println("Master: Error leyendo archivo: " + e.getMessage());
             e.printStackTrace();
         }
+        addFilteredRows(rowDecoder);
         
         System.out.println("Master: ✓ Procesamiento por lotes completado - Total procesado: " + totalProcessed.get());
         System.out.println("Master: ✓ Objetivo alcanzado: " + (totalProcessed.get() >= targetDatagrams ? "SI" : "NO"));
+        return totalProcessed.get();
     }
     
-    private void processBatch(List<String[]> batch, DateTimeFormatter formatter, 
-                            AtomicLong totalProcessed, AtomicBoolean stopProcessing, int maxDatagrams) {
-        // Procesar y distribuir este lote
-        List<Datagram> datagrams = new ArrayList<>();
-        int validRows = 0;
-        int errorRows = 0;
+    /**
+     * Ingesta por etapas: lector → parsers → colas de envío por worker, con colas acotadas
+     * entre etapas. La lectura, el parseo y la red se solapan, y una etapa lenta frena a
+     * las anteriores sin que crezca la memoria.
+     */
+    private long loadDatagramsPipelined(String filePath, int targetDatagrams) {
+        CheckpointCoordinator coordinator = checkpoints;
+        long resumed = coordinator != null ? coordinator.getResumedDatagrams() : 0; // Repartidos antes del checkpoint
+        AtomicLong totalProcessed = new AtomicLong(resumed);
+        AtomicBoolean stopProcessing = new AtomicBoolean(false);
+        AtomicInteger batchCount = new AtomicInteger(0);
+        int batchSize = Math.min(customBatchSize, targetDatagrams);
         
-        for (String[] row : batch) {
-            try {
-                // Formato real: eventType, registerdate, stopId, odometer, latitude, longitude, taskId, lineId, tripId, unknown1, datagramDate, busId
-                if (row.length < 12) {
-                    errorRows++;
-                    continue;
+        System.out.println("Master: Iniciando ingesta por etapas con " + parserThreads + " hilos parser, lotes de " + batchSize + " datagramas...");
+        System.out.println("Master: Objetivo total: " + targetDatagrams + " datagramas");
+        
+        CsvIngestPipeline pipeline = new CsvIngestPipeline(Path.of(filePath), parserThreads, batchSize,
+            MasterConfig.PIPELINE_CHUNK_SIZE, Math.max(MasterConfig.PIPELINE_CHUNKS, parserThreads * 2));
+        ingestStats = pipeline.getParserStats();
+        ingestStages = List.of(pipeline.getReaderStats(), pipeline.getParserStats());
+        pipeline.setFilter(filter);
+        
+        try {
+            if (filter.hasBlockPredicates() && pipeline.isCompressed()) {
+                System.out.println("Master: El índice de bloques no aplica a archivos gzip, se filtra fila por fila");
+            } else if (filter.hasBlockPredicates()) {
+                selectBlocks(pipeline, Path.of(filePath));
+            }
+            if (coordinator != null) {
+                pipeline.resumeAt(coordinator.getResumedOffset());
+            }
+            pipeline.run(targetDatagrams - resumed, stopProcessing, (batch, rows, errorRows, endOffset) -> {
+                dispatchBatch(batch, rows, errorRows, totalProcessed, stopProcessing, targetDatagrams);
+                if (coordinator != null) {
+                    coordinator.batchDispatched(endOffset, totalProcessed.get(), senders, pendingReplays, ingestStats);
+                }
+                System.out.println("Master: Progreso - Lote " + batchCount.incrementAndGet() + 
+                                 " completado (" + totalProcessed.get() + "/" + targetDatagrams + ") | colas: " + queueDepths()
+                                     + " | en vuelo: " + inFlightSummary() + " | arcos: " + aggregatedResults.size());
+            });
+            ingestComplete = true;
+        } catch (Exception e) {
+            System.err.println("Master: Error en ingesta por etapas: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        filteredRows.addAndGet(pipeline.getFilteredRows());
+        filteredBytes.addAndGet(pipeline.getFilteredBytes());
+        if (pipeline.isCompressed()) {
+            System.out.println(String.format("Master: gzip: %.1f MB leídos de disco, %.1f MB descomprimidos (%.1f:1)",
+                pipeline.getSourceBytes() / (1024.0 * 1024.0), pipeline.getDecodedBytes() / (1024.0 * 1024.0),
+                (double) pipeline.getDecodedBytes() / Math.max(1, pipeline.getSourceBytes())));
+        }
+        System.out.println("Master: ✓ Procesamiento por lotes completado - Total procesado: " + totalProcessed.get());
+        System.out.println("Master: ✓ Objetivo alcanzado: " + (totalProcessed.get() >= targetDatagrams ? "SI" : "NO"));
+        return totalProcessed.get();
+    }
+    
+    /**
+     * Limita la lectura a los bloques del índice que pueden contener filas de la selección.
+     */
+    private void selectBlocks(CsvIngestPipeline pipeline, Path path) throws IOException {
+        System.out.println("Master: Selección: " + filter);
+        DatagramBlockIndex index = DatagramBlockIndex.loadOrBuild(path);
+        List<ByteRangeSplitter.Range> ranges = index.select(filter);
+        
+        long selectedBytes = 0;
+        for (ByteRangeSplitter.Range range : ranges) {
+            selectedBytes += range.length();
+        }
+        long selectedBlocks = 0;
+        for (DatagramBlockIndex.Block block : index.getBlocks()) {
+            if (filter.mayMatch(block)) {
+                selectedBlocks++;
+            } else {
+                skippedRows.addAndGet(block.getRows());
+                skippedBytes.addAndGet(block.getLength());
+            }
+        }
+        System.out.println(String.format("Master: Índice de bloques: %d de %d bloques seleccionados (%.1f de %.1f MB, %d rangos)",
+            selectedBlocks, index.getBlocks().size(), selectedBytes / (1024.0 * 1024.0),
+            index.totalBytes() / (1024.0 * 1024.0), ranges.size()));
+        
+        pipeline.setRanges(ranges);
+    }
+    
+    /**
+     * Ingesta sin parseo en el Master: el archivo se corta en bloques de líneas completas
+     * y cada bloque viaja tal cual (transferTo) al siguiente worker, que lo parsea y aplica
+     * el filtro. El objetivo cuenta filas del archivo, porque el Master no decodifica y no
+     * sabe cuántas pasarán el filtro.
+     */
+    private long loadDatagramsRaw(String filePath, int targetRows) {
+        long totalRows = 0;
+        long totalBytes = 0;
+        rawIngest = true;
+        System.out.println("Master: Ingesta raw: bloques de " + MasterConfig.RAW_CHUNK_SIZE / 1024 + " KB sin parsear, "
+                         + "el parseo y el filtro corren en los workers");
+        if (busPartitioner != null) {
+            System.out.println("Master: Los bloques sin parsear se reparten en ronda; la partición por bus no aplica en la ingesta raw");
+        }
+        System.out.println("Master: Objetivo total: " + targetRows + " filas del archivo");
+        
+        try (FileChannel file = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            for (WorkerSender sender : senders) {
+                sender.getWorker().sendFilter(filter);
+            }
+            long size = file.size();
+            long position = ByteRangeSplitter.nextLineStart(file, 0, size); // Saltar header
+            int next = 0;
+            int chunkCount = 0;
+            
+            while (position < size && totalRows < targetRows) {
+                long end = position + MasterConfig.RAW_CHUNK_SIZE >= size
+                    ? size : ByteRangeSplitter.nextLineStart(file, position + MasterConfig.RAW_CHUNK_SIZE - 1, size);
+                // Contar filas sobre el archivo mapeado y cortar en la fila del objetivo
+                MappedByteBuffer lines = file.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+                int rows = 0;
+                int length = lines.limit();
+                for (int i = 0; i < length; i++) {
+                    if (lines.get(i) == '\n' && ++rows == targetRows - totalRows) {
+                        length = i + 1;
+                        break;
+                    }
+                }
+                if (length > 0 && lines.get(length - 1) != '\n') {
+                    rows++; // Última línea del archivo sin salto
                 }
                 
-                // Extraer datos según el formato real
-                String eventType = row[0].replace("\"", "").trim();
-                String registerDate = row[1].replace("\"", "").trim();
-                String stopId = row[2].replace("\"", "").trim();
-                String odometer = row[3].replace("\"", "").trim();
-                String latitudeStr = row[4].replace("\"", "").trim();
-                String longitudeStr = row[5].replace("\"", "").trim();
-                String taskId = row[6].replace("\"", "").trim();
-                String lineIdStr = row[7].replace("\"", "").trim();
-                String tripId = row[8].replace("\"", "").trim();
-                String unknown1 = row[9].replace("\"", "").trim();
-                String datagramDate = row[10].replace("\"", "").trim();
-                String busId = row[11].replace("\"", "").trim();
-                
-                // Convertir coordenadas (viene en formato -764873683, dividir por 10000000)
-                double latitude = Double.parseDouble(latitudeStr) / 10000000.0;
-                double longitude = Double.parseDouble(longitudeStr) / 10000000.0;
-                
-                // Convertir fecha (formato: 2019-05-27 20:14:43)
-                LocalDateTime timestamp = LocalDateTime.parse(datagramDate, formatter);
+                replayQueued();
+                WorkerSender sender = nextActiveSender(next);
+                if (sender == null) {
+                    System.err.println("Master: No quedan workers activos, se detiene la ingesta raw");
+                    break;
+                }
+                next = senders.indexOf(sender) + 1;
+                sender.enqueue(new RawChunk(file, position, length, rows), ingestStats);
+                ingestStats.addItems(rows);
+                totalRows += rows;
+                totalBytes += length;
+                position += length;
                 
-                // Convertir lineId
-                int lineId = Integer.parseInt(lineIdStr);
+                System.out.println("Master: Progreso - Bloque " + (++chunkCount) + " enviado a Worker " + sender.getWorker().getWorkerId()
+                                 + " (" + totalRows + "/" + targetRows + " filas) | colas: " + queueDepths()
+                                 + " | en vuelo: " + inFlightSummary() + " | arcos: " + aggregatedResults.size());
+            }
+            // El archivo debe seguir abierto hasta que los envíos y los reenvíos terminen
+            awaitAcknowledged();
+            finishSenders();
+        } catch (Exception e) {
+            System.err.println("Master: Error en ingesta raw: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        System.out.println(String.format("Master: ✓ Ingesta raw completada - %d filas, %.1f MB transferidos sin copiar",
+            totalRows, totalBytes / (1024.0 * 1024.0)));
+        return totalRows;
+    }
+    
+    /**
+     * Primer envío con worker activo a partir de 'from' (circular), o null si no queda ninguno.
+     */
+    private WorkerSender nextActiveSender(int from) {
+        for (int i = 0; i < senders.size(); i++) {
+            WorkerSender sender = senders.get((from + i) % senders.size());
+            if (sender.getWorker().isActive()) {
+                return sender;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Variante de loadDatagramsInBatches sobre el archivo mapeado en memoria:
+     * las filas se tokenizan directamente de los bytes, sin String por línea ni split.
+     */
+    private long loadDatagramsMapped(String filePath, int targetDatagrams) {
+        AtomicLong totalProcessed = new AtomicLong(0);
+        AtomicBoolean stopProcessing = new AtomicBoolean(false);
+        int batchSize = Math.min(customBatchSize, targetDatagrams);
+        
+        System.out.println("Master: Iniciando procesamiento mapeado en memoria por lotes de " + batchSize + " datagramas...");
+        System.out.println("Master: Objetivo total: " + targetDatagrams + " datagramas");
+        
+        try (MappedCsvScanner scanner = new MappedCsvScanner(Path.of(filePath))) {
+            // Saltar header
+            scanner.skipLine();
+            
+            DatagramRowDecoder decoder = new DatagramRowDecoder();
+            decoder.setFilter(filter);
+            DatagramBatch datagrams = new DatagramBatch(batchSize);
+            int rows = 0;
+            int errorRows = 0;
+            int batchCount = 0;
+            
+            while (!stopProcessing.get() && totalProcessed.get() < targetDatagrams && scanner.nextLine()) {
+                rows++;
+                if (!(decoder.decode(scanner.buffer(), scanner.rowStart(), scanner.rowEnd()) && decoder.appendTo(datagrams))
+                    && !decoder.isFiltered()) {
+                    if (++errorRows == 1) {
+                        System.err.println("Master: Error parsing datagram: columna inválida " + decoder.getErrorColumn());
+                    }
+                }
                 
-                // Determinar orientación (basado en taskId o algún otro criterio)
-                int orientation = 1; // Por defecto
+                if (datagrams.size() >= batchSize || totalProcessed.get() + datagrams.size() >= targetDatagrams) {
+                    dispatchBatch(datagrams, rows, errorRows, totalProcessed, stopProcessing, targetDatagrams);
+                    datagrams.clear(); // El envío es síncrono: el lote se puede reutilizar
+                    rows = 0;
+                    errorRows = 0;
+                    batchCount++;
+                    
+                    System.out.println("Master: Progreso - Lote " + batchCount + 
+                                     " completado (" + totalProcessed.get() + "/" + targetDatagrams + ")");
+                }
+            }
+            
+            // Procesar último lote si tiene datos y no hemos alcanzado el objetivo
+            if (!datagrams.isEmpty() && !stopProcessing.get()) {
+                dispatchBatch(datagrams, rows, errorRows, totalProcessed, stopProcessing, targetDatagrams);
+            }
+            addFilteredRows(decoder);
+            
+        } catch (Exception e) {
+            System.err.println("Master: Error leyendo archivo: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        System.out.println("Master: ✓ Procesamiento por lotes completado - Total procesado: " + totalProcessed.get());
+        System.out.println("Master: ✓ Objetivo alcanzado: " + (totalProcessed.get() >= targetDatagrams ? "SI" : "NO"));
+        return totalProcessed.get();
+    }
+    
+    /**
+     * Lectura del formato binario columnar (.mioc) generado por ColumnarConverter:
+     * los bloques se copian directamente a columnas primitivas, sin parsear texto.
+     */
+    private long loadDatagramsColumnar(String filePath, int targetDatagrams) {
+        AtomicLong totalProcessed = new AtomicLong(0);
+        AtomicBoolean stopProcessing = new AtomicBoolean(false);
+        int batchSize = Math.min(customBatchSize, targetDatagrams);
+        
+        try (ColumnarDatagramReader reader = new ColumnarDatagramReader(Path.of(filePath))) {
+            System.out.println("Master: Archivo columnar con " + reader.getTotalRows() + " filas en " + 
+                             reader.getBlockCount() + " bloques");
+            System.out.println("Master: Objetivo total: " + targetDatagrams + " datagramas");
+            
+            ColumnarBlock block = new ColumnarBlock(reader.getBlockRows());
+            DatagramBatch datagrams = new DatagramBatch(batchSize);
+            int rows = 0;
+            int batchCount = 0;
+            
+            while (!stopProcessing.get() && reader.nextBlock(block)) {
+                int from = 0;
+                while (from < block.size() && !stopProcessing.get()) {
+                    // Copia del bloque al lote aplicando el filtro sobre las columnas
+                    int before = datagrams.size();
+                    int scanned = block.appendTo(datagrams, from, filter);
+                    from += scanned;
+                    rows += scanned;
+                    filteredRows.addAndGet(scanned - (datagrams.size() - before));
+                    long remaining = targetDatagrams - totalProcessed.get();
+                    
+                    if (datagrams.isFull() || datagrams.size() >= remaining) {
+                        datagrams.truncate((int) Math.min(datagrams.size(), remaining));
+                        dispatchBatch(datagrams, rows, 0, totalProcessed, stopProcessing, targetDatagrams);
+                        datagrams.clear();
+                        rows = 0;
+                        batchCount++;
+                        
+                        System.out.println("Master: Progreso - Lote " + batchCount + 
+                                         " completado (" + totalProcessed.get() + "/" + targetDatagrams + ")");
+                    }
+                }
+            }
+            
+            if (!datagrams.isEmpty() && !stopProcessing.get()) {
+                dispatchBatch(datagrams, rows, 0, totalProcessed, stopProcessing, targetDatagrams);
+            }
+            
+        } catch (Exception e) {
+            System.err.println("Master: Error leyendo archivo columnar: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        System.out.println("Master: ✓ Procesamiento por lotes completado - Total procesado: " + totalProcessed.get());
+        System.out.println("Master: ✓ Objetivo alcanzado: " + (totalProcessed.get() >= targetDatagrams ? "SI" : "NO"));
+        return totalProcessed.get();
+    }
+    
+    /**
+     * Ingesta paralela: el archivo se divide en rangos de bytes alineados a línea y
+     * cada hilo parser recorre su rango con un MappedCsvScanner propio. Cada rango es
+     * otra ventana de tiempo, así que los lotes se distribuyen en orden de rango: los
+     * parsers de los rangos siguientes se adelantan hasta PARSED_AHEAD_BATCHES lotes
+     * y cada bus llega a su worker en el orden del archivo.
+     */
+    private long loadDatagramsParallel(String filePath, int targetDatagrams) {
+        AtomicLong totalProcessed = new AtomicLong(0);
+        AtomicBoolean stopProcessing = new AtomicBoolean(false);
+        int batchCount = 0;
+        int batchSize = Math.min(customBatchSize, targetDatagrams);
+        Path path = Path.of(filePath);
+        
+        System.out.println("Master: Iniciando ingesta paralela con " + parserThreads + " hilos parser, lotes de " + batchSize + " datagramas...");
+        System.out.println("Master: Objetivo total: " + targetDatagrams + " datagramas");
+        
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads);
+        try {
+            List<ByteRangeSplitter.Range> ranges = ByteRangeSplitter.split(path, parserThreads, true);
+            List<BlockingQueue<ParsedBatch>> parsed = new ArrayList<>();
+            List<Future<?>> futures = new ArrayList<>();
+            for (ByteRangeSplitter.Range range : ranges) {
+                System.out.println("Master: Rango asignado a parser: " + range + " (" + range.length() + " bytes)");
+                BlockingQueue<ParsedBatch> queue = new ArrayBlockingQueue<>(MasterConfig.PARSED_AHEAD_BATCHES);
+                parsed.add(queue);
+                futures.add(parsers.submit(() -> {
+                    parseRange(path, range, batchSize, stopProcessing, queue);
+                    return null;
+                }));
+            }
+            // Un rango se reparte entero antes de empezar el siguiente
+            for (int r = 0; r < ranges.size() && !stopProcessing.get(); r++) {
+                BlockingQueue<ParsedBatch> queue = parsed.get(r);
+                for (ParsedBatch next = queue.take(); next != ParsedBatch.END && !stopProcessing.get(); next = queue.take()) {
+                    long remaining = targetDatagrams - totalProcessed.get();
+                    if (next.batch.size() > remaining) {
+                        next.batch.truncate((int) remaining);
+                    }
+                    dispatchBatch(next.batch, next.rows, next.errorRows, totalProcessed, stopProcessing, targetDatagrams);
+                    System.out.println("Master: Progreso - Lote " + (++batchCount) +
+                                     " completado (" + totalProcessed.get() + "/" + targetDatagrams + ")");
+                }
+                if (!stopProcessing.get()) {
+                    futures.get(r).get(); // Error de parseo del rango
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Master: Error en ingesta paralela: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            stopProcessing.set(true);
+            parsers.shutdownNow();
+        }
+        
+        System.out.println("Master: ✓ Procesamiento por lotes completado - Total procesado: " + totalProcessed.get());
+        System.out.println("Master: ✓ Objetivo alcanzado: " + (totalProcessed.get() >= targetDatagrams ? "SI" : "NO"));
+        return totalProcessed.get();
+    }
+    
+    /**
+     * Parsea un rango y deja sus lotes en 'output', seguidos de END; espera si el
+     * reparto todavía no llegó a este rango.
+     */
+    private void parseRange(Path path, ByteRangeSplitter.Range range, int batchSize, AtomicBoolean stopProcessing,
+                            BlockingQueue<ParsedBatch> output) throws IOException, InterruptedException {
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+        decoder.setFilter(filter);
+        try (MappedCsvScanner scanner = new MappedCsvScanner(path, range.getStart(), range.getEnd())) {
+            DatagramBatch datagrams = new DatagramBatch(batchSize);
+            int rows = 0;
+            int errorRows = 0;
+            
+            while (!stopProcessing.get()) {
+                boolean hasRow = scanner.nextLine();
+                if (hasRow) {
+                    rows++;
+                    if (!(decoder.decode(scanner.buffer(), scanner.rowStart(), scanner.rowEnd()) && decoder.appendTo(datagrams))
+                        && !decoder.isFiltered()) {
+                        if (++errorRows == 1) {
+                            System.err.println("Master: Error parsing datagram: columna inválida " + decoder.getErrorColumn());
+                        }
+                    }
+                }
                 
-                Datagram datagram = new Datagram(busId, latitude, longitude, timestamp, lineId, orientation, eventType);
-                datagrams.add(datagram);
-                validRows++;
+                if (datagrams.size() >= batchSize || (!hasRow && !datagrams.isEmpty())) {
+                    output.put(new ParsedBatch(datagrams.slice(0, datagrams.size()), rows, errorRows, -1));
+                    datagrams.clear();
+                    rows = 0;
+                    errorRows = 0;
+                }
                 
-            } catch (Exception e) {
-                errorRows++;
-                // Mostrar primer error para depuración
-                if (errorRows == 1) {
-                    System.err.println("Master: Error parsing datagram: " + e.getMessage());
-                    System.err.println("Master: Fila problemática: " + String.join(",", batch.get(0)));
+                if (!hasRow) {
+                    break;
                 }
             }
+        } catch (IOException | RuntimeException e) {
+            output.put(ParsedBatch.END); // El error llega al reparto con el Future del rango
+            throw e;
+        } finally {
+            addFilteredRows(decoder);
         }
+        output.put(ParsedBatch.END);
+    }
+    
+    private void processBatch(List<String> batch, AtomicLong totalProcessed, 
+                            AtomicBoolean stopProcessing, int maxDatagrams) {
+        // Procesar y distribuir este lote
+        DatagramBatch datagrams = new DatagramBatch(batch.size());
+        int errorRows = 0;
         
+        // Formato real: eventType, registerdate, stopId, odometer, latitude, longitude, taskId, lineId, tripId, unknown1, datagramDate, busId
+        // Solo se decodifican en sitio las columnas usadas, sin split ni Strings intermedios
+        for (String line : batch) {
+            if (!(rowDecoder.decode(line) && rowDecoder.appendTo(datagrams)) && !rowDecoder.isFiltered() && ++errorRows == 1) {
+                // Mostrar primer error para depuración
+                System.err.println("Master: Error parsing datagram: columna inválida " + rowDecoder.getErrorColumn());
+                System.err.println("Master: Fila problemática: " + line);
+            }
+        }
+        
+        dispatchBatch(datagrams, batch.size(), errorRows, totalProcessed, stopProcessing, maxDatagrams);
+    }
+    
+    /**
+     * Entrega un lote ya parseado a los workers. Punto común de todas las rutas de ingesta.
+     */
+    private void dispatchBatch(DatagramBatch datagrams, int totalRows, int errorRows,
+                               AtomicLong totalProcessed, AtomicBoolean stopProcessing, int maxDatagrams) {
         // Mostrar estadísticas del lote
-        System.out.println("Master: Estadísticas lote - Filas totales: " + batch.size() + 
-                         ", Válidas: " + validRows + ", Errores: " + errorRows + 
+        System.out.println("Master: Estadísticas lote - Filas totales: " + totalRows + 
+                         ", Válidas: " + datagrams.size() + ", Errores: " + errorRows + 
+                         ", Filtradas: " + Math.max(0, totalRows - datagrams.size() - errorRows) +
                          ", Datagramas: " + datagrams.size());
         
-        // Distribuir este lote a workers
+        // Primero lo que quedó de workers perdidos, después este lote
+        replayQueued();
         distributeBatchToWorkers(datagrams);
+        ingestStats.addItems(datagrams.size());
         totalProcessed.addAndGet(datagrams.size());
         
         System.out.println("Master: Lote procesado - " + datagrams.size() + " datagramas distribuidos (Total: " + totalProcessed.get() + ")");
         
         // Detenerse solo si encontramos datagramas válidos y procesamos suficientes
-        if (datagrams.size() > 0 && totalProcessed.get() >= maxDatagrams) {
-            System.out.println("Master: ✓ Lote con datos encontrado - Enviando señal de parada a workers");
-            sendStopToAllWorkers();
-            stopProcessing.set(true);
+        if (datagrams.size() > 0 && totalProcessed.get() >= maxDatagrams && stopProcessing.compareAndSet(false, true)) {
+            System.out.println("Master: ✓ Objetivo de datagramas alcanzado - Deteniendo la ingesta");
         }
     }
     
-    private void distributeBatchToWorkers(List<Datagram> datagrams) {
-        if (workers.isEmpty()) return;
+    private void distributeBatchToWorkers(DatagramBatch datagrams) {
+        if (senders.isEmpty()) return;
         
         int workerIndex = 0;
-        for (WorkerConnection worker : workers) {
-            if (worker != null && worker.isProcessing()) {
-                // Distribuir parte del lote a este worker
-                int batchSize = datagrams.size() / workers.size();
+        try {
+            BusPartitioner partitioner = busPartitioner;
+            if (partitioner != null) {
+                // Cada bus a un solo worker: su historial no se fragmenta entre workers
+                partitioner.dispatch(datagrams, ingestStats);
+                return;
+            }
+            WorkerLoad load = workerLoad;
+            if (load != null) {
+                distributeByLoad(datagrams, load);
+                return;
+            }
+            // Partes iguales entre los activos: un worker perdido o rezagado no se lleva la cola del lote
+            List<WorkerSender> active = new ArrayList<>();
+            for (WorkerSender sender : senders) {
+                if (sender.getWorker().isActive()) {
+                    active.add(sender);
+                }
+            }
+            if (active.isEmpty()) return;
+            int batchSize = datagrams.size() / active.size();
+            for (WorkerSender sender : active) {
+                // Distribuir parte del lote a este worker, como un solo sub-lote (copia: el lote se reutiliza)
                 int startIndex = workerIndex * batchSize;
-                int endIndex = (workerIndex == workers.size() - 1) ? datagrams.size() : startIndex + batchSize;
+                int endIndex = (workerIndex == active.size() - 1) ? datagrams.size() : startIndex + batchSize;
                 
-                for (int i = startIndex; i < endIndex; i++) {
-                    worker.sendDatagram(datagrams.get(i));
+                if (endIndex > startIndex) {
+                    sender.enqueue(datagrams.slice(startIndex, endIndex), ingestStats);
                 }
                 
                 workerIndex++;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Tramos contiguos proporcionales al ritmo medido de cada worker activo: un worker
+     * lento recibe menos filas en vez de frenar a los demás.
+     */
+    private void distributeByLoad(DatagramBatch datagrams, WorkerLoad load) throws InterruptedException {
+        load.update();
+        boolean[] active = new boolean[senders.size()]; // Los workers que se unan ahora entran en el próximo lote
+        int lastActive = -1;
+        for (int s = 0; s < active.length; s++) {
+            active[s] = senders.get(s).getWorker().isActive();
+            if (active[s]) {
+                lastActive = s;
+            }
+        }
+        double[] shares = load.getShares(active);
+        int start = 0;
+        for (int s = 0; s < active.length; s++) {
+            if (!active[s]) {
+                continue;
+            }
+            int end = s == lastActive ? datagrams.size()
+                : Math.min(datagrams.size(), start + (int) Math.round(datagrams.size() * shares[s]));
+            if (end > start) {
+                load.addDispatched(s, end - start);
+                senders.get(s).enqueue(datagrams.slice(start, end), ingestStats);
+            }
+            start = end;
+        }
+    }
+    
+    private void startSenders() {
+        joinedWorkers.set(0);
+        lostWorkers.set(0);
+        replayedBatches.set(0);
+        replayedRows.set(0);
+        stragglers.set(0);
+        discardedResults.set(0);
+        synchronized (senders) {
+            senders.clear();
+            distributing = true;
+            for (WorkerChannel worker : workers) {
+                if (worker != null) {
+                    worker.getCredits().setListener(this::acknowledgementChanged);
+                    WorkerSender sender = worker.newSender();
+                    sender.start();
+                    senders.add(sender);
+                }
+            }
+        }
+        workerLoad = MasterConfig.BALANCE_STEAL.equals(balanceMode) ? new WorkerLoad(senders) : null;
+        busPartitioner = MasterConfig.PARTITION_BUS.equals(partitionMode)
+            ? new BusPartitioner(senders, virtualNodes, workerLoad) : null;
+        System.out.println("Master: Reparto de lotes: " + (busPartitioner != null
+            ? "por bus con hashing consistente (" + virtualNodes + " nodos virtuales por worker)"
+            : "por rangos contiguos")
+            + (workerLoad != null ? ", balanceado por carga" : ", partes iguales")
+            + (speculation ? ", reenvío especulativo de rezagados" : ""));
+        if (speculation) {
+            stragglerDetector = new StragglerDetector(senders, this);
+            stragglerDetector.start();
+        }
+    }
+    
+    /**
+     * Un worker confirmó su registro: despierta a quien espera workers. Si hay una
+     * ejecución repartiendo lotes se suma a ella: recibe su etapa de envío y, en el
+     * reparto por bus, sus puntos del anillo.
+     * Puede llamarse desde el hilo del selector NIO: no bloquea.
+     */
+    void workerJoined(WorkerChannel worker) {
+        registeredWorkers.incrementAndGet();
+        synchronized (resultsMonitor) {
+            resultsMonitor.notifyAll();
+        }
+        if (!distributing) {
+            return;
+        }
+        synchronized (senders) {
+            for (WorkerSender sender : senders) {
+                if (sender.getWorker() == worker) {
+                    return; // Ya entró al iniciar la ejecución
+                }
+            }
+            if (senders.size() >= MasterConfig.MAX_WORKERS) {
+                System.err.println("Master: Worker " + worker.getWorkerId() + " no entra a la ejecución: máximo de "
+                    + MasterConfig.MAX_WORKERS + " workers");
+                return;
+            }
+            if (rawIngest) {
+                worker.sendFilter(filter);
+            }
+            worker.getCredits().setListener(this::acknowledgementChanged);
+            WorkerSender sender = worker.newSender();
+            sender.start();
+            senders.add(sender);
+        }
+        joinedWorkers.incrementAndGet();
+        BusPartitioner partitioner = busPartitioner;
+        if (partitioner != null) {
+            partitioner.rebuild();
+        }
+        System.out.println("Master: Worker " + worker.getWorkerId() + " se unió a la ejecución en curso ("
+            + senders.size() + " workers en el reparto)");
+    }
+    
+    /**
+     * Un worker se perdió sin entregar su último parcial. Los lotes que sus resultados no
+     * cubren pasan a la cola de reenvíos (ver replayQueued) y el anillo se rearma sin él.
+     */
+    void workerLeft(WorkerChannel worker) {
+        if (worker.getCredits().isReassigned()) {
+            // Rezagado: sus lotes ya se reenviaron, pero después de STOP las copias que
+            // siguen en la cola ya no salen
+            if (!distributing && pendingReplays.get() > 0) {
+                resultsLost = true;
+                System.err.println("Master: Worker rezagado " + worker.getWorkerId() + " se perdió después de STOP; "
+                    + pendingReplays.get() + " lotes reenviados sin resultados");
+            }
+            return;
+        }
+        List<Object> pending = reassign(worker);
+        if (pending == null) {
+            return;
+        }
+        if (!distributing) {
+            if (!pending.isEmpty()) {
+                System.err.println("Master: Worker " + worker.getWorkerId() + " se perdió fuera del reparto; "
+                    + pending.size() + " lotes sin resultados no se pueden reenviar");
+            }
+            return;
+        }
+        lostWorkers.incrementAndGet();
+        BusPartitioner partitioner = busPartitioner;
+        if (partitioner != null) {
+            partitioner.rebuild();
+        }
+        System.out.println("Master: Worker " + worker.getWorkerId() + " se perdió; reenviando " + pending.size()
+            + " lotes sin resultados a los workers activos");
+        checkpointWorkerLost(worker);
+    }
+    
+    /**
+     * Worker rezagado (lo detecta StragglerDetector): sus lotes sin resultados se reenvían
+     * de forma especulativa a los activos y deja el reparto. Sigue conectado, pero sus
+     * parciales desde ahora se descartan: queda el resultado de la copia, que se repartió
+     * primero, y ninguna muestra se cuenta dos veces. Tampoco se espera su último parcial.
+     */
+    void workerStraggling(WorkerChannel worker, String reason) {
+        if (!distributing) {
+            return;
+        }
+        List<Object> pending = reassign(worker);
+        if (pending == null) {
+            return;
+        }
+        stragglers.incrementAndGet();
+        BusPartitioner partitioner = busPartitioner;
+        if (partitioner != null) {
+            partitioner.rebuild();
+        }
+        System.out.println("Master: Worker " + worker.getWorkerId() + " rezagado (" + reason + "); reenviando "
+            + pending.size() + " lotes sin resultados a los workers activos");
+        checkpointWorkerLost(worker);
+    }
+    
+    /**
+     * Después de iniciar el reenvío: una marca que se encole desde ahora espera a que termine.
+     */
+    private void checkpointWorkerLost(WorkerChannel worker) {
+        CheckpointCoordinator coordinator = checkpoints;
+        if (coordinator != null) {
+            coordinator.workerLost(worker);
+        }
+    }
+    
+    /**
+     * Quita al worker sus lotes sin resultados y los encola para reenviar, seguidos de los
+     * que se le entreguen después. Con el lock de la cola ningún lote nuevo se adelanta a
+     * los pendientes. Durante el reparto se encolan; fuera de él solo se retornan y sus
+     * resultados se dan por perdidos. Retorna null si otro hilo ya los reasignó.
+     */
+    private List<Object> reassign(WorkerChannel worker) {
+        synchronized (replays) {
+            if (worker.getCredits().isReassigned()) {
+                return null;
+            }
+            List<Object> pending = worker.getCredits().reassign(this::queueReplay);
+            if (distributing) {
+                for (Object item : pending) {
+                    queueReplay(item);
+                }
+            } else if (!pending.isEmpty()) {
+                resultsLost = true; // El checkpoint se conserva para repetir desde él
+            }
+            return pending;
+        }
+    }
+    
+    private void queueReplay(Object item) {
+        synchronized (replays) {
+            replays.add(item);
+            pendingReplays.incrementAndGet();
+        }
+        acknowledgementChanged();
+    }
+    
+    /**
+     * Reenvía la cola de lotes de workers perdidos o rezagados. Lo llama el hilo de ingesta
+     * antes de cada lote (o la espera previa a STOP, con la ingesta terminada): las filas
+     * viejas de un bus llegan a su nuevo dueño antes que las nuevas, y su velocidad se
+     * calcula en orden.
+     */
+    private void replayQueued() {
+        while (pendingReplays.get() > 0) {
+            Object item;
+            synchronized (replays) {
+                item = replays.poll();
+            }
+            if (item == null) {
+                return;
+            }
+            try {
+                replay(item);
+            } finally {
+                pendingReplays.decrementAndGet();
+                acknowledgementChanged();
+            }
+        }
+    }
+    
+    /**
+     * Reparte de nuevo un lote (DatagramBatch o RawChunk) de un worker perdido.
+     */
+    private void replay(Object item) {
+        try {
+            if (item instanceof RawChunk) {
+                RawChunk chunk = (RawChunk) item;
+                WorkerSender sender = nextActiveSender(replayCursor.getAndIncrement());
+                if (sender == null) {
+                    resultsLost = true;
+                    System.err.println("Master: No quedan workers activos para reenviar un bloque de " + chunk.getRows() + " filas");
+                    return;
+                }
+                sender.enqueue(chunk.copy(), ingestStats);
+                replayedRows.addAndGet(chunk.getRows());
+            } else {
+                DatagramBatch batch = (DatagramBatch) item;
+                distributeBatchToWorkers(batch);
+                replayedRows.addAndGet(batch.size());
+            }
+            replayedBatches.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Un worker confirmó lotes, se perdió o se atrasó, o cambió la cola de reenvíos:
+     * despierta a awaitAcknowledged. Lo llaman los CreditGate y los reenvíos.
+     */
+    void acknowledgementChanged() {
+        synchronized (ackMonitor) {
+            ackEvents++;
+            ackMonitor.notifyAll();
+        }
+    }
+    
+    /**
+     * Espera a que los workers activos terminen lo encolado y a que acaben los reenvíos:
+     * despierta con cada confirmación, reasignación o reenvío, sin sondeo.
+     */
+    private void awaitAcknowledged() {
+        long lastReport = System.currentTimeMillis();
+        try {
+            while (true) {
+                replayQueued();
+                long seen;
+                synchronized (ackMonitor) {
+                    seen = ackEvents; // Lo que cambie desde aquí despierta la espera de abajo
+                }
+                int pending = pendingReplays.get();
+                for (WorkerSender sender : senders) {
+                    if (sender.getWorker().isActive()) {
+                        pending += sender.getWorker().getCredits().getPendingItems();
+                    }
+                }
+                if (pending == 0) {
+                    // Nada pendiente: ya no hay lotes que reenviar si un worker se atrasa
+                    StragglerDetector detector = stragglerDetector;
+                    if (detector != null) {
+                        detector.stop();
+                        stragglerDetector = null;
+                    }
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= MasterConfig.MONITOR_INTERVAL_MS) {
+                    System.out.println("Master: Esperando que los workers terminen " + pending + " lotes antes de STOP");
+                    lastReport = now;
+                }
+                synchronized (ackMonitor) {
+                    long wait;
+                    while (ackEvents == seen
+                        && (wait = lastReport + MasterConfig.MONITOR_INTERVAL_MS - System.currentTimeMillis()) > 0) {
+                        ackMonitor.wait(wait);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void finishSenders() {
+        try {
+            for (WorkerSender sender : senders) {
+                sender.finish();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Métricas de las etapas de la última ejecución: ingesta y envío por worker.
+     */
+    public List<StageStats> getPipelineStats() {
+        List<StageStats> stats = new ArrayList<>(ingestStages);
+        for (WorkerSender sender : senders) {
+            stats.add(sender.getStats());
+        }
+        return stats;
+    }
+    
+    private String queueDepths() {
+        StringBuilder depths = new StringBuilder();
+        for (StageStats stage : getPipelineStats()) {
+            if (stage.getQueueCapacity() > 0) {
+                if (depths.length() > 0) depths.append(", ");
+                depths.append(stage.getName()).append(' ').append(stage.getQueueDepth()).append('/').append(stage.getQueueCapacity());
+            }
+        }
+        return depths.toString();
+    }
+    
+    private String inFlightSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (WorkerChannel worker : workers) {
+            CreditGate credits = worker.getCredits();
+            if (summary.length() > 0) summary.append(", ");
+            summary.append(String.format("W%d %d KB/%.0f ms", worker.getWorkerId(),
+                credits.getInFlightBytes() / 1024, credits.getCurrentLagMillis()));
+        }
+        return summary.toString();
+    }
+    
+    /**
+     * Créditos por worker: datos en vuelo, retraso de procesamiento y espera por crédito.
+     * El worker con mayor retraso medio se marca si duplica al más rápido.
+     */
+    private void printCreditStats() {
+        System.out.println("\n=== CRÉDITOS POR WORKER ===");
+        System.out.println("WORKER | LOTES   | FILAS PROC. | EN VUELO (KB) | MÁX. (KB) | RETRASO MEDIO (ms) | MÁX. (ms) | ESPERA CRÉDITO (ms)");
+        System.out.println("-------|---------|-------------|---------------|-----------|--------------------|-----------|--------------------");
+        double minLag = Double.MAX_VALUE;
+        double maxLag = 0;
+        WorkerChannel slowest = null;
+        for (WorkerChannel worker : workers) {
+            double lag = worker.getCredits().getAverageLagMillis();
+            minLag = Math.min(minLag, lag);
+            if (lag > maxLag) {
+                maxLag = lag;
+                slowest = worker;
+            }
+        }
+        for (WorkerChannel worker : workers) {
+            CreditGate credits = worker.getCredits();
+            System.out.println(String.format("W%-5d | %7d | %11d | %13.1f | %9.1f | %18.1f | %9.1f | %18.1f%s",
+                worker.getWorkerId(), credits.getSentBatches(), credits.getProcessedRows(),
+                credits.getInFlightBytes() / 1024.0, credits.getMaxInFlightBytes() / 1024.0,
+                credits.getAverageLagMillis(), credits.getMaxLagMillis(), credits.getWaitMillis(),
+                worker == slowest && workers.size() > 1 && maxLag > 2 * minLag ? "  ← más lento" : ""));
+        }
+    }
+    
+    private void printPipelineStats() {
+        System.out.println("\n=== ETAPAS DE INGESTA ===");
+        System.out.println("ETAPA        | ELEMENTOS  | COLA        | MÁX.  | ESPERA (ms)  | BLOQUEO (ms)");
+        System.out.println("-------------|------------|-------------|-------|--------------|-------------");
+        for (StageStats stage : getPipelineStats()) {
+            System.out.println(stage);
+        }
+        long bytesSent = 0;
+        for (WorkerChannel worker : workers) {
+            bytesSent += worker.getBytesSent();
+        }
+        if (MasterConfig.TRANSPORT_LOCAL.equals(transport)) {
+            System.out.println("Red: sin tramas, los lotes pasan como objetos a los workers en proceso");
+        } else {
+            System.out.println(String.format("Red: %.1f MB en tramas a workers (%.1f bytes/datagrama)",
+                bytesSent / (1024.0 * 1024.0), (double) bytesSent / Math.max(1, ingestStats.getItems())));
+        }
+        System.out.println(String.format("Resultados: %d parciales de workers (%.1f KB)",
+            resultFrames.get(), resultBytes.get() / 1024.0));
+    }
+    
+    private void addFilteredRows(DatagramRowDecoder decoder) {
+        filteredRows.addAndGet(decoder.getFilteredRows());
+        filteredBytes.addAndGet(decoder.getFilteredBytes());
+    }
+    
+    private void printFilterStats() {
+        if (filter.isEmpty()) {
+            return;
         }
+        if (rawIngest) {
+            System.out.println("\nFiltro aplicado por los workers (ingesta raw): " + filter);
+            return;
+        }
+        System.out.println("\n=== FILTRO EN EL MASTER ===");
+        System.out.println("Filtro: " + filter);
+        System.out.println("Filas descartadas al decodificar: " + filteredRows.get()
+            + (filteredBytes.get() > 0 ? " (" + filteredBytes.get() + " bytes de texto sin parsear)" : ""));
+        if (skippedRows.get() > 0) {
+            System.out.println(String.format("Filas omitidas por el índice: %d (%d bytes sin leer)",
+                skippedRows.get(), skippedBytes.get()));
+        }
+        System.out.println(String.format("Envío a workers evitado: ~%d bytes",
+            (filteredRows.get() + skippedRows.get()) * BatchCodec.BYTES_PER_ROW));
     }
     
     private void sendStopToAllWorkers() {
-        for (WorkerConnection worker : workers) {
+        for (WorkerChannel worker : workers) {
             if (worker != null) {
                 worker.sendStop();
             }
         }
     }
 
+    /**
+     * Los resultados se agregan a medida que llegan los parciales; aquí solo se
+     * reporta lo que aportó cada worker.
+     */
     private void aggregateResults() {
-        for (WorkerConnection worker : workers) {
-            Map<String, ArcSpeed> workerResults = worker.getResults();
-            
+        for (WorkerChannel worker : workers) {
             System.out.println(String.format(MasterConfig.WORKER_RESULTS, 
-                worker.getWorkerId(), workerResults.size()));
-            
-            for (Map.Entry<String, ArcSpeed> entry : workerResults.entrySet()) {
-                String arcKey = entry.getKey();
-                ArcSpeed workerSpeed = entry.getValue();
-                
-                aggregatedResults.computeIfAbsent(arcKey, k -> new ArcSpeed(workerSpeed.getArc()));
-                
-                ArcSpeed aggregated = aggregatedResults.get(arcKey);
-                
-                for (int i = 0; i < workerSpeed.getSampleCount(); i++) {
-                    aggregated.addSpeedSample(workerSpeed.getAverageSpeed());
-                }
-            }
+                worker.getWorkerId(), worker.getResults().size()));
         }
     }
 
@@ -504,18 +1767,115 @@ public class MasterNodeService {
                     .orElse(0.0)));
     }
 
-    public void addWorkerResults(int workerId, Map<String, ArcSpeed> results) {
-        System.out.println("Master: Recibidos resultados de Worker " + workerId + " (" + results.size() + " arcos)");
+    /**
+     * Suma un parcial del worker a sus resultados propios y a los agregados globales.
+     * Puede llamarse desde varios hilos de conexión a la vez.
+     */
+    void addWorkerResults(WorkerChannel worker, Map<String, ArcSpeed> workerResults, ResultDelta delta) {
+        int workerId = worker.getWorkerId();
+        if (!worker.getCredits().resultsReceived()) {
+            // Sus lotes ya se reenviaron a otros workers: esas muestras llegan por la copia
+            discardedResults.incrementAndGet();
+            return;
+        }
+        for (ResultDelta.Entry entry : delta.getEntries()) {
+            mergeEntry(workerResults, entry);
+            mergeEntry(aggregatedResults, entry);
+        }
+        CheckpointCoordinator coordinator = checkpoints;
+        if (coordinator != null) {
+            coordinator.resultsAccepted(worker, delta);
+        }
+        resultFrames.incrementAndGet();
+        resultBytes.addAndGet(delta.getEncodedSize());
+        if (delta.isLast()) {
+            System.out.println("Master: Recibidos resultados finales de Worker " + workerId + " (" + workerResults.size()
+                + " arcos, " + delta.getProcessedRows() + " datagramas)");
+        }
+    }
+
+    /**
+     * Confirmación de una marca de checkpoint, desde el hilo de la conexión del worker.
+     */
+    void checkpointConfirmed(WorkerChannel worker, CheckpointMark mark) {
+        CheckpointCoordinator coordinator = checkpoints;
+        if (coordinator != null) {
+            coordinator.confirmed(worker, mark);
+        }
+    }
+
+    void mergeEntry(Map<String, ArcSpeed> target, ResultDelta.Entry entry) {
+        target.compute(entry.key(), (key, speed) -> {
+            if (speed == null) {
+                speed = new ArcSpeed(resolveArc(key, entry));
+            }
+            entry.mergeInto(speed);
+            return speed;
+        });
+    }
+
+    private Arc resolveArc(String key, ResultDelta.Entry entry) {
+        Arc arc = arcsByKey.get(key);
+        if (arc != null) {
+            return arc;
+        }
+        // Arco que no está en el grafo del Master: se muestra solo con los ids
+        return new Arc(new Stop(entry.getFromStopId(), null, null, 0, 0),
+            new Stop(entry.getToStopId(), null, null, 0, 0), entry.getLineId(), 0);
+    }
+
+    /**
+     * Después de STOP solo falta el último parcial: un worker que no envía tramas hace
+     * WORKER_TIMEOUT_MS se da por perdido, con lo que no alcanzó a reportar, para no
+     * esperarlo indefinidamente.
+     */
+    private void abandonSilentWorkers() {
+        for (WorkerSender sender : senders) {
+            WorkerChannel worker = sender.getWorker();
+            double silence = worker.getCredits().getSilenceMillis();
+            if (worker.isActive() && silence >= MasterConfig.WORKER_TIMEOUT_MS) {
+                List<Object> lost = worker.getCredits().reassign(item -> { });
+                if (!lost.isEmpty()) {
+                    resultsLost = true; // El checkpoint se conserva para repetir desde él
+                }
+                lostWorkers.incrementAndGet();
+                System.err.println(String.format("Master: Worker %d no responde hace %.0f ms después de STOP; se descarta su último parcial (%d lotes sin resultados)",
+                    worker.getWorkerId(), silence, lost.size()));
+            }
+        }
+    }
+
+    /**
+     * Un worker terminó o se desconectó: despierta la espera de resultados.
+     */
+    void workerFinished() {
+        synchronized (resultsMonitor) {
+            resultsMonitor.notifyAll();
+        }
     }
 
     public void shutdown() {
         running = false;
+        synchronized (resultsMonitor) {
+            resultsMonitor.notifyAll(); // Libera a quien espera workers
+        }
         try {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
             }
-            executor.shutdown();
-            executor.awaitTermination(5, TimeUnit.SECONDS);
+            if (nioServer != null) {
+                nioServer.close();
+            }
+            // Un worker colgado no cierra su conexión: su hilo lector no terminaría nunca
+            for (WorkerChannel worker : workers) {
+                if (worker.isProcessing()) {
+                    worker.disconnect();
+                }
+            }
+            if (executor != null) {
+                executor.shutdown();
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            }
         } catch (Exception e) {
             // Ignorar errores de cierre
         }
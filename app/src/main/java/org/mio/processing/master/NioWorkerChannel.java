@@ -0,0 +1,342 @@
+package org.mio.processing.master;
+
+import org.mio.model.ArcSpeed;
+import org.mio.model.DatagramBatch;
+import org.mio.processing.config.MasterConfig;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.protocol.CheckpointMark;
+import org.mio.processing.protocol.FrameReader;
+import org.mio.processing.protocol.FrameType;
+import org.mio.processing.protocol.FrameWriter;
+import org.mio.processing.protocol.ResultDelta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Worker conectado por un canal no bloqueante. Los productores dejan tramas ya
+ * codificadas en una cola acotada por worker y el hilo del selector las escribe a
+ * medida que el socket lo permite y el worker da créditos, así un worker lento no
+ * frena a los demás. onReadable/onWritable solo se llaman desde el hilo del selector.
+ */
+class NioWorkerChannel implements WorkerChannel, WorkerSender {
+
+    private static final int INITIAL_INBOUND = 64 * 1024;
+    private static final long DRAIN_POLL_MS = 50;
+    private static final int HEADER_SIZE = FrameWriter.HEADER_SIZE;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final NioWorkerServer server;
+    private final MasterNodeService master;
+    private final Map<String, ArcSpeed> results = new ConcurrentHashMap<>();
+    private final CreditGate credits = new CreditGate();
+    // Tramas ya codificadas (ByteBuffer) o bloques CSV (RawChunk); espacio extra para CONNECTED, FILTER y STOP
+    private final BlockingQueue<Object> outbound = new ArrayBlockingQueue<>(MasterConfig.SENDER_QUEUE_BATCHES + 3);
+    private final Object drained = new Object();
+    private ByteBuffer inbound = ByteBuffer.allocate(INITIAL_INBOUND);
+    private volatile Object pending; // Trama a medio escribir
+    private int pendingRows;
+    private long blockedSince; // Momento en que el socket dejó de aceptar bytes
+    private volatile StageStats stats = new StageStats("envío", outbound);
+    private volatile long bytesSent;
+    private volatile boolean processing = true;
+    private volatile boolean closed;
+    private volatile boolean finished; // Llegó el último parcial de resultados
+    private volatile int workerId;
+
+    NioWorkerChannel(SocketChannel channel, SelectionKey key, NioWorkerServer server, MasterNodeService master) {
+        this.channel = channel;
+        this.key = key;
+        this.server = server;
+        this.master = master;
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    void onReadable() throws IOException {
+        int read = channel.read(inbound);
+        if (read < 0) {
+            close();
+            return;
+        }
+        inbound.flip();
+        while (inbound.remaining() >= HEADER_SIZE) {
+            int length = inbound.getInt(inbound.position());
+            byte type = inbound.get(inbound.position() + Integer.BYTES);
+            if (length < 0 || length > FrameReader.MAX_FRAME_SIZE) {
+                throw new IOException("Trama " + FrameType.name(type) + " inválida: " + length + " bytes");
+            }
+            if (inbound.remaining() < HEADER_SIZE + length) {
+                break;
+            }
+            ByteBuffer payload = inbound.slice(inbound.position() + HEADER_SIZE, length);
+            inbound.position(inbound.position() + HEADER_SIZE + length);
+            handleFrame(type, payload);
+        }
+        inbound.compact();
+        // Agrandar el buffer si la trama en curso no cabe
+        if (inbound.position() >= HEADER_SIZE) {
+            int needed = HEADER_SIZE + inbound.getInt(0);
+            if (needed > inbound.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(needed);
+                inbound.flip();
+                larger.put(inbound);
+                inbound = larger;
+            }
+        }
+    }
+
+    private void handleFrame(byte type, ByteBuffer payload) throws IOException {
+        if (type == FrameType.REGISTER) {
+            workerId = payload.getInt();
+            String address = FrameReader.readString(payload);
+            System.out.println("Master: Worker " + workerId + " conectado desde " + address + " (NIO)");
+            outbound.offer(FrameWriter.encodeConnected(workerId));
+            server.requestWrite(this);
+            master.workerJoined(this);
+        } else if (type == FrameType.CREDIT) {
+            credits.grant(payload.getInt(), payload.getInt(), payload.getLong());
+            if (pending != null || !outbound.isEmpty()) {
+                server.requestWrite(this);
+            }
+        } else if (type == FrameType.HEARTBEAT) {
+            credits.heartbeat(payload.getLong(), payload.getLong(), payload.getInt());
+        } else if (type == FrameType.RESULTS) {
+            ResultDelta delta = ResultDelta.decode(payload);
+            master.addWorkerResults(this, results, delta);
+            if (delta.isLast()) {
+                finished = true;
+                processing = false;
+                master.workerFinished();
+            }
+        } else if (type == FrameType.CHECKPOINT) {
+            master.checkpointConfirmed(this, CheckpointMark.readFrom(payload));
+        }
+    }
+
+    /**
+     * Escribe lo pendiente hasta que el socket no acepte más. Retorna true si no queda nada
+     * que escribir por ahora (cola vacía o sin créditos para el siguiente lote).
+     */
+    boolean onWritable() throws IOException {
+        if (blockedSince != 0) {
+            stats.addStall(System.nanoTime() - blockedSince);
+            blockedSince = 0;
+        }
+        while (true) {
+            if (pending == null) {
+                Object next = outbound.peek();
+                if (next == null) {
+                    synchronized (drained) {
+                        drained.notifyAll();
+                    }
+                    return true;
+                }
+                RawChunk chunk = next instanceof RawChunk ? (RawChunk) next : null;
+                boolean batch = chunk != null || ((ByteBuffer) next).get(Integer.BYTES) == FrameType.BATCH;
+                if (batch && !credits.tryAcquire()) {
+                    // Sin créditos: se retoma cuando llegue una trama CREDIT
+                    return true;
+                }
+                pending = outbound.poll();
+                if (chunk != null) {
+                    pendingRows = chunk.getRows();
+                    credits.sent(chunk.frameSize(), pendingRows);
+                } else {
+                    ByteBuffer frame = (ByteBuffer) pending;
+                    pendingRows = batch ? frame.getInt(HEADER_SIZE) : 0;
+                    if (batch) {
+                        credits.sent(frame.remaining(), pendingRows);
+                    }
+                }
+            }
+            boolean done;
+            if (pending instanceof RawChunk) {
+                // transferTo del archivo al socket: escribe lo que el socket acepte
+                RawChunk chunk = (RawChunk) pending;
+                bytesSent += chunk.writeTo(channel);
+                done = chunk.isDone();
+            } else {
+                ByteBuffer frame = (ByteBuffer) pending;
+                bytesSent += channel.write(frame);
+                done = !frame.hasRemaining();
+            }
+            if (!done) {
+                blockedSince = System.nanoTime();
+                return false;
+            }
+            stats.addItems(pendingRows);
+            pending = null;
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        processing = false;
+        credits.close();
+        if (!finished) {
+            master.workerLeft(this);
+        }
+        master.workerFinished();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignorar errores de cierre
+        }
+        // Liberar a los productores que esperan espacio en la cola
+        outbound.clear();
+        synchronized (drained) {
+            drained.notifyAll();
+        }
+    }
+
+    // --- WorkerSender: la cola de salida es la etapa de envío, sin hilo propio ---
+
+    @Override
+    public void start() {
+        stats = new StageStats("envío W" + workerId, outbound);
+    }
+
+    @Override
+    public void enqueue(DatagramBatch batch, StageStats producer) throws InterruptedException {
+        // Si el canal ya cerró, el lote queda retenido y se reenvía a otro worker
+        if (!credits.track(batch) || closed) {
+            return;
+        }
+        // Un rezagado puede no vaciar nunca su cola: sus lotes ya pasaron a otros
+        if (producer.put(outbound, FrameWriter.encodeBatch(batch), this::isAbandoned)) {
+            server.requestWrite(this);
+        }
+    }
+
+    @Override
+    public void enqueue(RawChunk chunk, StageStats producer) throws InterruptedException {
+        if (!credits.track(chunk) || closed) {
+            return;
+        }
+        if (producer.put(outbound, chunk, this::isAbandoned)) {
+            server.requestWrite(this);
+        }
+    }
+
+    @Override
+    public void enqueue(CheckpointMark mark, StageStats producer) throws InterruptedException {
+        if (!closed && producer.put(outbound, FrameWriter.encodeCheckpoint(mark), this::isAbandoned)) {
+            server.requestWrite(this);
+        }
+    }
+
+    private boolean isAbandoned() {
+        return closed || credits.isReassigned();
+    }
+
+    @Override
+    public void finish() throws InterruptedException {
+        synchronized (drained) {
+            // Un worker rezagado ya no recibe lo que le falta: esos lotes pasaron a otros
+            while (!isAbandoned() && (!outbound.isEmpty() || pending != null)) {
+                drained.wait(DRAIN_POLL_MS);
+            }
+        }
+    }
+
+    @Override
+    public StageStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public WorkerChannel getWorker() {
+        return this;
+    }
+
+    // --- WorkerChannel ---
+
+    @Override
+    public CreditGate getCredits() {
+        return credits;
+    }
+
+    @Override
+    public WorkerSender newSender() {
+        return this;
+    }
+
+    @Override
+    public void sendFilter(DatagramFilter filter) {
+        if (closed) {
+            return;
+        }
+        try {
+            outbound.put(FrameWriter.encodeFilter(filter));
+            server.requestWrite(this);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void sendCheckpoint(CheckpointMark mark) {
+        if (closed) {
+            return;
+        }
+        try {
+            outbound.put(FrameWriter.encodeCheckpoint(mark));
+            server.requestWrite(this);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void sendStop() {
+        if (closed) {
+            return;
+        }
+        try {
+            if (credits.isReassigned()) {
+                // Sin esperar a un rezagado con la cola llena: su conexión se cierra al apagar el Master
+                outbound.offer(FrameWriter.encodeStop());
+            } else {
+                outbound.put(FrameWriter.encodeStop());
+            }
+            server.requestWrite(this);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int getWorkerId() {
+        return workerId;
+    }
+
+    @Override
+    public boolean isProcessing() {
+        return processing;
+    }
+
+    @Override
+    public Map<String, ArcSpeed> getResults() {
+        return new HashMap<>(results);
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent;
+    }
+}
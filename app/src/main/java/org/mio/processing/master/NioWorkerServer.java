@@ -0,0 +1,138 @@
+package org.mio.processing.master;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Transporte NIO del Master: un solo hilo con un Selector acepta conexiones, lee las
+ * tramas de todos los workers y escribe sus colas de salida con escrituras no
+ * bloqueantes. No hay un hilo por conexión, así que escala a decenas de workers.
+ */
+class NioWorkerServer implements Runnable {
+
+    private final int port;
+    private final MasterNodeService master;
+    private final List<WorkerChannel> workers;
+    private final Queue<NioWorkerChannel> writeRequests = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running = true;
+
+    NioWorkerServer(int port, MasterNodeService master, List<WorkerChannel> workers) {
+        this.port = port;
+        this.master = master;
+        this.workers = workers;
+        this.thread = new Thread(this, "nio-selector");
+        this.thread.setDaemon(true);
+    }
+
+    void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        thread.start();
+    }
+
+    /**
+     * Pide al hilo del selector que escriba la cola de este worker (llamable desde cualquier hilo).
+     */
+    void requestWrite(NioWorkerChannel worker) {
+        writeRequests.add(worker);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                enableWrites();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        handle(key, (NioWorkerChannel) key.attachment());
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // Cierre del transporte
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Master: Error en el selector NIO: " + e.getMessage());
+            }
+        }
+    }
+
+    private void enableWrites() {
+        NioWorkerChannel worker;
+        while ((worker = writeRequests.poll()) != null) {
+            SelectionKey key = worker.getKey();
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        NioWorkerChannel worker = new NioWorkerChannel(channel, key, this, master);
+        key.attach(worker);
+        workers.add(worker);
+    }
+
+    private void handle(SelectionKey key, NioWorkerChannel worker) {
+        try {
+            if (key.isReadable()) {
+                worker.onReadable();
+            }
+            if (key.isValid() && key.isWritable() && worker.onWritable()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            System.err.println("Error en conexión con Worker " + worker.getWorkerId() + ": " + e.getMessage());
+            worker.close();
+        }
+    }
+
+    void close() {
+        running = false;
+        try {
+            if (selector != null) {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            }
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            // Ignorar errores de cierre
+        }
+    }
+}
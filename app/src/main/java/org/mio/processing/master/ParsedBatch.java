@@ -0,0 +1,25 @@
+package org.mio.processing.master;
+
+import org.mio.model.DatagramBatch;
+
+/**
+ * Lote ya parseado que espera su turno para distribuirse en el orden del archivo:
+ * cada bus tiene que llegar a su worker en orden para que la velocidad se calcule
+ * contra su punto anterior.
+ */
+final class ParsedBatch {
+
+    static final ParsedBatch END = new ParsedBatch(null, 0, 0, -1);
+
+    final DatagramBatch batch;
+    final int rows;
+    final int errorRows;
+    final long endOffset; // Posición de la línea que sigue al lote, -1 si no se conoce
+
+    ParsedBatch(DatagramBatch batch, int rows, int errorRows, long endOffset) {
+        this.batch = batch;
+        this.rows = rows;
+        this.errorRows = errorRows;
+        this.endOffset = endOffset;
+    }
+}
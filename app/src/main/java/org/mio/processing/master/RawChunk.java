@@ -0,0 +1,112 @@
+package org.mio.processing.master;
+
+import org.mio.processing.protocol.FrameWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Bloque de líneas CSV completas del archivo de entrada, enviado como trama CHUNK:
+ * el encabezado se escribe desde un buffer y el payload se transfiere con transferTo
+ * directo del archivo al socket, sin pasar por buffers del Master.
+ */
+class RawChunk {
+
+    private final FileChannel file;
+    private final long position;
+    private final int length;
+    private final int rows;
+    private final ByteBuffer header;
+    private long transferred;
+
+    RawChunk(FileChannel file, long position, int length, int rows) {
+        this.file = file;
+        this.position = position;
+        this.length = length;
+        this.rows = rows;
+        this.header = FrameWriter.encodeChunkHeader(length);
+    }
+
+    /**
+     * Escribe lo que el canal acepte (todo si es bloqueante). Retorna los bytes escritos.
+     * Falla si el archivo ya no llega hasta el bloque (truncado o reemplazado).
+     */
+    long writeTo(WritableByteChannel channel) throws IOException {
+        long written = 0;
+        if (header.hasRemaining()) {
+            written += channel.write(header);
+            if (header.hasRemaining()) {
+                return written;
+            }
+        }
+        while (transferred < length) {
+            long sent = file.transferTo(position + transferred, length - transferred, channel);
+            if (sent <= 0) {
+                if (file.size() <= position + transferred) {
+                    throw new IOException("El archivo termina antes del bloque, posición " + filePosition());
+                }
+                break;
+            }
+            transferred += sent;
+            written += sent;
+        }
+        return written;
+    }
+
+    /**
+     * Copia las líneas del bloque a un buffer propio (transporte en proceso, sin socket).
+     */
+    ByteBuffer read() throws IOException {
+        ByteBuffer lines = ByteBuffer.allocate(length);
+        readInto(lines);
+        lines.flip();
+        return lines;
+    }
+
+    /**
+     * Lee las líneas del bloque en 'target' desde su posición actual (cola compartida).
+     */
+    void readInto(ByteBuffer target) throws IOException {
+        int start = target.position();
+        while (target.position() - start < length) {
+            if (file.read(target, position + target.position() - start) < 0) {
+                break;
+            }
+        }
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Mismo bloque sin nada escrito, para reenviarlo a otro worker.
+     */
+    RawChunk copy() {
+        return new RawChunk(file, position, length, rows);
+    }
+
+    /**
+     * Posición del archivo hasta la que se transfirió el bloque.
+     */
+    long filePosition() {
+        return position + transferred;
+    }
+
+    boolean isDone() {
+        return !header.hasRemaining() && transferred == length;
+    }
+
+    /**
+     * Tamaño total de la trama (encabezado + líneas).
+     */
+    int frameSize() {
+        return FrameWriter.HEADER_SIZE + length;
+    }
+
+    int getRows() {
+        return rows;
+    }
+}
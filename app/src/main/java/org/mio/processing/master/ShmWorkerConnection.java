@@ -0,0 +1,209 @@
+package org.mio.processing.master;
+
+import org.mio.model.DatagramBatch;
+import org.mio.processing.config.MasterConfig;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.protocol.BatchCodec;
+import org.mio.processing.protocol.CheckpointMark;
+import org.mio.processing.protocol.FrameType;
+import org.mio.processing.protocol.FrameWriter;
+import org.mio.processing.transport.SharedRing;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Worker del mismo host: el registro, los créditos y los resultados siguen por TCP,
+ * pero lotes, bloques CSV, filtro, marcas de checkpoint y STOP se escriben directo en una cola circular
+ * mapeada en memoria (SharedRing), sin pasar por el stack de red. Si la cola no se
+ * puede crear, la conexión sigue por el socket como una WorkerConnection común.
+ */
+class ShmWorkerConnection extends WorkerConnection {
+
+    private final int ringCapacity;
+    private SharedRing ring;
+    private Path ringPath;
+    private long ringBytes;
+
+    ShmWorkerConnection(Socket socket, MasterNodeService master, int batchSize) throws IOException {
+        super(socket, master);
+        // Dos registros del mayor tamaño posible caben siempre en la cola
+        int largest = Math.max(BatchCodec.maxEncodedSize(batchSize), MasterConfig.RAW_CHUNK_SIZE);
+        this.ringCapacity = Math.max(MasterConfig.SHM_RING_SIZE, 2 * (largest + Long.BYTES));
+    }
+
+    /**
+     * Directorio de la cola: /dev/shm (memoria) si existe, si no el temporal del sistema.
+     */
+    static Path ringDirectory() {
+        Path shm = Path.of("/dev/shm");
+        return Files.isDirectory(shm) ? shm : Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
+    @Override
+    protected void onRegistered(FrameWriter out) throws IOException {
+        Path path = ringDirectory().resolve(MasterConfig.SHM_RING_PREFIX + getWorkerId() + ".ring");
+        try {
+            ring = SharedRing.create(path, ringCapacity);
+            ringPath = path;
+        } catch (IOException e) {
+            System.err.println("Master: No se pudo crear la cola compartida para Worker " + getWorkerId()
+                + ", se usa el socket: " + e.getMessage());
+            return;
+        }
+        out.writeRing(path.toString());
+        System.out.println(String.format("Master: Worker %d usa cola compartida %s (%d KB)",
+            getWorkerId(), path, ring.getCapacity() / 1024));
+    }
+
+    @Override
+    public void sendBatch(DatagramBatch batch) {
+        sendLock.lock();
+        try {
+            if (ring == null) {
+                super.sendBatch(batch);
+                return;
+            }
+            ByteBuffer record = claim(BatchCodec.maxEncodedSize(batch.size()));
+            if (record != null) {
+                BatchCodec.encode(batch, record);
+                publish(FrameType.BATCH, record.position(), batch.size());
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Copia las líneas del archivo directo al mapeo de la cola, sin buffers intermedios.
+     */
+    @Override
+    public void sendChunk(RawChunk chunk) {
+        sendLock.lock();
+        try {
+            if (ring == null) {
+                super.sendChunk(chunk);
+                return;
+            }
+            ByteBuffer record = claim(chunk.getLength());
+            if (record == null) {
+                return;
+            }
+            try {
+                chunk.readInto(record);
+                publish(FrameType.CHUNK, record.position(), chunk.getRows());
+            } catch (IOException e) {
+                System.err.println("Error enviando bloque a Worker " + getWorkerId() + ": " + e.getMessage());
+                // El registro quedó reservado sin publicar: se corta la conexión y el bloque se reenvía como en una baja
+                disconnect();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendFilter(DatagramFilter filter) {
+        sendLock.lock();
+        try {
+            if (ring == null) {
+                super.sendFilter(filter);
+                return;
+            }
+            ByteBuffer record = claim(filter.encodedSize());
+            if (record != null) {
+                filter.writeTo(record);
+                publish(FrameType.FILTER, record.position(), 0);
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendCheckpoint(CheckpointMark mark) {
+        sendLock.lock();
+        try {
+            if (ring == null) {
+                super.sendCheckpoint(mark);
+                return;
+            }
+            ByteBuffer record = claim(mark.encodedSize());
+            if (record != null) {
+                mark.writeTo(record);
+                publish(FrameType.CHECKPOINT, record.position(), 0);
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendStop() {
+        sendLock.lock();
+        try {
+            if (ring == null) {
+                super.sendStop();
+                return;
+            }
+            if (getCredits().isReassigned()) {
+                // Rezagado: la cola puede estar llena; cerrarla le indica el fin sin esperar espacio
+                ring.markClosed();
+                return;
+            }
+            if (claim(0) != null) {
+                publish(FrameType.STOP, 0, 0);
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Espera espacio en la cola; retorna null si el worker terminó o se declaró rezagado mientras tanto.
+     */
+    private ByteBuffer claim(int maxPayload) {
+        return ring.claim(maxPayload, () -> !isActive());
+    }
+
+    private void publish(byte type, int length, int rows) {
+        ring.publish(type, length);
+        ringBytes += length;
+        if (type == FrameType.BATCH || type == FrameType.CHUNK) {
+            getCredits().sent(length, rows);
+        }
+    }
+
+    @Override
+    public long getBytesSent() {
+        sendLock.lock();
+        try {
+            return super.getBytesSent() + ringBytes;
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    @Override
+    protected void onClosed() {
+        sendLock.lock();
+        try {
+            if (ring == null) {
+                return;
+            }
+            ring.markClosed();
+            try {
+                ring.close();
+                Files.deleteIfExists(ringPath);
+            } catch (IOException e) {
+                // Ignorar errores de cierre
+            }
+            ring = null;
+        } finally {
+            sendLock.unlock();
+        }
+    }
+}
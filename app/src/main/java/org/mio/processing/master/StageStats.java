@@ -0,0 +1,99 @@
+package org.mio.processing.master;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Métricas de una etapa del pipeline de ingesta del Master: elementos procesados,
+ * profundidad de su cola de entrada, tiempo esperando entrada (etapa ociosa) y tiempo
+ * bloqueada entregando salida (contrapresión de la etapa siguiente).
+ * Puede compartirse entre varios hilos de la misma etapa.
+ */
+public class StageStats {
+
+    private static final long ABANDON_POLL_MS = 50;
+
+    private final String name;
+    private final BlockingQueue<?> input;
+    private final int capacity;
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong idleNanos = new AtomicLong();
+    private final AtomicLong stallNanos = new AtomicLong();
+    private volatile int maxDepth;
+
+    public StageStats(String name, BlockingQueue<?> input) {
+        this.name = name;
+        this.input = input;
+        this.capacity = input == null ? 0 : input.size() + input.remainingCapacity();
+    }
+
+    /**
+     * Toma de la cola de entrada contando la espera como tiempo ocioso.
+     */
+    public <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+        int depth = queue.size();
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        long start = System.nanoTime();
+        T item = queue.take();
+        idleNanos.addAndGet(System.nanoTime() - start);
+        return item;
+    }
+
+    /**
+     * Entrega a una cola de salida contando el bloqueo como contrapresión.
+     */
+    public <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+        if (!queue.offer(item)) {
+            long start = System.nanoTime();
+            queue.put(item);
+            stallNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Como put, pero deja de esperar si 'abandon' se cumple (se revisa cada ABANDON_POLL_MS).
+     * Retorna false si el elemento no se entregó.
+     */
+    public <T> boolean put(BlockingQueue<T> queue, T item, BooleanSupplier abandon) throws InterruptedException {
+        if (queue.offer(item)) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            while (!queue.offer(item, ABANDON_POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (abandon.getAsBoolean()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            stallNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    public void addStall(long nanos) {
+        stallNanos.addAndGet(nanos);
+    }
+
+    public void addItems(long count) {
+        items.addAndGet(count);
+    }
+
+    public String getName() { return name; }
+    public long getItems() { return items.get(); }
+    public int getQueueDepth() { return input == null ? 0 : input.size(); }
+    public int getMaxQueueDepth() { return maxDepth; }
+    public int getQueueCapacity() { return capacity; }
+    public double getIdleMs() { return idleNanos.get() / 1_000_000.0; }
+    public double getStallMs() { return stallNanos.get() / 1_000_000.0; }
+
+    @Override
+    public String toString() {
+        return String.format("%-12s | %10d | %5d/%-5d | %5d | %12.1f | %12.1f",
+            name, getItems(), getQueueDepth(), capacity, maxDepth, getIdleMs(), getStallMs());
+    }
+}
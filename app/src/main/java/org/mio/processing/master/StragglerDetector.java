@@ -0,0 +1,138 @@
+package org.mio.processing.master;
+
+import org.mio.processing.config.MasterConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detección de workers rezagados durante el reparto. Cada STRAGGLER_CHECK_MS mide el
+ * retraso de cada worker activo (su lote sin terminar más viejo, desde que se entregó a
+ * la cola de envío, o el tiempo que lleva en el lote actual según su latido) y su ritmo
+ * mientras tuvo lotes pendientes. Es rezagado si su retraso supera STRAGGLER_MIN_LAG_MS
+ * y STRAGGLER_FACTOR veces la mediana de los demás, y su ritmo es STRAGGLER_RATE_FACTOR
+ * veces menor: un worker sano con más buses que los demás tiene cola larga pero buen ritmo.
+ * Uno que no envía tramas hace WORKER_TIMEOUT_MS es rezagado siempre. El Master reparte
+ * de nuevo sus lotes sin resultados; nunca se declara rezagado al último worker activo.
+ */
+class StragglerDetector implements Runnable {
+
+    private static final double RATE_SMOOTHING = 0.5; // Peso de la última medición en el promedio móvil
+
+    private final List<WorkerSender> senders;
+    private final MasterNodeService master;
+    private final Thread thread;
+    private final Map<WorkerChannel, Progress> progress = new IdentityHashMap<>(); // Solo el hilo del detector
+    private volatile boolean running = true;
+    private long lastCheck = System.nanoTime();
+
+    /**
+     * Avance de un worker entre revisiones.
+     */
+    private static final class Progress {
+        long processedRows;
+        double rate; // Filas por segundo con lotes pendientes
+    }
+
+    StragglerDetector(List<WorkerSender> senders, MasterNodeService master) {
+        this.senders = senders;
+        this.master = master;
+        this.thread = new Thread(this, "straggler-detector");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                Thread.sleep(MasterConfig.STRAGGLER_CHECK_MS);
+                if (running) {
+                    check();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Fin del reparto
+        }
+    }
+
+    /**
+     * Declara a lo sumo un rezagado por revisión: el resto se compara sin él en la siguiente.
+     */
+    private void check() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastCheck) / 1e9;
+        lastCheck = now;
+        List<WorkerChannel> active = new ArrayList<>();
+        for (WorkerSender sender : senders) {
+            if (sender.getWorker().isActive()) {
+                active.add(sender.getWorker());
+            }
+        }
+        double[] lags = new double[active.size()];
+        double[] rates = new double[active.size()];
+        for (int i = 0; i < lags.length; i++) {
+            CreditGate credits = active.get(i).getCredits();
+            lags[i] = Math.max(credits.getPendingAgeMillis(), credits.getBusyMillis());
+            rates[i] = updateRate(active.get(i), credits.getProcessedRows(), lags[i] > 0, elapsedSeconds);
+        }
+        if (active.size() < 2) {
+            return;
+        }
+        for (int i = 0; i < lags.length; i++) {
+            double silence = active.get(i).getCredits().getSilenceMillis();
+            if (silence >= MasterConfig.WORKER_TIMEOUT_MS) {
+                master.workerStraggling(active.get(i), String.format("sin tramas hace %.0f ms", silence));
+                return;
+            }
+        }
+        for (int i = 0; i < lags.length; i++) {
+            double medianLag = medianWithout(lags, i);
+            double medianRate = medianWithout(rates, i);
+            if (lags[i] >= MasterConfig.STRAGGLER_MIN_LAG_MS && lags[i] >= MasterConfig.STRAGGLER_FACTOR * medianLag
+                && rates[i] * MasterConfig.STRAGGLER_RATE_FACTOR <= medianRate) {
+                master.workerStraggling(active.get(i), String.format(
+                    "retraso %.0f ms vs mediana %.0f ms, ritmo %.0f vs %.0f filas/s, %d lotes en cola",
+                    lags[i], medianLag, rates[i], medianRate, active.get(i).getCredits().getQueuedBatches()));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Actualiza el ritmo solo si el worker tenía trabajo: uno ocioso conserva el anterior.
+     */
+    private double updateRate(WorkerChannel worker, long processedRows, boolean pending, double elapsedSeconds) {
+        Progress p = progress.computeIfAbsent(worker, k -> new Progress());
+        long rows = processedRows - p.processedRows;
+        p.processedRows = processedRows;
+        if ((pending || rows > 0) && elapsedSeconds > 0) {
+            double rate = rows / elapsedSeconds;
+            p.rate = p.rate == 0 ? rate : RATE_SMOOTHING * rate + (1 - RATE_SMOOTHING) * p.rate;
+        }
+        return p.rate;
+    }
+
+    private static double medianWithout(double[] values, int skip) {
+        double[] others = new double[values.length - 1];
+        for (int i = 0, j = 0; i < values.length; i++) {
+            if (i != skip) {
+                others[j++] = values[i];
+            }
+        }
+        Arrays.sort(others);
+        int middle = others.length / 2;
+        return others.length % 2 == 1 ? others[middle] : (others[middle - 1] + others[middle]) / 2;
+    }
+}
@@ -0,0 +1,63 @@
+package org.mio.processing.master;
+
+import org.mio.model.ArcSpeed;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.protocol.CheckpointMark;
+
+import java.util.Map;
+
+/**
+ * Vista del Master sobre un worker conectado, independiente del transporte
+ * (socket bloqueante con hilo propio o canal no bloqueante del selector).
+ */
+interface WorkerChannel {
+
+    int getWorkerId();
+
+    boolean isProcessing();
+
+    /**
+     * Procesando y con sus lotes propios: no se perdió ni se declaró rezagado.
+     */
+    default boolean isActive() {
+        return isProcessing() && !getCredits().isReassigned();
+    }
+
+    Map<String, ArcSpeed> getResults();
+
+    void sendStop();
+
+    /**
+     * Envía el filtro de ingesta; en la ingesta raw lo aplica el worker al parsear.
+     */
+    void sendFilter(DatagramFilter filter);
+
+    /**
+     * Envía una marca de checkpoint sin pasar por la etapa de envío (al reanudar, antes
+     * del primer lote, con las colas de buses guardadas).
+     */
+    void sendCheckpoint(CheckpointMark mark);
+
+    /**
+     * Bytes de tramas enviados a este worker.
+     */
+    long getBytesSent();
+
+    /**
+     * Créditos, datos en vuelo y retraso de procesamiento del worker.
+     */
+    CreditGate getCredits();
+
+    /**
+     * Etapa de envío de lotes hacia este worker para una ejecución.
+     */
+    WorkerSender newSender();
+
+    /**
+     * Cierra la conexión de un worker que sigue conectado al apagar el Master (por
+     * ejemplo, un rezagado que no responde) o tras un envío fallido que dejó una trama
+     * a medias. NIO y local cierran por su cuenta.
+     */
+    default void disconnect() {
+    }
+}
@@ -1,70 +1,97 @@
 package org.mio.processing.master;
 
 import org.mio.model.*;
+import org.mio.processing.config.MasterConfig;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.protocol.CheckpointMark;
+import org.mio.processing.protocol.FrameReader;
+import org.mio.processing.protocol.FrameType;
+import org.mio.processing.protocol.FrameWriter;
+import org.mio.processing.protocol.ResultDelta;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.io.*;
 import java.net.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
-public class WorkerConnection implements Runnable {
+/**
+ * Conexión bloqueante con un worker: un hilo del pool lee sus tramas y un
+ * BatchSender con hilo propio escribe los lotes.
+ */
+public class WorkerConnection implements WorkerChannel, Runnable {
     private final Socket socket;
     private final MasterNodeService master;
     private final Map<String, ArcSpeed> results;
-    private final ObjectOutputStream out;
-    private final ObjectInputStream in;
+    private final CreditGate credits = new CreditGate();
+    private final FrameWriter out;
+    private final FrameReader in;
+    // Lock y no synchronized: un hilo virtual que espera al socket no retiene su hilo portador
+    protected final ReentrantLock sendLock = new ReentrantLock();
     private volatile boolean processing;
+    private boolean finished; // Llegó el último parcial de resultados
+    private long chunkBytesSent;
     private int workerId;
 
     public WorkerConnection(Socket socket, MasterNodeService master) throws IOException {
         this.socket = socket;
         this.master = master;
         this.results = new ConcurrentHashMap<>();
-        this.out = new ObjectOutputStream(socket.getOutputStream());
-        this.in = new ObjectInputStream(socket.getInputStream());
+        this.socket.setTcpNoDelay(true); // Cada trama ya es un lote completo
+        this.out = new FrameWriter(socket.getOutputStream());
+        this.in = new FrameReader(socket.getInputStream());
         this.processing = true;
     }
 
     @Override
     public void run() {
         try {
-            // Esperar mensaje de registro
-            Object message = in.readObject();
-            if (message instanceof Map) {
-                Map<String, Object> registration = (Map<String, Object>) message;
-                if ("REGISTER".equals(registration.get("type"))) {
-                    this.workerId = (Integer) registration.get("workerId");
-                    String address = (String) registration.get("address");
-                    
-                    System.out.println("Master: Worker " + workerId + " conectado desde " + address);
-                    
-                    // Enviar confirmación
-                    Map<String, Object> confirmation = new HashMap<>();
-                    confirmation.put("type", "CONNECTED");
-                    confirmation.put("workerId", workerId);
-                    out.writeObject(confirmation);
-                    out.flush();
-                    
-                    // Procesar mensajes del worker
-                    while (processing) {
-                        try {
-                            message = in.readObject();
-                            if (message instanceof Map) {
-                                Map<String, Object> msg = (Map<String, Object>) message;
-                                if ("RESULTS".equals(msg.get("type"))) {
-                                    this.results.putAll((Map<String, ArcSpeed>) msg.get("results"));
-                                    master.addWorkerResults(workerId, this.results);
-                                    processing = false;
-                                }
-                            }
-                        } catch (EOFException e) {
-                            break;
+            // Esperar trama de registro
+            if (in.next() == FrameType.REGISTER) {
+                this.workerId = in.readInt();
+                String address = in.readString();
+                
+                System.out.println("Master: Worker " + workerId + " conectado desde " + address);
+                
+                // Enviar confirmación
+                sendConnected();
+                master.workerJoined(this);
+                
+                // Procesar tramas del worker
+                while (processing) {
+                    byte type = in.next();
+                    if (type < 0) {
+                        break;
+                    }
+                    if (type == FrameType.CREDIT) {
+                        credits.grant(in.readInt(), in.readInt(), in.readLong());
+                    } else if (type == FrameType.HEARTBEAT) {
+                        credits.heartbeat(in.readLong(), in.readLong(), in.readInt());
+                    } else if (type == FrameType.RESULTS) {
+                        ResultDelta delta = in.readResults();
+                        master.addWorkerResults(this, results, delta);
+                        if (delta.isLast()) {
+                            finished = true;
+                            processing = false;
                         }
+                    } else if (type == FrameType.CHECKPOINT) {
+                        master.checkpointConfirmed(this, in.readCheckpoint());
                     }
                 }
             }
         } catch (Exception e) {
             System.err.println("Error en conexión con Worker " + workerId + ": " + e.getMessage());
         } finally {
+            // Liberar al hilo de envío si espera créditos de un worker que ya no responde
+            processing = false;
+            credits.close();
+            onClosed();
+            if (!finished) {
+                // Sin el último parcial: lo no cubierto por resultados pasa a los demás
+                master.workerLeft(this);
+            }
+            master.workerFinished();
             try {
                 socket.close();
             } catch (IOException e) {
@@ -73,33 +100,165 @@ public class WorkerConnection implements Runnable {
         }
     }
 
-    public void sendDatagram(Datagram datagram) {
+    private void sendConnected() throws IOException {
+        sendLock.lock();
         try {
-            out.writeObject(datagram);
-            out.flush();
-        } catch (IOException e) {
-            System.err.println("Error enviando datagrama a Worker " + workerId + ": " + e.getMessage());
+            out.writeConnected(workerId);
+            onRegistered(out);
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Se llama tras confirmar el registro, con el lock tomado y antes de cualquier lote.
+     */
+    protected void onRegistered(FrameWriter out) throws IOException {
+    }
+
+    /**
+     * Se llama al terminar la conexión con el worker.
+     */
+    protected void onClosed() {
+    }
+
+    /**
+     * Envía el lote como una sola trama binaria (un write y un flush por lote).
+     * Quien llama debe haber tomado un crédito (ver BatchSender).
+     */
+    public void sendBatch(DatagramBatch batch) {
+        sendLock.lock();
+        try {
+            try {
+                long before = out.getBytesWritten();
+                out.writeBatch(batch);
+                credits.sent(out.getBytesWritten() - before, batch.size());
+            } catch (IOException e) {
+                System.err.println("Error enviando lote a Worker " + workerId + ": " + e.getMessage());
+                // La trama quedó a medias: se corta la conexión y el lote se reenvía como en una baja
+                disconnect();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Envía un bloque CSV sin parsear: transferTo del archivo al canal del socket,
+     * sin copiar las líneas a buffers del Master. Quien llama debe haber tomado un crédito.
+     */
+    public void sendChunk(RawChunk chunk) {
+        sendLock.lock();
+        try {
+            try {
+                WritableByteChannel channel = socket.getChannel() != null
+                    ? socket.getChannel() : Channels.newChannel(socket.getOutputStream());
+                while (!chunk.isDone()) {
+                    long written = chunk.writeTo(channel);
+                    if (written == 0) {
+                        // Un canal bloqueante siempre avanza: sin avance el bloque no se puede completar
+                        throw new IOException("transferTo sin avance en la posición " + chunk.filePosition());
+                    }
+                    chunkBytesSent += written;
+                }
+                credits.sent(chunk.frameSize(), chunk.getRows());
+            } catch (IOException e) {
+                System.err.println("Error enviando bloque a Worker " + workerId + ": " + e.getMessage());
+                // La trama quedó a medias: se corta la conexión y el bloque se reenvía como en una baja
+                disconnect();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendFilter(DatagramFilter filter) {
+        sendLock.lock();
+        try {
+            try {
+                out.writeFilter(filter);
+            } catch (IOException e) {
+                System.err.println("Error enviando filtro a Worker " + workerId + ": " + e.getMessage());
+                // El worker no puede parsear sin el filtro: se corta la conexión como en una baja
+                disconnect();
+            }
+        } finally {
+            sendLock.unlock();
         }
     }
 
+    @Override
+    public void sendCheckpoint(CheckpointMark mark) {
+        sendLock.lock();
+        try {
+            try {
+                out.writeCheckpoint(mark);
+            } catch (IOException e) {
+                System.err.println("Error enviando checkpoint a Worker " + workerId + ": " + e.getMessage());
+                // La trama quedó a medias: se corta la conexión como en una baja
+                disconnect();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    @Override
     public void sendStop() {
+        sendLock.lock();
         try {
-            out.writeObject("STOP");
-            out.flush();
-        } catch (IOException e) {
-            System.err.println("Error enviando STOP a Worker " + workerId + ": " + e.getMessage());
+            try {
+                out.writeStop();
+            } catch (IOException e) {
+                System.err.println("Error enviando STOP a Worker " + workerId + ": " + e.getMessage());
+            }
+        } finally {
+            sendLock.unlock();
         }
     }
 
+    @Override
     public Map<String, ArcSpeed> getResults() {
         return new HashMap<>(results);
     }
 
+    @Override
+    public long getBytesSent() {
+        sendLock.lock();
+        try {
+            return out.getBytesWritten() + chunkBytesSent;
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    @Override
+    public CreditGate getCredits() {
+        return credits;
+    }
+
+    @Override
+    public WorkerSender newSender() {
+        return new BatchSender(this, MasterConfig.SENDER_QUEUE_BATCHES, master.getThreads());
+    }
+
+    @Override
     public int getWorkerId() {
         return workerId;
     }
 
+    @Override
     public boolean isProcessing() {
         return processing;
     }
+
+    @Override
+    public void disconnect() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignorar errores de cierre
+        }
+    }
 }
@@ -0,0 +1,129 @@
+package org.mio.processing.master;
+
+import org.mio.processing.config.MasterConfig;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Carga de cada worker para el reparto: filas entregadas a su envío, filas que ya
+ * procesó (tramas CREDIT) y su ritmo reciente. Con eso estima cuánto tarda en vaciar
+ * lo pendiente (cola de envío, en vuelo y en proceso). El ritmo se actualiza a lo sumo
+ * cada LOAD_UPDATE_INTERVAL_MS, desde el hilo de ingesta que llegue primero.
+ */
+class WorkerLoad {
+
+    private static final double RATE_SMOOTHING = 0.5; // Peso de la última medición en el promedio móvil
+
+    private final List<WorkerSender> senders;
+    private final AtomicLongArray dispatched;
+    private final AtomicLong lastUpdate = new AtomicLong(System.nanoTime());
+    private final long[] lastProcessed;
+    private final double[] rates; // Filas por segundo
+    private final double[] maxDrainMillis;
+
+    WorkerLoad(List<WorkerSender> senders) {
+        this.senders = senders;
+        // Espacio para los workers que se unan durante la ejecución
+        this.dispatched = new AtomicLongArray(MasterConfig.MAX_WORKERS);
+        this.lastProcessed = new long[MasterConfig.MAX_WORKERS];
+        this.rates = new double[MasterConfig.MAX_WORKERS];
+        this.maxDrainMillis = new double[MasterConfig.MAX_WORKERS];
+    }
+
+    void addDispatched(int sender, int rows) {
+        dispatched.addAndGet(sender, rows);
+    }
+
+    /**
+     * Recalcula los ritmos si pasó el intervalo. Retorna true solo al hilo que lo hizo.
+     */
+    boolean update() {
+        long now = System.nanoTime();
+        long last = lastUpdate.get();
+        long elapsed = now - last;
+        if (elapsed < MasterConfig.LOAD_UPDATE_INTERVAL_MS * 1_000_000L || !lastUpdate.compareAndSet(last, now)) {
+            return false;
+        }
+        synchronized (this) {
+            for (int s = 0; s < senders.size(); s++) {
+                long processed = senders.get(s).getWorker().getCredits().getProcessedRows();
+                double rate = (processed - lastProcessed[s]) * 1e9 / elapsed;
+                lastProcessed[s] = processed;
+                // Un worker sin trabajo pendiente no mide su ritmo: se conserva el anterior
+                if (rate > 0 || getOutstandingRows(s) > 0) {
+                    rates[s] = rates[s] == 0 ? rate : RATE_SMOOTHING * rate + (1 - RATE_SMOOTHING) * rates[s];
+                }
+                double drain = drainMillis(s);
+                if (!Double.isInfinite(drain)) {
+                    maxDrainMillis[s] = Math.max(maxDrainMillis[s], drain);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Filas entregadas al worker que todavía no terminó de procesar.
+     */
+    long getOutstandingRows(int sender) {
+        long processed = senders.get(sender).getWorker().getCredits().getProcessedRows();
+        return Math.max(0, dispatched.get(sender) - processed);
+    }
+
+    synchronized double getRate(int sender) {
+        return rates[sender];
+    }
+
+    /**
+     * Tiempo estimado para vaciar lo pendiente al ritmo reciente (infinito si aún no hay ritmo).
+     */
+    synchronized double getDrainMillis(int sender) {
+        return drainMillis(sender);
+    }
+
+    private double drainMillis(int sender) {
+        long outstanding = getOutstandingRows(sender);
+        if (outstanding == 0) {
+            return 0;
+        }
+        return rates[sender] > 0 ? outstanding * 1000.0 / rates[sender] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Porción de un lote para cada worker activo, proporcional a su ritmo; en partes
+     * iguales mientras algún worker activo no tenga ritmo medido.
+     */
+    synchronized double[] getShares(boolean[] active) {
+        double[] shares = new double[active.length];
+        double total = 0;
+        int count = 0;
+        boolean measured = true;
+        for (int s = 0; s < shares.length; s++) {
+            if (active[s]) {
+                count++;
+                total += rates[s];
+                measured &= rates[s] > 0;
+            }
+        }
+        for (int s = 0; s < shares.length; s++) {
+            if (active[s]) {
+                shares[s] = measured ? rates[s] / total : 1.0 / count;
+            }
+        }
+        return shares;
+    }
+
+    synchronized void printStats() {
+        System.out.println("\n=== CARGA POR WORKER ===");
+        System.out.println("WORKER | FILAS ENTREGADAS | PENDIENTES | LOTES EN VUELO | RITMO (filas/s) | MÁX. VACIADO (ms)");
+        System.out.println("-------|------------------|------------|----------------|-----------------|------------------");
+        for (int s = 0; s < senders.size(); s++) {
+            WorkerChannel worker = senders.get(s).getWorker();
+            System.out.println(String.format("W%-5d | %16d | %10d | %14d | %15.0f | %17.0f",
+                worker.getWorkerId(), dispatched.get(s), getOutstandingRows(s),
+                worker.getCredits().getInFlightBatches(), rates[s], maxDrainMillis[s]));
+        }
+    }
+}
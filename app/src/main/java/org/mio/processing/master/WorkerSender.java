@@ -0,0 +1,37 @@
+package org.mio.processing.master;
+
+import org.mio.model.DatagramBatch;
+import org.mio.processing.protocol.CheckpointMark;
+
+/**
+ * Etapa de envío hacia un worker: recibe sub-lotes en una cola acotada y los
+ * escribe en la conexión. Si el worker se atrasa, enqueue bloquea al productor.
+ */
+interface WorkerSender {
+
+    void start();
+
+    /**
+     * Encola un sub-lote; el tiempo bloqueado se carga a la etapa productora.
+     */
+    void enqueue(DatagramBatch batch, StageStats producer) throws InterruptedException;
+
+    /**
+     * Encola un bloque de líneas CSV sin parsear (ingesta raw).
+     */
+    void enqueue(RawChunk chunk, StageStats producer) throws InterruptedException;
+
+    /**
+     * Encola una marca de checkpoint detrás de lo ya encolado; no usa crédito ni se retiene.
+     */
+    void enqueue(CheckpointMark mark, StageStats producer) throws InterruptedException;
+
+    /**
+     * Espera a que se envíe todo lo encolado.
+     */
+    void finish() throws InterruptedException;
+
+    StageStats getStats();
+
+    WorkerChannel getWorker();
+}
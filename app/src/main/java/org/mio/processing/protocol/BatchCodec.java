@@ -0,0 +1,104 @@
+package org.mio.processing.protocol;
+
+import org.mio.model.DatagramBatch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codificación binaria compacta de un DatagramBatch, columna por columna:
+ * filas, modo de tiempo, epoch base, busId, latitud, longitud, tiempo, lineId, eventType.
+ * El tiempo viaja como desplazamiento int desde el epoch base cuando el lote cabe en
+ * ese rango (el caso normal) y como long completo si no.
+ */
+public final class BatchCodec {
+
+    private static final byte EPOCH_DELTA = 0;
+    private static final byte EPOCH_FULL = 1;
+
+    static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES + Long.BYTES;
+    // Bytes por fila con tiempo en desplazamiento: busId, latitud, longitud, tiempo, lineId, eventType
+    public static final int BYTES_PER_ROW = 4 * Integer.BYTES + Short.BYTES + Byte.BYTES;
+
+    private BatchCodec() {
+    }
+
+    /**
+     * Tamaño máximo que puede ocupar un lote de 'rows' filas.
+     */
+    public static int maxEncodedSize(int rows) {
+        return HEADER_SIZE + rows * (BYTES_PER_ROW + Integer.BYTES);
+    }
+
+    public static void encode(DatagramBatch batch, ByteBuffer buffer) {
+        int n = batch.size();
+        long[] epochs = batch.epochSeconds();
+        long minEpoch = Long.MAX_VALUE;
+        long maxEpoch = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            if (epochs[i] < minEpoch) minEpoch = epochs[i];
+            if (epochs[i] > maxEpoch) maxEpoch = epochs[i];
+        }
+        long base = n == 0 ? 0 : minEpoch;
+        boolean delta = n == 0 || maxEpoch - base <= Integer.MAX_VALUE;
+
+        buffer.putInt(n);
+        buffer.put(delta ? EPOCH_DELTA : EPOCH_FULL);
+        buffer.putLong(base);
+        putInts(buffer, batch.busIds(), n);
+        putInts(buffer, batch.latitudesE7(), n);
+        putInts(buffer, batch.longitudesE7(), n);
+        if (delta) {
+            for (int i = 0; i < n; i++) {
+                buffer.putInt((int) (epochs[i] - base));
+            }
+        } else {
+            buffer.asLongBuffer().put(epochs, 0, n);
+            buffer.position(buffer.position() + n * Long.BYTES);
+        }
+        buffer.asShortBuffer().put(batch.lineIds(), 0, n);
+        buffer.position(buffer.position() + n * Short.BYTES);
+        buffer.put(batch.eventTypes(), 0, n);
+    }
+
+    /**
+     * Decodifica en 'batch' (reutilizado; crece si hace falta) y lo retorna.
+     */
+    public static DatagramBatch decode(ByteBuffer buffer, DatagramBatch batch) {
+        int n = buffer.getInt();
+        byte mode = buffer.get();
+        long base = buffer.getLong();
+        if (n < 0 || (mode != EPOCH_DELTA && mode != EPOCH_FULL)) {
+            throw new IllegalArgumentException("Lote inválido: filas=" + n + ", modo=" + mode);
+        }
+        if (batch == null || batch.capacity() < n) {
+            batch = new DatagramBatch(n);
+        }
+        batch.setSize(n);
+        getInts(buffer, batch.busIds(), n);
+        getInts(buffer, batch.latitudesE7(), n);
+        getInts(buffer, batch.longitudesE7(), n);
+        long[] epochs = batch.epochSeconds();
+        if (mode == EPOCH_DELTA) {
+            for (int i = 0; i < n; i++) {
+                epochs[i] = base + buffer.getInt();
+            }
+        } else {
+            buffer.asLongBuffer().get(epochs, 0, n);
+            buffer.position(buffer.position() + n * Long.BYTES);
+        }
+        buffer.asShortBuffer().get(batch.lineIds(), 0, n);
+        buffer.position(buffer.position() + n * Short.BYTES);
+        buffer.get(batch.eventTypes(), 0, n);
+        return batch;
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] column, int n) {
+        buffer.asIntBuffer().put(column, 0, n);
+        buffer.position(buffer.position() + n * Integer.BYTES);
+    }
+
+    private static void getInts(ByteBuffer buffer, int[] column, int n) {
+        buffer.asIntBuffer().get(column, 0, n);
+        buffer.position(buffer.position() + n * Integer.BYTES);
+    }
+}
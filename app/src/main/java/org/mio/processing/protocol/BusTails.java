@@ -0,0 +1,118 @@
+package org.mio.processing.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Últimas posiciones de cada bus (la cola de su historial), para que un trabajo
+ * reanudado calcule la velocidad del primer datagrama de cada bus sin perder el punto
+ * anterior. Formato: [buses: int] y por bus id, puntos (int) y por punto latitud,
+ * longitud (double) y tiempo (long), del más antiguo al más reciente.
+ */
+public final class BusTails {
+
+    static final int BYTES_PER_BUS = 2 * Integer.BYTES;
+    static final int BYTES_PER_POINT = 2 * Double.BYTES + Long.BYTES;
+
+    private final Map<Integer, Tail> tails = new LinkedHashMap<>();
+
+    /**
+     * Agrega (o reemplaza) la cola de un bus.
+     */
+    public void put(int busId, double[] latitudes, double[] longitudes, long[] epochSeconds) {
+        tails.put(busId, new Tail(busId, latitudes, longitudes, epochSeconds));
+    }
+
+    /**
+     * Suma las colas de 'other': por bus queda la de la posición más reciente.
+     */
+    public void merge(BusTails other) {
+        for (Tail tail : other.tails.values()) {
+            Tail current = tails.get(tail.busId);
+            if (current == null || tail.lastEpochSecond() >= current.lastEpochSecond()) {
+                tails.put(tail.busId, tail);
+            }
+        }
+    }
+
+    public int size() {
+        return tails.size();
+    }
+
+    public boolean isEmpty() {
+        return tails.isEmpty();
+    }
+
+    public Collection<Tail> getTails() {
+        return tails.values();
+    }
+
+    public int encodedSize() {
+        int size = Integer.BYTES;
+        for (Tail tail : tails.values()) {
+            size += BYTES_PER_BUS + tail.size() * BYTES_PER_POINT;
+        }
+        return size;
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(tails.size());
+        for (Tail tail : tails.values()) {
+            buffer.putInt(tail.busId);
+            buffer.putInt(tail.size());
+            for (int i = 0; i < tail.size(); i++) {
+                buffer.putDouble(tail.latitudes[i]);
+                buffer.putDouble(tail.longitudes[i]);
+                buffer.putLong(tail.epochSeconds[i]);
+            }
+        }
+    }
+
+    public static BusTails readFrom(ByteBuffer buffer) {
+        BusTails result = new BusTails();
+        int buses = buffer.getInt();
+        for (int b = 0; b < buses; b++) {
+            int busId = buffer.getInt();
+            int points = buffer.getInt();
+            double[] latitudes = new double[points];
+            double[] longitudes = new double[points];
+            long[] epochSeconds = new long[points];
+            for (int i = 0; i < points; i++) {
+                latitudes[i] = buffer.getDouble();
+                longitudes[i] = buffer.getDouble();
+                epochSeconds[i] = buffer.getLong();
+            }
+            result.put(busId, latitudes, longitudes, epochSeconds);
+        }
+        return result;
+    }
+
+    /**
+     * Cola de un bus, del punto más antiguo al más reciente.
+     */
+    public static final class Tail {
+        private final int busId;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final long[] epochSeconds;
+
+        Tail(int busId, double[] latitudes, double[] longitudes, long[] epochSeconds) {
+            this.busId = busId;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.epochSeconds = epochSeconds;
+        }
+
+        public int getBusId() { return busId; }
+        public int size() { return epochSeconds.length; }
+        public double latitude(int i) { return latitudes[i]; }
+        public double longitude(int i) { return longitudes[i]; }
+        public long epochSecond(int i) { return epochSeconds[i]; }
+
+        long lastEpochSecond() {
+            return epochSeconds.length == 0 ? Long.MIN_VALUE : epochSeconds[epochSeconds.length - 1];
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.mio.processing.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Marca de checkpoint. Del Master al worker viaja en la cola de envío detrás de los
+ * lotes anteriores al checkpoint (y, al reanudar, con las colas de buses guardadas);
+ * el worker la devuelve después de enviar sus muestras pendientes, con las colas de
+ * los buses que cambiaron desde la marca anterior y lo que tardó en armarla.
+ * Formato: [id: long][costo en el worker: long, nanos] seguido de BusTails.
+ */
+public final class CheckpointMark {
+
+    private final long id;
+    private final long snapshotNanos;
+    private final BusTails tails;
+
+    public CheckpointMark(long id, long snapshotNanos, BusTails tails) {
+        this.id = id;
+        this.snapshotNanos = snapshotNanos;
+        this.tails = tails;
+    }
+
+    public int encodedSize() {
+        return 2 * Long.BYTES + tails.encodedSize();
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putLong(id);
+        buffer.putLong(snapshotNanos);
+        tails.writeTo(buffer);
+    }
+
+    public static CheckpointMark readFrom(ByteBuffer buffer) {
+        return new CheckpointMark(buffer.getLong(), buffer.getLong(), BusTails.readFrom(buffer));
+    }
+
+    public long getId() { return id; }
+    public long getSnapshotNanos() { return snapshotNanos; }
+    public BusTails getTails() { return tails; }
+}
@@ -0,0 +1,106 @@
+package org.mio.processing.protocol;
+
+import org.mio.model.DatagramBatch;
+import org.mio.processing.ingest.DatagramFilter;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lee tramas con prefijo de longitud. next() carga el payload completo en un buffer
+ * reutilizado y los métodos read* lo decodifican según el tipo de la trama.
+ */
+public class FrameReader {
+
+    public static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final DataInputStream in;
+    private byte[] payload = new byte[INPUT_BUFFER_SIZE];
+    private ByteBuffer buffer = ByteBuffer.wrap(payload, 0, 0);
+    private long framesRead;
+    private long bytesRead;
+
+    public FrameReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in, INPUT_BUFFER_SIZE));
+    }
+
+    /**
+     * Lee la siguiente trama y retorna su tipo, o -1 si la conexión se cerró entre tramas.
+     */
+    public byte next() throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return -1;
+        }
+        byte type = in.readByte();
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Trama " + FrameType.name(type) + " inválida: " + length + " bytes");
+        }
+        if (payload.length < length) {
+            payload = new byte[Math.max(length, payload.length * 2)];
+        }
+        in.readFully(payload, 0, length);
+        buffer = ByteBuffer.wrap(payload, 0, length);
+        framesRead++;
+        bytesRead += FrameWriter.HEADER_SIZE + length;
+        return type;
+    }
+
+    public int readInt() {
+        return buffer.getInt();
+    }
+
+    public long readLong() {
+        return buffer.getLong();
+    }
+
+    public String readString() {
+        return readString(buffer);
+    }
+
+    /**
+     * Decodifica el lote de la trama en 'reuse' (o en uno nuevo si no alcanza).
+     */
+    public DatagramBatch readBatch(DatagramBatch reuse) {
+        return BatchCodec.decode(buffer, reuse);
+    }
+
+    public ResultDelta readResults() {
+        return ResultDelta.decode(buffer);
+    }
+
+    public DatagramFilter readFilter() {
+        return DatagramFilter.readFrom(buffer);
+    }
+
+    public CheckpointMark readCheckpoint() {
+        return CheckpointMark.readFrom(buffer);
+    }
+
+    /**
+     * Payload de una trama CHUNK: líneas CSV completas, respaldadas por un arreglo
+     * que se reutiliza en la siguiente trama.
+     */
+    public ByteBuffer readChunk() {
+        return buffer;
+    }
+
+    // Decodificación sobre un payload ya separado (lectura no bloqueante)
+
+    public static String readString(ByteBuffer payload) {
+        byte[] text = new byte[payload.getInt()];
+        payload.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    public long getFramesRead() { return framesRead; }
+    public long getBytesRead() { return bytesRead; }
+}
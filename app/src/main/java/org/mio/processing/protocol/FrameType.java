@@ -0,0 +1,40 @@
+package org.mio.processing.protocol;
+
+/**
+ * Tipos de trama del protocolo Master ↔ Worker. Cada trama viaja como
+ * [longitud del payload: int][tipo: byte][payload].
+ */
+public final class FrameType {
+
+    public static final byte REGISTER = 1;  // Worker → Master: workerId, dirección
+    public static final byte CONNECTED = 2; // Master → Worker: workerId confirmado
+    public static final byte BATCH = 3;     // Master → Worker: lote de datagramas (BatchCodec)
+    public static final byte STOP = 4;      // Master → Worker: fin de la distribución
+    public static final byte RESULTS = 5;   // Worker → Master: parcial de velocidades por arco (ResultDelta)
+    public static final byte CREDIT = 6;    // Worker → Master: créditos, lotes terminados, filas procesadas
+    public static final byte FILTER = 7;    // Master → Worker: filtro de ingesta (DatagramFilter), ingesta raw
+    public static final byte CHUNK = 8;     // Master → Worker: líneas CSV completas sin parsear, ingesta raw
+    public static final byte RING = 9;      // Master → Worker: ruta de la cola compartida; el resto de los datos va por ella
+    public static final byte HEARTBEAT = 10; // Worker → Master: latido con filas y lotes terminados y tiempo en el lote actual
+    public static final byte CHECKPOINT = 11; // Ambos sentidos: marca de checkpoint (CheckpointMark) y su confirmación
+
+    private FrameType() {
+    }
+
+    public static String name(byte type) {
+        switch (type) {
+            case REGISTER: return "REGISTER";
+            case CONNECTED: return "CONNECTED";
+            case BATCH: return "BATCH";
+            case STOP: return "STOP";
+            case RESULTS: return "RESULTS";
+            case CREDIT: return "CREDIT";
+            case FILTER: return "FILTER";
+            case CHUNK: return "CHUNK";
+            case RING: return "RING";
+            case HEARTBEAT: return "HEARTBEAT";
+            case CHECKPOINT: return "CHECKPOINT";
+            default: return "DESCONOCIDO(" + type + ")";
+        }
+    }
+}
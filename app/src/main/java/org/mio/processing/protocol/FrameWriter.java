@@ -0,0 +1,184 @@
+package org.mio.processing.protocol;
+
+import org.mio.model.ArcSpeed;
+import org.mio.model.DatagramBatch;
+import org.mio.processing.ingest.DatagramFilter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Escribe tramas con prefijo de longitud: arma la trama completa en un buffer
+ * reutilizado y la entrega al stream con un solo write + flush. No es seguro para
+ * varios hilos; quien lo comparta debe sincronizar.
+ */
+public class FrameWriter {
+
+    public static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private final OutputStream out;
+    private ByteBuffer frame = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private long framesWritten;
+    private long bytesWritten;
+
+    public FrameWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void writeRegister(int workerId, String address) throws IOException {
+        byte[] text = address.getBytes(StandardCharsets.UTF_8);
+        begin(2 * Integer.BYTES + text.length).putInt(workerId).putInt(text.length).put(text);
+        send(FrameType.REGISTER);
+    }
+
+    public void writeConnected(int workerId) throws IOException {
+        begin(Integer.BYTES).putInt(workerId);
+        send(FrameType.CONNECTED);
+    }
+
+    public void writeBatch(DatagramBatch batch) throws IOException {
+        BatchCodec.encode(batch, begin(BatchCodec.maxEncodedSize(batch.size())));
+        send(FrameType.BATCH);
+    }
+
+    /**
+     * Otorga 'credits' lotes más al Master e informa cuántos lotes terminó desde la última
+     * trama y el total de filas procesadas.
+     */
+    public void writeCredit(int credits, int completedBatches, long processedRows) throws IOException {
+        begin(2 * Integer.BYTES + Long.BYTES).putInt(credits).putInt(completedBatches).putLong(processedRows);
+        send(FrameType.CREDIT);
+    }
+
+    /**
+     * Latido periódico del worker, aunque esté ocupado en un lote: filas y lotes
+     * terminados en total y milisegundos en el lote actual (0 si espera datos).
+     */
+    public void writeHeartbeat(long processedRows, long completedBatches, int busyMillis) throws IOException {
+        begin(2 * Long.BYTES + Integer.BYTES).putLong(processedRows).putLong(completedBatches).putInt(busyMillis);
+        send(FrameType.HEARTBEAT);
+    }
+
+    public void writeFilter(DatagramFilter filter) throws IOException {
+        filter.writeTo(begin(filter.encodedSize()));
+        send(FrameType.FILTER);
+    }
+
+    /**
+     * Indica al worker la cola en memoria compartida por la que llegarán los datos.
+     */
+    public void writeRing(String path) throws IOException {
+        byte[] text = path.getBytes(StandardCharsets.UTF_8);
+        begin(Integer.BYTES + text.length).putInt(text.length).put(text);
+        send(FrameType.RING);
+    }
+
+    /**
+     * Marca de checkpoint (Master → Worker) o su confirmación con las colas de buses (Worker → Master).
+     */
+    public void writeCheckpoint(CheckpointMark mark) throws IOException {
+        mark.writeTo(begin(mark.encodedSize()));
+        send(FrameType.CHECKPOINT);
+    }
+
+    public void writeStop() throws IOException {
+        begin(0);
+        send(FrameType.STOP);
+    }
+
+    /**
+     * Envía las muestras acumuladas desde la trama anterior para los arcos que cambiaron.
+     * 'last' indica que el worker terminó y no habrá más resultados.
+     */
+    public void writeResults(boolean last, long processedRows, Collection<ArcSpeed> changed) throws IOException {
+        ResultDelta.encode(last, processedRows, changed, begin(ResultDelta.maxEncodedSize(changed.size())));
+        send(FrameType.RESULTS);
+    }
+
+    /**
+     * Prepara el buffer para un payload de hasta 'maxPayload' bytes.
+     */
+    private ByteBuffer begin(int maxPayload) {
+        int needed = HEADER_SIZE + maxPayload;
+        if (frame.capacity() < needed) {
+            frame = ByteBuffer.allocate(Math.max(needed, frame.capacity() * 2));
+        }
+        frame.clear();
+        frame.position(HEADER_SIZE);
+        return frame;
+    }
+
+    private void send(byte type) throws IOException {
+        int length = frame.position();
+        writeHeader(frame, type);
+        out.write(frame.array(), 0, length);
+        out.flush();
+        framesWritten++;
+        bytesWritten += length;
+    }
+
+    private static void writeHeader(ByteBuffer frame, byte type) {
+        frame.putInt(0, frame.position() - HEADER_SIZE);
+        frame.put(Integer.BYTES, type);
+    }
+
+    // Tramas en buffers propios, listas para escribir en un canal no bloqueante
+
+    public static ByteBuffer encodeConnected(int workerId) {
+        ByteBuffer frame = allocate(Integer.BYTES);
+        frame.putInt(workerId);
+        return seal(frame, FrameType.CONNECTED);
+    }
+
+    public static ByteBuffer encodeBatch(DatagramBatch batch) {
+        ByteBuffer frame = allocate(BatchCodec.maxEncodedSize(batch.size()));
+        BatchCodec.encode(batch, frame);
+        return seal(frame, FrameType.BATCH);
+    }
+
+    public static ByteBuffer encodeFilter(DatagramFilter filter) {
+        ByteBuffer frame = allocate(filter.encodedSize());
+        filter.writeTo(frame);
+        return seal(frame, FrameType.FILTER);
+    }
+
+    /**
+     * Encabezado de una trama CHUNK de 'length' bytes; el payload se transfiere
+     * aparte, directo desde el archivo.
+     */
+    public static ByteBuffer encodeChunkHeader(int length) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(length).put(FrameType.CHUNK);
+        header.flip();
+        return header;
+    }
+
+    public static ByteBuffer encodeCheckpoint(CheckpointMark mark) {
+        ByteBuffer frame = allocate(mark.encodedSize());
+        mark.writeTo(frame);
+        return seal(frame, FrameType.CHECKPOINT);
+    }
+
+    public static ByteBuffer encodeStop() {
+        return seal(allocate(0), FrameType.STOP);
+    }
+
+    private static ByteBuffer allocate(int maxPayload) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + maxPayload);
+        frame.position(HEADER_SIZE);
+        return frame;
+    }
+
+    private static ByteBuffer seal(ByteBuffer frame, byte type) {
+        writeHeader(frame, type);
+        frame.flip();
+        return frame;
+    }
+
+    public long getFramesWritten() { return framesWritten; }
+    public long getBytesWritten() { return bytesWritten; }
+}
@@ -0,0 +1,135 @@
+package org.mio.processing.protocol;
+
+import org.mio.model.Arc;
+import org.mio.model.ArcSpeed;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Parcial de resultados de un worker: para cada arco que cambió desde la trama
+ * anterior, las muestras nuevas (cantidad, suma, mínimo, máximo y última muestra).
+ * El Master las suma a medida que llegan; la trama marcada como última cierra el worker.
+ * Formato: [última: byte][filas procesadas: long][arcos: int] y por arco
+ * origen, destino, línea, muestras (int), suma, mínimo, máximo (double) y tiempo (long).
+ */
+public final class ResultDelta {
+
+    static final int HEADER_SIZE = Byte.BYTES + Long.BYTES + Integer.BYTES;
+    public static final int BYTES_PER_ARC = 4 * Integer.BYTES + 3 * Double.BYTES + Long.BYTES;
+
+    private final boolean last;
+    private final long processedRows;
+    private final List<Entry> entries;
+    private final int encodedSize;
+
+    private ResultDelta(boolean last, long processedRows, List<Entry> entries, int encodedSize) {
+        this.last = last;
+        this.processedRows = processedRows;
+        this.entries = entries;
+        this.encodedSize = encodedSize;
+    }
+
+    public static int maxEncodedSize(int arcs) {
+        return HEADER_SIZE + arcs * BYTES_PER_ARC;
+    }
+
+    /**
+     * Codifica los acumulados de 'changed' (muestras desde la trama anterior).
+     */
+    public static void encode(boolean last, long processedRows, Collection<ArcSpeed> changed, ByteBuffer buffer) {
+        buffer.put(last ? (byte) 1 : (byte) 0);
+        buffer.putLong(processedRows);
+        buffer.putInt(changed.size());
+        for (ArcSpeed speed : changed) {
+            Arc arc = speed.getArc();
+            buffer.putInt(arc.getFrom().getStopId());
+            buffer.putInt(arc.getTo().getStopId());
+            buffer.putInt(arc.getLineId());
+            buffer.putInt(speed.getSampleCount());
+            buffer.putDouble(speed.getTotalSpeed());
+            buffer.putDouble(speed.getMinSpeed());
+            buffer.putDouble(speed.getMaxSpeed());
+            buffer.putLong(speed.getLastUpdatedEpochSecond());
+        }
+    }
+
+    /**
+     * Parcial armado directamente de los ArcSpeed, sin codificar (transporte en proceso).
+     */
+    public static ResultDelta of(boolean last, long processedRows, Collection<ArcSpeed> changed) {
+        List<Entry> entries = new ArrayList<>(changed.size());
+        for (ArcSpeed speed : changed) {
+            Arc arc = speed.getArc();
+            entries.add(new Entry(arc.getFrom().getStopId(), arc.getTo().getStopId(), arc.getLineId(),
+                speed.getSampleCount(), speed.getTotalSpeed(), speed.getMinSpeed(), speed.getMaxSpeed(),
+                speed.getLastUpdatedEpochSecond()));
+        }
+        return new ResultDelta(last, processedRows, entries, 0);
+    }
+
+    public static ResultDelta decode(ByteBuffer buffer) {
+        int size = buffer.remaining();
+        boolean last = buffer.get() != 0;
+        long processedRows = buffer.getLong();
+        int n = buffer.getInt();
+        List<Entry> entries = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            entries.add(new Entry(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getLong()));
+        }
+        return new ResultDelta(last, processedRows, entries, size);
+    }
+
+    public boolean isLast() { return last; }
+    public long getProcessedRows() { return processedRows; }
+    public List<Entry> getEntries() { return entries; }
+    public int getEncodedSize() { return encodedSize; }
+
+    /**
+     * Muestras nuevas de un arco.
+     */
+    public static final class Entry {
+        private final int fromStopId;
+        private final int toStopId;
+        private final int lineId;
+        private final int samples;
+        private final double totalSpeed;
+        private final double minSpeed;
+        private final double maxSpeed;
+        private final long lastUpdated;
+
+        Entry(int fromStopId, int toStopId, int lineId, int samples,
+              double totalSpeed, double minSpeed, double maxSpeed, long lastUpdated) {
+            this.fromStopId = fromStopId;
+            this.toStopId = toStopId;
+            this.lineId = lineId;
+            this.samples = samples;
+            this.totalSpeed = totalSpeed;
+            this.minSpeed = minSpeed;
+            this.maxSpeed = maxSpeed;
+            this.lastUpdated = lastUpdated;
+        }
+
+        /**
+         * Clave del arco con el mismo formato que usa el worker (origen-destino-línea).
+         */
+        public String key() {
+            return fromStopId + "-" + toStopId + "-" + lineId;
+        }
+
+        /**
+         * Suma estas muestras a 'target'.
+         */
+        public void mergeInto(ArcSpeed target) {
+            target.merge(samples, totalSpeed, minSpeed, maxSpeed, lastUpdated);
+        }
+
+        public int getFromStopId() { return fromStopId; }
+        public int getToStopId() { return toStopId; }
+        public int getLineId() { return lineId; }
+        public int getSamples() { return samples; }
+    }
+}
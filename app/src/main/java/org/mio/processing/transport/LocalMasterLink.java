@@ -0,0 +1,117 @@
+package org.mio.processing.transport;
+
+import org.mio.model.ArcSpeed;
+import org.mio.model.DatagramBatch;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.protocol.CheckpointMark;
+import org.mio.processing.protocol.FrameType;
+import org.mio.processing.protocol.ResultDelta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Conexión con un Master del mismo proceso: el Master deja los mensajes como objetos
+ * (DatagramBatch, DatagramFilter, ByteBuffer con líneas CSV, CheckpointMark, STOP) en
+ * una cola acotada y el worker le responde con llamadas directas. Nada se serializa ni
+ * pasa por sockets.
+ */
+public class LocalMasterLink implements MasterLink {
+
+    public static final Object STOP = new Object();
+    public static final Object CLOSED = new Object();
+
+    /**
+     * Lado del Master que recibe las respuestas del worker (desde el hilo del worker).
+     */
+    public interface Master {
+        void registered(int workerId, String address);
+
+        void credit(int credits, int completedBatches, long processedRows);
+
+        void heartbeat(long processedRows, long completedBatches, int busyMillis);
+
+        void results(ResultDelta delta);
+
+        void checkpoint(CheckpointMark mark);
+    }
+
+    private final BlockingQueue<Object> inbox;
+    private final Master master;
+    private Object current;
+
+    public LocalMasterLink(BlockingQueue<Object> inbox, Master master) {
+        this.inbox = inbox;
+        this.master = master;
+    }
+
+    @Override
+    public void register(int workerId, String address) {
+        master.registered(workerId, address);
+    }
+
+    @Override
+    public byte next() throws InterruptedException {
+        current = inbox.take();
+        if (current instanceof DatagramBatch) {
+            return FrameType.BATCH;
+        } else if (current instanceof ByteBuffer) {
+            return FrameType.CHUNK;
+        } else if (current instanceof DatagramFilter) {
+            return FrameType.FILTER;
+        } else if (current instanceof CheckpointMark) {
+            return FrameType.CHECKPOINT;
+        } else if (current == STOP) {
+            return FrameType.STOP;
+        }
+        return -1;
+    }
+
+    @Override
+    public DatagramBatch readBatch(DatagramBatch reuse) {
+        // El Master entrega un sub-lote propio: el worker lo usa sin copiar
+        return (DatagramBatch) current;
+    }
+
+    @Override
+    public DatagramFilter readFilter() {
+        return (DatagramFilter) current;
+    }
+
+    @Override
+    public ByteBuffer readChunk() {
+        return (ByteBuffer) current;
+    }
+
+    @Override
+    public CheckpointMark readCheckpoint() {
+        return (CheckpointMark) current;
+    }
+
+    @Override
+    public void sendCredit(int credits, int completedBatches, long processedRows) {
+        master.credit(credits, completedBatches, processedRows);
+    }
+
+    @Override
+    public void sendHeartbeat(long processedRows, long completedBatches, int busyMillis) {
+        master.heartbeat(processedRows, completedBatches, busyMillis);
+    }
+
+    @Override
+    public void sendResults(boolean last, long processedRows, Collection<ArcSpeed> changed) {
+        master.results(ResultDelta.of(last, processedRows, changed));
+    }
+
+    @Override
+    public void sendCheckpoint(CheckpointMark mark) {
+        master.checkpoint(mark);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inbox.clear();
+    }
+}
@@ -0,0 +1,62 @@
+package org.mio.processing.transport;
+
+import org.mio.model.ArcSpeed;
+import org.mio.model.DatagramBatch;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.protocol.CheckpointMark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * Conexión de un worker con el Master, independiente del transporte: tramas sobre
+ * TCP (SocketMasterLink) o colas dentro del mismo proceso (LocalMasterLink).
+ * El worker lee mensajes con next() y los decodifica con el read* de su tipo.
+ */
+public interface MasterLink extends Closeable {
+
+    void register(int workerId, String address) throws IOException;
+
+    /**
+     * Espera el siguiente mensaje del Master y retorna su tipo (FrameType), o -1 si
+     * la conexión se cerró.
+     */
+    byte next() throws IOException, InterruptedException;
+
+    /**
+     * Lote del mensaje BATCH; 'reuse' se puede usar como destino si el transporte decodifica.
+     */
+    DatagramBatch readBatch(DatagramBatch reuse);
+
+    DatagramFilter readFilter();
+
+    /**
+     * Líneas CSV completas del mensaje CHUNK, respaldadas por un arreglo.
+     */
+    ByteBuffer readChunk();
+
+    /**
+     * Marca del mensaje CHECKPOINT.
+     */
+    CheckpointMark readCheckpoint();
+
+    void sendCredit(int credits, int completedBatches, long processedRows) throws IOException;
+
+    /**
+     * Latido desde un hilo propio del worker, concurrente con los demás envíos.
+     */
+    void sendHeartbeat(long processedRows, long completedBatches, int busyMillis) throws IOException;
+
+    /**
+     * Muestras nuevas de los arcos que cambiaron; 'last' cierra los resultados del worker.
+     * El worker no vuelve a modificar los ArcSpeed de 'changed' después de enviarlos.
+     */
+    void sendResults(boolean last, long processedRows, Collection<ArcSpeed> changed) throws IOException;
+
+    /**
+     * Confirma una marca de checkpoint, después del parcial con las muestras anteriores a ella.
+     */
+    void sendCheckpoint(CheckpointMark mark) throws IOException;
+}
@@ -0,0 +1,214 @@
+package org.mio.processing.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cola circular de un solo productor y un solo consumidor sobre un archivo mapeado en
+ * memoria, compartida entre el Master y un worker del mismo host. Los registros
+ * [longitud: int][tipo: byte][relleno][payload] se escriben directo en el mapeo y se
+ * publican con los contadores de escritura y lectura (bytes acumulados), que se
+ * actualizan con semántica release/acquire. Un registro que no cabe antes del final
+ * deja una marca de salto y empieza al inicio del área de datos.
+ */
+public final class SharedRing implements Closeable {
+
+    public static final byte EMPTY = 0;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    // Contadores en líneas de caché distintas
+    private static final int WRITE_SEQ = 0;
+    private static final int READ_SEQ = 64;
+    private static final int CAPACITY = 128;
+    private static final int CLOSED = 192;
+    private static final int HEADER_SIZE = 256;
+    private static final int RECORD_HEADER = 8;
+    private static final int WRAP = -1;
+    private static final int SPINS = 100;
+    private static final int YIELDS = 200;
+    private static final long PARK_NANOS = 100_000;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    // Productor
+    private long writeSeq;
+    private int claimedOffset = -1;
+    // Consumidor
+    private long readSeq;
+    private int pendingRelease;
+    private ByteBuffer payload;
+
+    private SharedRing(FileChannel channel, int capacity) throws IOException {
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.writeSeq = (long) LONGS.getAcquire(buffer, WRITE_SEQ);
+        this.readSeq = (long) LONGS.getAcquire(buffer, READ_SEQ);
+    }
+
+    /**
+     * Crea (o reinicia) el archivo de la cola; 'capacity' se redondea a potencia de 2.
+     */
+    public static SharedRing create(Path path, int capacity) throws IOException {
+        int size = Integer.highestOneBit(Math.max(capacity, 64 * 1024) - 1) << 1;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(CAPACITY, size);
+        channel.write(header, 0);
+        return new SharedRing(channel, size);
+    }
+
+    /**
+     * Abre una cola creada por el otro proceso.
+     */
+    public static SharedRing open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        int size = header.getInt(CAPACITY);
+        if (size <= 0 || Integer.bitCount(size) != 1 || channel.size() < HEADER_SIZE + (long) size) {
+            channel.close();
+            throw new IOException("Cola compartida inválida: " + path);
+        }
+        return new SharedRing(channel, size);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Mayor payload que admite un registro (la mitad de la cola, para que siempre avance).
+     */
+    public int maxPayload() {
+        return capacity / 2 - RECORD_HEADER;
+    }
+
+    // --- Productor ---
+
+    /**
+     * Espera espacio contiguo para un payload de hasta 'maxPayload' bytes y retorna una
+     * vista del mapeo donde escribirlo. Retorna null si 'abort' se cumple mientras espera.
+     */
+    public ByteBuffer claim(int maxPayload, BooleanSupplier abort) {
+        if (maxPayload > maxPayload()) {
+            throw new IllegalArgumentException("Registro de " + maxPayload + " bytes no cabe en la cola de " + capacity);
+        }
+        int needed = align(RECORD_HEADER + maxPayload);
+        int offset = (int) (writeSeq & mask);
+        int toEnd = capacity - offset;
+        long required = toEnd < needed ? toEnd + needed : needed;
+        for (int attempt = 0; capacity - (writeSeq - (long) LONGS.getAcquire(buffer, READ_SEQ)) < required; attempt++) {
+            if (abort.getAsBoolean()) {
+                return null;
+            }
+            idle(attempt);
+        }
+        if (toEnd < needed) {
+            // Salto al inicio: el consumidor lo ve cuando se publique el registro siguiente
+            buffer.putInt(HEADER_SIZE + offset, WRAP);
+            writeSeq += toEnd;
+            offset = 0;
+        }
+        claimedOffset = offset;
+        return buffer.slice(HEADER_SIZE + offset + RECORD_HEADER, maxPayload).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Publica el registro reservado con claim: 'length' bytes de payload de tipo 'type'.
+     */
+    public void publish(byte type, int length) {
+        buffer.putInt(HEADER_SIZE + claimedOffset, length);
+        buffer.put(HEADER_SIZE + claimedOffset + Integer.BYTES, type);
+        writeSeq += align(RECORD_HEADER + length);
+        claimedOffset = -1;
+        LONGS.setRelease(buffer, WRITE_SEQ, writeSeq);
+    }
+
+    /**
+     * Marca la cola como cerrada por el Master (el worker deja de esperar registros).
+     */
+    public void markClosed() {
+        LONGS.setRelease(buffer, CLOSED, 1L);
+    }
+
+    // --- Consumidor ---
+
+    /**
+     * Tipo del siguiente registro, o EMPTY si no hay. El registro anterior se libera aquí,
+     * así su payload sigue válido hasta pedir el siguiente.
+     */
+    public byte poll() {
+        release();
+        long published = (long) LONGS.getAcquire(buffer, WRITE_SEQ);
+        while (readSeq < published) {
+            int offset = (int) (readSeq & mask);
+            int length = buffer.getInt(HEADER_SIZE + offset);
+            if (length == WRAP) {
+                readSeq += capacity - offset;
+                continue;
+            }
+            payload = buffer.slice(HEADER_SIZE + offset + RECORD_HEADER, length).order(ByteOrder.BIG_ENDIAN);
+            pendingRelease = align(RECORD_HEADER + length);
+            return buffer.get(HEADER_SIZE + offset + Integer.BYTES);
+        }
+        LONGS.setRelease(buffer, READ_SEQ, readSeq);
+        return EMPTY;
+    }
+
+    /**
+     * Payload del registro devuelto por el último poll.
+     */
+    public ByteBuffer payload() {
+        return payload;
+    }
+
+    private void release() {
+        if (pendingRelease > 0) {
+            readSeq += pendingRelease;
+            pendingRelease = 0;
+            payload = null;
+            LONGS.setRelease(buffer, READ_SEQ, readSeq);
+        }
+    }
+
+    public boolean isClosed() {
+        return (long) LONGS.getAcquire(buffer, CLOSED) != 0;
+    }
+
+    /**
+     * Espera escalonada: giro activo, luego ceder el CPU y luego dormir brevemente.
+     */
+    public static void idle(int attempt) {
+        if (attempt < SPINS) {
+            Thread.onSpinWait();
+        } else if (attempt < YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
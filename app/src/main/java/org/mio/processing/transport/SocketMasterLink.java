@@ -0,0 +1,170 @@
+package org.mio.processing.transport;
+
+import org.mio.model.ArcSpeed;
+import org.mio.model.DatagramBatch;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.protocol.BatchCodec;
+import org.mio.processing.protocol.CheckpointMark;
+import org.mio.processing.protocol.FrameReader;
+import org.mio.processing.protocol.FrameType;
+import org.mio.processing.protocol.FrameWriter;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * Conexión TCP con el Master usando el protocolo de tramas. Si el Master envía una
+ * trama RING (worker en el mismo host), los mensajes siguientes se leen de la cola
+ * en memoria compartida y el socket queda para créditos, latidos y resultados.
+ * Los envíos se sincronizan porque el latido sale de otro hilo.
+ */
+public class SocketMasterLink implements MasterLink {
+
+    private static final long LIVENESS_CHECK_NANOS = 1_000_000_000L;
+
+    private final Socket socket;
+    private final FrameWriter out;
+    private final FrameReader in;
+    private SharedRing ring;
+    private byte[] chunk = new byte[0];
+
+    public SocketMasterLink(String masterIp, int masterPort) throws IOException {
+        this.socket = new Socket(masterIp, masterPort);
+        this.socket.setTcpNoDelay(true);
+        this.out = new FrameWriter(socket.getOutputStream());
+        this.in = new FrameReader(socket.getInputStream());
+    }
+
+    @Override
+    public synchronized void register(int workerId, String address) throws IOException {
+        out.writeRegister(workerId, address);
+    }
+
+    @Override
+    public byte next() throws IOException {
+        if (ring != null) {
+            return nextFromRing();
+        }
+        byte type = in.next();
+        if (type == FrameType.RING) {
+            ring = SharedRing.open(Path.of(in.readString()));
+            return nextFromRing();
+        }
+        return type;
+    }
+
+    /**
+     * Espera el siguiente registro de la cola compartida. Cada segundo sin datos revisa
+     * que el Master siga conectado, por si terminó sin cerrar la cola.
+     */
+    private byte nextFromRing() throws IOException {
+        long lastCheck = System.nanoTime();
+        for (int attempt = 0; ; attempt++) {
+            byte type = ring.poll();
+            if (type != SharedRing.EMPTY) {
+                return type;
+            }
+            if (ring.isClosed()) {
+                return -1;
+            }
+            long now = System.nanoTime();
+            if (now - lastCheck >= LIVENESS_CHECK_NANOS) {
+                if (!isMasterConnected()) {
+                    return -1;
+                }
+                lastCheck = now;
+            }
+            SharedRing.idle(attempt);
+        }
+    }
+
+    /**
+     * Con la cola activa el Master ya no escribe en el socket: una lectura que agota
+     * el tiempo significa que sigue conectado y un fin de flujo que se desconectó.
+     */
+    private boolean isMasterConnected() throws IOException {
+        socket.setSoTimeout(1);
+        try {
+            return socket.getInputStream().read() >= 0;
+        } catch (SocketTimeoutException e) {
+            return true;
+        } finally {
+            socket.setSoTimeout(0);
+        }
+    }
+
+    @Override
+    public DatagramBatch readBatch(DatagramBatch reuse) {
+        if (ring != null) {
+            return BatchCodec.decode(ring.payload(), reuse);
+        }
+        return in.readBatch(reuse);
+    }
+
+    @Override
+    public DatagramFilter readFilter() {
+        if (ring != null) {
+            return DatagramFilter.readFrom(ring.payload());
+        }
+        return in.readFilter();
+    }
+
+    @Override
+    public CheckpointMark readCheckpoint() {
+        if (ring != null) {
+            return CheckpointMark.readFrom(ring.payload());
+        }
+        return in.readCheckpoint();
+    }
+
+    /**
+     * En la cola compartida las líneas se copian a un arreglo propio que se reutiliza.
+     */
+    @Override
+    public ByteBuffer readChunk() {
+        if (ring == null) {
+            return in.readChunk();
+        }
+        ByteBuffer payload = ring.payload();
+        int length = payload.remaining();
+        if (chunk.length < length) {
+            chunk = new byte[length];
+        }
+        payload.get(chunk, 0, length);
+        return ByteBuffer.wrap(chunk, 0, length);
+    }
+
+    @Override
+    public synchronized void sendCredit(int credits, int completedBatches, long processedRows) throws IOException {
+        out.writeCredit(credits, completedBatches, processedRows);
+    }
+
+    @Override
+    public synchronized void sendHeartbeat(long processedRows, long completedBatches, int busyMillis) throws IOException {
+        out.writeHeartbeat(processedRows, completedBatches, busyMillis);
+    }
+
+    @Override
+    public synchronized void sendResults(boolean last, long processedRows, Collection<ArcSpeed> changed) throws IOException {
+        out.writeResults(last, processedRows, changed);
+    }
+
+    @Override
+    public synchronized void sendCheckpoint(CheckpointMark mark) throws IOException {
+        out.writeCheckpoint(mark);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ring != null) {
+            ring.close();
+        }
+        if (!socket.isClosed()) {
+            socket.close();
+        }
+    }
+}
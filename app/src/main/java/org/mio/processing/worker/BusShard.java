@@ -0,0 +1,271 @@
+package org.mio.processing.worker;
+
+import org.mio.graph.Graph;
+import org.mio.model.Arc;
+import org.mio.model.ArcSpeed;
+import org.mio.model.DatagramBatch;
+import org.mio.processing.config.WorkerConfig;
+import org.mio.processing.protocol.BusTails;
+import org.mio.util.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Procesador de un subconjunto de buses del worker, con su hilo, su historial y sus
+ * muestras por arco sin enviar. Un bus siempre cae en el mismo shard, así su recorrido
+ * se procesa en orden y el camino caliente no toma locks. El worker le entrega una
+ * parte de cada lote y espera a que todos los shards terminen antes de devolver el
+ * crédito; entre lotes lee y vacía 'pending' sin competir con el hilo del shard.
+ */
+final class BusShard implements Runnable {
+
+    private static final int PROGRESS_MASK = 1023; // Cada 1024 filas se publica el avance al hilo de latidos
+    private static final int LOG_SAMPLE_MASK = 4095; // Una línea de depuración cada 4096 arcos encontrados (o no)
+
+    private final int workerId;
+    private final Graph graph;
+    private final Map<String, ArcSpeed> pending = new HashMap<>(); // Muestras aún no enviadas al Master
+    private final IntObjectMap<BusTrack> busHistory = new IntObjectMap<>(1024);
+    private final List<BusTrack> changedTracks = new ArrayList<>(); // Buses con posiciones desde el último checkpoint
+    private final BlockingQueue<DatagramBatch> parts = new ArrayBlockingQueue<>(1);
+    private final Semaphore done;
+    private long processedCount;
+    private long arcHits; // Contadores propios para muestrear la depuración sin println por fila
+    private long arcMisses;
+    private volatile long reportedCount;
+    private Thread thread;
+
+    BusShard(int workerId, Graph graph, Semaphore done) {
+        this.workerId = workerId;
+        this.graph = graph;
+        this.done = done;
+    }
+
+    void start(String name) {
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Entrega una parte al hilo del shard; al terminarla libera un permiso de 'done'.
+     */
+    void submit(DatagramBatch part) throws InterruptedException {
+        parts.put(part);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                DatagramBatch part = parts.take();
+                try {
+                    process(part);
+                } catch (RuntimeException e) {
+                    System.err.println(String.format(WorkerConfig.PROCESSING_ERROR, workerId, e.getMessage()));
+                } finally {
+                    done.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Fin del worker
+        }
+    }
+
+    /**
+     * Procesa las filas del lote en el hilo que llama (el del shard, o el del worker con un solo shard).
+     */
+    void process(DatagramBatch batch) {
+        // Recorrido columna a columna del lote, sin objetos por registro
+        byte[] eventTypes = batch.eventTypes();
+        int[] busIds = batch.busIds();
+        for (int i = 0; i < batch.size(); i++) {
+            // El eventType en el CSV es "0", no "GPS_POSITION"
+            if (eventTypes[i] == 0) {
+                processDatagram(batch, i, busIds[i]);
+            }
+            processedCount++;
+            if ((processedCount & PROGRESS_MASK) == 0) {
+                reportedCount = processedCount; // Avance visible para el latido durante lotes largos
+            }
+        }
+        reportedCount = processedCount;
+    }
+
+    long getReportedCount() {
+        return reportedCount;
+    }
+
+    /**
+     * Muestras sin enviar; solo mientras el shard no tiene una parte en proceso.
+     */
+    Map<String, ArcSpeed> getPending() {
+        return pending;
+    }
+
+    /**
+     * Agrega a 'tails' las últimas 'points' posiciones de los buses que cambiaron desde
+     * el checkpoint anterior. Como getPending, solo entre partes.
+     */
+    void appendTails(BusTails tails, int points) {
+        for (BusTrack track : changedTracks) {
+            int n = Math.min(points, track.size());
+            double[] latitudes = new double[n];
+            double[] longitudes = new double[n];
+            long[] epochSeconds = new long[n];
+            for (int i = 0; i < n; i++) {
+                int back = n - 1 - i;
+                latitudes[i] = track.latitude(back);
+                longitudes[i] = track.longitude(back);
+                epochSeconds[i] = track.epochSecond(back);
+            }
+            tails.put(track.getBusId(), latitudes, longitudes, epochSeconds);
+            track.changed = false;
+        }
+        changedTracks.clear();
+    }
+
+    /**
+     * Restaura la cola de un bus guardada en un checkpoint (trabajo reanudado).
+     */
+    void seed(BusTails.Tail tail) {
+        BusTrack track = busHistory.computeIfAbsent(tail.getBusId(), k -> new BusTrack(k, WorkerConfig.MAX_HISTORY_SIZE));
+        for (int i = 0; i < tail.size(); i++) {
+            track.add(tail.latitude(i), tail.longitude(i), tail.epochSecond(i));
+        }
+    }
+
+    private void processDatagram(DatagramBatch batch, int row, int busId) {
+        double latitude = batch.getLatitude(row);
+        double longitude = batch.getLongitude(row);
+        long epochSecond = batch.getEpochSecond(row);
+
+        BusTrack history = busHistory.computeIfAbsent(busId, k -> new BusTrack(k, WorkerConfig.MAX_HISTORY_SIZE));
+        history.add(latitude, longitude, epochSecond);
+        if (!history.changed) {
+            history.changed = true;
+            changedTracks.add(history);
+        }
+        if (history.size() < 2) {
+            return;
+        }
+        // Posición anterior vieja: el bus volvió de otro worker (su partición cambió de dueño)
+        // o dejó de transmitir, y la velocidad promediaría todo el tramo intermedio
+        if (epochSecond - history.epochSecond(1) > WorkerConfig.MAX_SAMPLE_GAP_SECONDS) {
+            return;
+        }
+
+        double speed = calculateSpeedSimple(history.latitude(1), history.longitude(1), history.epochSecond(1),
+            latitude, longitude, epochSecond);
+
+        if (speed > WorkerConfig.MIN_SPEED_THRESHOLD && speed < WorkerConfig.MAX_SPEED_THRESHOLD) {
+            Arc arc = findArcForDatagramSimple(graph, latitude, longitude);
+            if (arc != null) {
+                String arcKey = arc.getFrom().getStopId() + "-" + arc.getTo().getStopId() + "-" + arc.getLineId();
+
+                pending.computeIfAbsent(arcKey, k -> new ArcSpeed(arc)).addSpeedSample(speed, epochSecond);
+
+                // Mostrar algunos arcos encontrados (muestra por shard: System.out serializaría los shards)
+                if ((++arcHits & LOG_SAMPLE_MASK) == 0) {
+                    System.out.println(String.format("Worker %d: ¡Arco encontrado! %s - Velocidad: %.2f km/h",
+                        workerId, arcKey, speed));
+                }
+            } else if ((++arcMisses & LOG_SAMPLE_MASK) == 0) {
+                // Mostrar cuando no se encuentra arco (solo algunas veces para no saturar)
+                System.out.println(String.format("Worker %d: Sin arco para datagrama del bus %d en (%.6f, %.6f)",
+                    workerId, busId, latitude, longitude));
+            }
+        }
+    }
+
+    /**
+     * Calcula velocidad simplificada entre dos datagramas
+     */
+    private double calculateSpeedSimple(double previousLat, double previousLon, long previousEpoch,
+                                        double currentLat, double currentLon, long currentEpoch) {
+        // Calcular distancia simplificada
+        double distance = calculateDistanceSimple(previousLat, previousLon, currentLat, currentLon);
+
+        // Diferencia real en segundos entre los datagramas (epoch, sin parseo)
+        long timeDiff = currentEpoch - previousEpoch;
+
+        if (timeDiff <= 0) {
+            return 0.0;
+        }
+
+        // Velocidad en km/h
+        double speedKmh = (distance / 1000.0) / (timeDiff / 3600.0);
+
+        // Limitar a valores realistas
+        return Math.max(0.0, Math.min(120.0, speedKmh));
+    }
+
+    /**
+     * Encuentra arco simplificado para un datagrama
+     */
+    private Arc findArcForDatagramSimple(Graph graph, double latitude, double longitude) {
+        if (graph != null && graph.getArcs() != null) {
+            for (Arc arc : graph.getArcs()) {
+                if (isNearArcSimple(latitude, longitude, arc)) {
+                    return arc;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calcula distancia simplificada
+     */
+    private double calculateDistanceSimple(double lat1, double lon1, double lat2, double lon2) {
+        final double R = 6371000; // Radio de la Tierra en metros
+
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return R * c;
+    }
+
+    /**
+     * Verifica si un datagrama está cerca de un arco
+     */
+    private boolean isNearArcSimple(double latitude, double longitude, Arc arc) {
+        if (arc == null) {
+            return false;
+        }
+
+        if (arc.getFrom() != null && arc.getTo() != null) {
+            double distanceFromStart = calculateDistanceSimple(
+                latitude, longitude,
+                arc.getFrom().getLat(), arc.getFrom().getLon()
+            );
+
+            double distanceFromEnd = calculateDistanceSimple(
+                latitude, longitude,
+                arc.getTo().getLat(), arc.getTo().getLon()
+            );
+
+            return distanceFromStart < 100 || distanceFromEnd < 100;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+package org.mio.processing.worker;
+
+/**
+ * Historial acotado de posiciones de un bus en un buffer circular de primitivos.
+ * Reemplaza la List<Datagram> por bus: no crea objetos por muestra ni desplaza
+ * elementos al descartar la más antigua.
+ */
+final class BusTrack {
+
+    private final int busId;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] epochSeconds;
+    private int head; // posición de la próxima escritura
+    private int count;
+    boolean changed; // Recibió posiciones desde el último checkpoint
+
+    BusTrack(int busId, int capacity) {
+        this.busId = busId;
+        this.latitudes = new double[capacity];
+        this.longitudes = new double[capacity];
+        this.epochSeconds = new long[capacity];
+    }
+
+    void add(double latitude, double longitude, long epochSecond) {
+        latitudes[head] = latitude;
+        longitudes[head] = longitude;
+        epochSeconds[head] = epochSecond;
+        head = (head + 1) % latitudes.length;
+        if (count < latitudes.length) {
+            count++;
+        }
+    }
+
+    int getBusId() {
+        return busId;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Índice físico de la muestra 'back' posiciones antes de la última (0 = la última).
+     */
+    private int index(int back) {
+        return (head - 1 - back + latitudes.length * 2) % latitudes.length;
+    }
+
+    double latitude(int back) { return latitudes[index(back)]; }
+    double longitude(int back) { return longitudes[index(back)]; }
+    long epochSecond(int back) { return epochSeconds[index(back)]; }
+}
@@ -4,11 +4,19 @@ import org.mio.graph.Graph;
 import org.mio.graph.GraphBuilder;
 import org.mio.model.*;
 import org.mio.processing.config.WorkerConfig;
+import org.mio.processing.ingest.DatagramRowDecoder;
+import org.mio.processing.protocol.BusTails;
+import org.mio.processing.protocol.CheckpointMark;
+import org.mio.processing.protocol.FrameType;
+import org.mio.processing.transport.MasterLink;
+import org.mio.processing.transport.SocketMasterLink;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 
 public class WorkerNodeService implements Runnable {
     
@@ -16,13 +24,20 @@ public class WorkerNodeService implements Runnable {
     private final String masterIp;
     private final int masterPort;
     private final Graph graph;
-    private final Map<String, ArcSpeed> results;
-    private final Map<String, List<Datagram>> busHistory;
+    private final Map<String, ArcSpeed> results; // Acumulado de los shards, al enviar cada parcial
+    private final Semaphore shardsDone = new Semaphore(0); // Un permiso por parte terminada
+    private int shardCount = WorkerConfig.DEFAULT_SHARDS;
+    private BusShard[] shards;
+    private DatagramBatch[] shardParts; // Parte del lote actual para cada shard, reutilizada
+    private final DatagramRowDecoder rowDecoder = new DatagramRowDecoder(); // Bloques CSV de la ingesta raw
+    private long chunkErrorRows;
     private volatile boolean running;
-    private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private MasterLink link; // TCP por defecto; en proceso si se pasa en el constructor
     private long processedCount;
+    // Estado que lee el hilo de latidos
+    private volatile long completedBatches;
+    private volatile long busySince; // nanoTime del inicio del lote actual, 0 si espera datos
+    private long busyNanos; // Tiempo total procesando lotes, para el ritmo con esta cantidad de shards
 
     public WorkerNodeService(int workerId, String masterIp, int masterPort, Graph graph) {
         this.workerId = workerId;
@@ -30,75 +45,114 @@ public class WorkerNodeService implements Runnable {
         this.masterPort = masterPort;
         this.graph = graph;
         this.results = new ConcurrentHashMap<>();
-        this.busHistory = new ConcurrentHashMap<>();
         this.running = true;
     }
 
+    /**
+     * Worker con una conexión ya establecida (ej. LocalMasterLink para correr en el proceso del Master).
+     */
+    public WorkerNodeService(int workerId, MasterLink link, Graph graph) {
+        this(workerId, null, 0, graph);
+        this.link = link;
+    }
+
+    /**
+     * Cantidad de procesadores de buses en paralelo (por defecto, uno por núcleo).
+     */
+    public void setShards(int shards) {
+        this.shardCount = Math.max(1, shards);
+    }
+
     @Override
     public void run() {
         System.out.println(String.format(WorkerConfig.WORKER_BANNER, workerId));
         System.out.println(WorkerConfig.WORKER_ROLE);
-        System.out.println(String.format(WorkerConfig.CONNECTING_TO_MASTER, workerId, masterIp, masterPort));
         
         try {
             // Conectar al Master
-            socket = new Socket(masterIp, masterPort);
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
+            if (link == null) {
+                System.out.println(String.format(WorkerConfig.CONNECTING_TO_MASTER, workerId, masterIp, masterPort));
+                link = new SocketMasterLink(masterIp, masterPort);
+                link.register(workerId, "localhost:" + (WorkerConfig.DEFAULT_MASTER_PORT + workerId));
+            } else {
+                link.register(workerId, WorkerConfig.IN_PROCESS_ADDRESS);
+            }
+            
+            startShards();
             
-            // Enviar registro
-            Map<String, Object> registration = new HashMap<>();
-            registration.put("type", "REGISTER");
-            registration.put("workerId", workerId);
-            registration.put("address", "localhost:" + (WorkerConfig.DEFAULT_MASTER_PORT + workerId));
-            out.writeObject(registration);
-            out.flush();
+            // Créditos iniciales: lotes que aceptamos en vuelo antes de procesar
+            link.sendCredit(WorkerConfig.INITIAL_CREDITS, 0, 0);
+            startHeartbeat();
             
             System.out.println(String.format(WorkerConfig.CONNECTED_TO_MASTER, workerId));
             System.out.println(String.format(WorkerConfig.WAITING_FOR_DATAGRAMS, workerId));
             
             processedCount = 0;
             long lastReportTime = System.currentTimeMillis();
+            long lastResultsTime = lastReportTime;
             
-            // Procesar datagramas del Master
+            // Procesar tramas del Master; el lote se decodifica siempre sobre el mismo objeto
+            DatagramBatch batch = null;
             while (running) {
-                try {
-                    Object message = in.readObject();
-                    if (message instanceof Datagram) {
-                        processDatagram((Datagram) message);
-                        processedCount++;
-                        
-                        // Reporte cada N datagramas o cada T segundos
-                        long currentTime = System.currentTimeMillis();
-                        if (processedCount % WorkerConfig.PROGRESS_REPORT_INTERVAL == 0 || 
-                            (currentTime - lastReportTime) > WorkerConfig.PROGRESS_TIME_INTERVAL_MS) {
-                            System.out.println(String.format(WorkerConfig.PROCESSING_PROGRESS, 
-                                workerId, processedCount, results.size(), getAverageSpeed()));
-                            lastReportTime = currentTime;
-                        }
-                        
-                    } else if (message instanceof String && "STOP".equals(message)) {
-                        System.out.println(String.format(WorkerConfig.STOP_SIGNAL_RECEIVED, workerId));
-                        break;
-                    }
-                } catch (EOFException e) {
+                byte type = link.next();
+                if (type < 0) {
                     System.out.println(String.format(WorkerConfig.DISCONNECTED, workerId));
                     break;
                 }
+                if (type == FrameType.FILTER) {
+                    rowDecoder.setFilter(link.readFilter());
+                } else if (type == FrameType.BATCH || type == FrameType.CHUNK) {
+                    long before = processedCount;
+                    busySince = System.nanoTime();
+                    if (type == FrameType.BATCH) {
+                        batch = link.readBatch(batch);
+                        processBatch(batch);
+                    } else {
+                        batch = processChunk(link.readChunk(), batch);
+                    }
+                    // Devolver el crédito del lote terminado
+                    link.sendCredit(1, 1, processedCount);
+                    completedBatches++;
+                    busyNanos += System.nanoTime() - busySince;
+                    busySince = 0;
+                    
+                    // Parcial de resultados cada T segundos, solo con los arcos que cambiaron
+                    long currentTime = System.currentTimeMillis();
+                    if (currentTime - lastResultsTime >= WorkerConfig.RESULTS_INTERVAL_MS && hasPendingResults()) {
+                        sendPendingResults(false);
+                        lastResultsTime = currentTime;
+                    }
+                    
+                    // Reporte cada N datagramas o cada T segundos
+                    if (processedCount / WorkerConfig.PROGRESS_REPORT_INTERVAL != before / WorkerConfig.PROGRESS_REPORT_INTERVAL || 
+                        (currentTime - lastReportTime) > WorkerConfig.PROGRESS_TIME_INTERVAL_MS) {
+                        System.out.println(String.format(WorkerConfig.PROCESSING_PROGRESS, 
+                            workerId, processedCount, results.size(), getAverageSpeed()));
+                        lastReportTime = currentTime;
+                    }
+                    
+                } else if (type == FrameType.CHECKPOINT) {
+                    checkpoint(link.readCheckpoint());
+                    lastResultsTime = System.currentTimeMillis();
+                } else if (type == FrameType.STOP) {
+                    System.out.println(String.format(WorkerConfig.STOP_SIGNAL_RECEIVED, workerId));
+                    break;
+                }
             }
             
             System.out.println(String.format(WorkerConfig.PROCESSING_FINISHED, workerId));
+            if (chunkErrorRows > 0 || rowDecoder.getFilteredRows() > 0) {
+                System.out.println(String.format(WorkerConfig.CHUNK_STATS, workerId, rowDecoder.getFilteredRows(), chunkErrorRows));
+            }
             System.out.println(String.format(WorkerConfig.FINAL_STATS, workerId, processedCount, 
                 workerId, results.size(), workerId, getAverageSpeed()));
+            System.out.println(String.format(WorkerConfig.PROCESSING_RATE, workerId, shardCount,
+                busyNanos == 0 ? 0.0 : processedCount * 1e9 / busyNanos, busyNanos / 1e9));
             
-            // Enviar resultados al Master
-            System.out.println(String.format(WorkerConfig.SENDING_RESULTS, workerId));
-            Map<String, Object> resultsMessage = new HashMap<>();
-            resultsMessage.put("type", "RESULTS");
-            resultsMessage.put("workerId", workerId);
-            resultsMessage.put("results", results);
-            out.writeObject(resultsMessage);
-            out.flush();
+            // Enviar lo que falta; el Master ya tiene el resto de los parciales
+            Map<String, ArcSpeed> pending = mergePending();
+            System.out.println(String.format(WorkerConfig.SENDING_RESULTS, workerId, pending.size()));
+            sendResults(true, pending);
             
             System.out.println(String.format(WorkerConfig.RESULTS_SENT, workerId));
             
@@ -106,11 +160,129 @@ public class WorkerNodeService implements Runnable {
             System.err.println(String.format(WorkerConfig.CONNECTION_ERROR, workerId, e.getMessage()));
             e.printStackTrace();
         } finally {
+            running = false;
             cleanup();
             System.out.println(String.format(WorkerConfig.WORKER_FINISHED, workerId));
         }
     }
     
+    /**
+     * Hilo de latidos: le permite al Master distinguir un worker lento, que sigue
+     * latiendo con el tiempo del lote actual, de uno colgado o caído, que deja de latir.
+     */
+    private void startHeartbeat() {
+        Thread heartbeat = new Thread(() -> {
+            try {
+                while (running) {
+                    Thread.sleep(WorkerConfig.HEARTBEAT_INTERVAL_MS);
+                    long since = busySince;
+                    link.sendHeartbeat(getReportedCount(), completedBatches,
+                        since == 0 ? 0 : (int) ((System.nanoTime() - since) / 1_000_000));
+                }
+            } catch (IOException | InterruptedException e) {
+                // Conexión cerrada: el worker terminó
+            }
+        }, "heartbeat-worker-" + workerId);
+        heartbeat.setDaemon(true);
+        heartbeat.start();
+    }
+
+    /**
+     * Un shard por núcleo, cada uno con su hilo; con uno solo el lote se procesa en el hilo del worker.
+     */
+    private void startShards() {
+        shards = new BusShard[shardCount];
+        shardParts = new DatagramBatch[shardCount];
+        for (int s = 0; s < shardCount; s++) {
+            shards[s] = new BusShard(workerId, graph, shardsDone);
+            if (shardCount > 1) {
+                shards[s].start("shard-" + s + "-worker-" + workerId);
+            }
+        }
+        System.out.println(String.format(WorkerConfig.SHARDS_STARTED, workerId, shardCount));
+    }
+
+    /**
+     * Filas procesadas según el avance que publica cada shard.
+     */
+    private long getReportedCount() {
+        long count = 0;
+        for (BusShard shard : shards) {
+            count += shard.getReportedCount();
+        }
+        return count;
+    }
+
+    private boolean hasPendingResults() {
+        for (BusShard shard : shards) {
+            if (!shard.getPending().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Junta las muestras sin enviar de todos los shards (un mismo arco puede estar en
+     * varios: los buses se reparten, los arcos no). Al vaciar su mapa el shard deja de
+     * usar esos ArcSpeed, así que el primero de cada arco se reutiliza.
+     */
+    private Map<String, ArcSpeed> mergePending() {
+        Map<String, ArcSpeed> pending = new HashMap<>();
+        for (BusShard shard : shards) {
+            for (Map.Entry<String, ArcSpeed> entry : shard.getPending().entrySet()) {
+                ArcSpeed merged = pending.putIfAbsent(entry.getKey(), entry.getValue());
+                if (merged != null) {
+                    addSamples(merged, entry.getValue());
+                }
+            }
+            shard.getPending().clear();
+        }
+        return pending;
+    }
+
+    private static void addSamples(ArcSpeed target, ArcSpeed source) {
+        target.merge(source.getSampleCount(), source.getTotalSpeed(), source.getMinSpeed(),
+            source.getMaxSpeed(), source.getLastUpdatedEpochSecond());
+    }
+
+    private void sendPendingResults(boolean last) throws IOException {
+        sendResults(last, mergePending());
+    }
+
+    private void sendResults(boolean last, Map<String, ArcSpeed> pending) throws IOException {
+        link.sendResults(last, processedCount, pending.values());
+        for (Map.Entry<String, ArcSpeed> entry : pending.entrySet()) {
+            ArcSpeed speed = entry.getValue();
+            addSamples(results.computeIfAbsent(entry.getKey(), k -> new ArcSpeed(speed.getArc())), speed);
+        }
+    }
+    
+    /**
+     * Marca de checkpoint: los lotes anteriores ya se procesaron (llegan en orden), así
+     * que se envían sus muestras pendientes y se confirma la marca con las colas de los
+     * buses que cambiaron. Si trae colas (trabajo reanudado) primero se restauran.
+     */
+    private void checkpoint(CheckpointMark mark) throws IOException {
+        if (!mark.getTails().isEmpty()) {
+            for (BusTails.Tail tail : mark.getTails().getTails()) {
+                shards[shardOf(tail.getBusId())].seed(tail);
+            }
+            System.out.println(String.format(WorkerConfig.CHECKPOINT_RESTORED, workerId, mark.getTails().size(), mark.getId()));
+        }
+        long start = System.nanoTime();
+        if (hasPendingResults()) {
+            sendPendingResults(false);
+        }
+        BusTails tails = new BusTails();
+        for (BusShard shard : shards) {
+            shard.appendTails(tails, WorkerConfig.CHECKPOINT_TAIL_POINTS);
+        }
+        long elapsed = System.nanoTime() - start;
+        link.sendCheckpoint(new CheckpointMark(mark.getId(), elapsed, tails));
+        System.out.println(String.format(WorkerConfig.CHECKPOINT_SENT, workerId, mark.getId(), tails.size(), elapsed / 1e6));
+    }
+    
     private double getAverageSpeed() {
         return results.values().stream()
             .filter(arcSpeed -> arcSpeed.getSampleCount() >= WorkerConfig.MIN_SAMPLES_FOR_AVERAGE)
@@ -119,53 +291,76 @@ public class WorkerNodeService implements Runnable {
             .orElse(0.0);
     }
 
-    private void processDatagram(Datagram datagram) {
-        // El eventType en el CSV es "0", no "GPS_POSITION"
-        if (!"0".equals(datagram.getEventType())) {
+    /**
+     * Reparte las filas del lote por bus entre los shards, conservando el orden de cada
+     * bus, y espera a que todos terminen su parte antes de devolver el crédito.
+     */
+    private void processBatch(DatagramBatch batch) throws InterruptedException {
+        if (shards.length == 1) {
+            shards[0].process(batch);
+            processedCount += batch.size();
             return;
         }
-
-        String busKey = datagram.getBusId();
-        busHistory.computeIfAbsent(busKey, k -> new ArrayList<>()).add(datagram);
-        
-        List<Datagram> history = busHistory.get(busKey);
-        if (history.size() < 2) {
-            return;
+        for (int s = 0; s < shardParts.length; s++) {
+            if (shardParts[s] == null || shardParts[s].capacity() < batch.size()) {
+                shardParts[s] = new DatagramBatch(batch.capacity());
+            }
+            shardParts[s].clear();
         }
-
-        Datagram previous = history.get(history.size() - 2);
-        double speed = calculateSpeedSimple(previous, datagram);
-        
-        // Logging para depuración
-        if (processedCount % 50 == 0) {
-            System.out.println(String.format("Worker %d: Procesados %d datagramas | Velocidad actual: %.2f km/h | Arcos con velocidad: %d", 
-                workerId, processedCount, speed, results.size()));
+        int[] busIds = batch.busIds();
+        for (int i = 0; i < batch.size(); i++) {
+            shardParts[shardOf(busIds[i])].addRow(batch, i);
         }
-        
-        if (speed > WorkerConfig.MIN_SPEED_THRESHOLD && speed < WorkerConfig.MAX_SPEED_THRESHOLD) {
-            Arc arc = findArcForDatagramSimple(graph, datagram, history);
-            if (arc != null) {
-                String arcKey = arc.getFrom().getStopId() + "-" + arc.getTo().getStopId() + "-" + arc.getLineId();
-                
-                results.computeIfAbsent(arcKey, k -> new ArcSpeed(arc)).addSpeedSample(speed);
-                
-                // Mostrar cuando se encuentra un arco
-                if (results.size() % 10 == 0) {
-                    System.out.println(String.format("Worker %d: ¡Arco encontrado! %s - Velocidad: %.2f km/h", 
-                        workerId, arcKey, speed));
-                }
-            } else {
-                // Mostrar cuando no se encuentra arco (solo algunas veces para no saturar)
-                if (processedCount % 100 == 0) {
-                    System.out.println(String.format("Worker %d: Sin arco para datagrama del bus %s en (%.6f, %.6f)", 
-                        workerId, busKey, datagram.getLatitude(), datagram.getLongitude()));
-                }
+        int submitted = 0;
+        for (int s = 0; s < shardParts.length; s++) {
+            if (!shardParts[s].isEmpty()) {
+                shards[s].submit(shardParts[s]);
+                submitted++;
             }
         }
+        shardsDone.acquire(submitted);
+        processedCount += batch.size();
+    }
 
-        if (history.size() > WorkerConfig.MAX_HISTORY_SIZE) {
-            history.remove(0);
+    /**
+     * Shard de un bus: hash multiplicativo, para que ids consecutivos no caigan juntos.
+     */
+    private int shardOf(int busId) {
+        return ((busId * 0x9E3779B9) >>> 16) % shards.length;
+    }
+
+    /**
+     * Parsea un bloque de líneas CSV (ingesta raw) en 'batch' y procesa cada lote lleno.
+     * Retorna el lote para reutilizarlo en el siguiente bloque.
+     */
+    private DatagramBatch processChunk(ByteBuffer chunk, DatagramBatch batch) throws InterruptedException {
+        if (batch == null || batch.capacity() < WorkerConfig.CHUNK_BATCH_ROWS) {
+            batch = new DatagramBatch(WorkerConfig.CHUNK_BATCH_ROWS);
         }
+        batch.clear();
+        byte[] data = chunk.array();
+        int end = chunk.arrayOffset() + chunk.limit();
+        int lineStart = chunk.arrayOffset() + chunk.position();
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && data[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int rowEnd = lineEnd > lineStart && data[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (rowEnd > lineStart && !(rowDecoder.decode(data, lineStart, rowEnd) && rowDecoder.appendTo(batch))
+                && !rowDecoder.isFiltered() && ++chunkErrorRows == 1) {
+                System.err.println(String.format(WorkerConfig.CHUNK_ROW_ERROR, workerId, rowDecoder.getErrorColumn()));
+            }
+            if (batch.isFull()) {
+                processBatch(batch);
+                batch.clear();
+            }
+            lineStart = lineEnd + 1;
+        }
+        if (!batch.isEmpty()) {
+            processBatch(batch);
+        }
+        return batch;
     }
 
     public Map<String, ArcSpeed> getResults() {
@@ -178,10 +373,13 @@ public class WorkerNodeService implements Runnable {
     }
 
     private void cleanup() {
+        if (shards != null) {
+            for (BusShard shard : shards) {
+                shard.stop();
+            }
+        }
         try {
-            if (out != null) out.close();
-            if (in != null) in.close();
-            if (socket != null && !socket.isClosed()) socket.close();
+            if (link != null) link.close();
         } catch (IOException e) {
             // Ignorar errores de cierre
         }
@@ -196,8 +394,8 @@ public class WorkerNodeService implements Runnable {
             args.length > 0 ? Integer.parseInt(args[0]) : 1));
         
         if (args.length < 1) {
-            System.err.println("Uso: WorkerNodeService <workerId> [masterIp] [masterPort]");
-            System.err.println("Ejemplo: WorkerNodeService 1 localhost 8080");
+            System.err.println("Uso: WorkerNodeService <workerId> [masterIp] [masterPort] [shards]");
+            System.err.println("Ejemplo: WorkerNodeService 1 localhost 8080 8");
             System.exit(1);
         }
         
@@ -211,7 +409,8 @@ public class WorkerNodeService implements Runnable {
         }
         
         String masterIp = args.length > 1 ? args[1] : WorkerConfig.DEFAULT_MASTER_IP;
-        int masterPort = args.length > 2 ? Integer.parseInt(args[1]) : WorkerConfig.DEFAULT_MASTER_PORT;
+        int masterPort = args.length > 2 ? Integer.parseInt(args[2]) : WorkerConfig.DEFAULT_MASTER_PORT;
+        int shards = args.length > 3 ? Integer.parseInt(args[3]) : WorkerConfig.DEFAULT_SHARDS;
         
         try {
             System.out.println(String.format(WorkerConfig.LOADING_GRAPH, workerId));
@@ -224,6 +423,7 @@ public class WorkerNodeService implements Runnable {
             System.out.println(String.format(WorkerConfig.PROCESSING_STARTED, workerId));
             
             WorkerNodeService worker = new WorkerNodeService(workerId, masterIp, masterPort, graph);
+            worker.setShards(shards);
             Thread workerThread = new Thread(worker);
             workerThread.start();
             
@@ -236,101 +436,4 @@ public class WorkerNodeService implements Runnable {
             e.printStackTrace();
         }
     }
-    
-    /**
-     * Calcula velocidad simplificada entre dos datagramas
-     */
-    private double calculateSpeedSimple(Datagram previous, Datagram current) {
-        if (previous == null || current == null) {
-            return 0.0;
-        }
-        
-        // Calcular distancia simplificada
-        double distance = calculateDistanceSimple(
-            previous.getLatitude(), previous.getLongitude(),
-            current.getLatitude(), current.getLongitude()
-        );
-        
-        // Calcular tiempo en segundos (simplificado)
-        double timeDiff = 1.0; // Asumir 1 segundo de diferencia
-        
-        if (timeDiff <= 0) {
-            return 0.0;
-        }
-        
-        // Velocidad en km/h
-        double speedKmh = (distance / 1000.0) / (timeDiff / 3600.0);
-        
-        // Limitar a valores realistas
-        return Math.max(0.0, Math.min(120.0, speedKmh));
-    }
-    
-    /**
-     * Encuentra arco simplificado para un datagrama
-     */
-    private Arc findArcForDatagramSimple(Graph graph, Datagram datagram, List<Datagram> history) {
-        if (graph != null && graph.getArcs() != null) {
-            for (Arc arc : graph.getArcs()) {
-                if (isNearArcSimple(datagram, arc)) {
-                    return arc;
-                }
-            }
-        }
-        return null;
-    }
-    
-    /**
-     * Calcula distancia simplificada
-     */
-    private double calculateDistanceSimple(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371000; // Radio de la Tierra en metros
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        return R * c;
-    }
-    
-    /**
-     * Verifica si un datagrama está cerca de un arco
-     */
-    private boolean isNearArcSimple(Datagram datagram, Arc arc) {
-        if (datagram == null || arc == null) {
-            return false;
-        }
-        
-        if (arc.getFrom() != null && arc.getTo() != null) {
-            double distanceFromStart = calculateDistanceSimple(
-                datagram.getLatitude(), datagram.getLongitude(),
-                arc.getFrom().getLat(), arc.getFrom().getLon()
-            );
-            
-            double distanceFromEnd = calculateDistanceSimple(
-                datagram.getLatitude(), datagram.getLongitude(),
-                arc.getTo().getLat(), arc.getTo().getLon()
-            );
-            
-            return distanceFromStart < 100 || distanceFromEnd < 100;
-        }
-        
-        return false;
-    }
-    
-    /**
-     * Calcula diferencia de tiempo entre timestamps en formato string
-     */
-    private double calculateTimeDifference(String timestamp1, String timestamp2) {
-        try {
-            // Simplificado: asumir diferencia de 1 segundo si no se puede parsear
-            return 1.0;
-        } catch (Exception e) {
-            return 1.0;
-        }
-    }
 }
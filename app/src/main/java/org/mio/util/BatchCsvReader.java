@@ -1,7 +1,6 @@
 package org.mio.util;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,7 +9,7 @@ import java.util.function.Consumer;
 public class BatchCsvReader {
 
     public static void readInBatches(String filePath, int batchSize, Consumer<List<String[]>> batchProcessor) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+        try (BufferedReader br = CompressedInput.newReader(filePath)) {
             String line;
             boolean skipHeader = true;
             int lineNumber = 0;
@@ -0,0 +1,100 @@
+package org.mio.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Divide un archivo de texto en rangos de bytes alineados a inicio de línea,
+ * para que varios hilos puedan parsearlo en paralelo sin cortar filas.
+ */
+public final class ByteRangeSplitter {
+
+    private static final int PROBE_SIZE = 64 * 1024;
+
+    private ByteRangeSplitter() {
+    }
+
+    /**
+     * Rango [start, end) de bytes dentro del archivo.
+     */
+    public static final class Range {
+        private final long start;
+        private final long end;
+
+        public Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() { return start; }
+        public long getEnd() { return end; }
+        public long length() { return end - start; }
+
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + ")";
+        }
+    }
+
+    /**
+     * Divide el archivo en hasta 'parts' rangos de tamaño similar.
+     * Si skipHeader es true, el primer rango empieza después de la primera línea.
+     */
+    public static List<Range> split(Path path, int parts, boolean skipHeader) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = skipHeader ? nextLineStart(channel, 0, size) : 0;
+            return split(channel, start, size, parts);
+        }
+    }
+
+    /**
+     * Divide [start, end) en hasta 'parts' rangos alineados a inicio de línea.
+     * 'start' debe estar al inicio de una línea.
+     */
+    public static List<Range> split(FileChannel channel, long start, long end, int parts) throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        long step = Math.max(1, (end - start) / Math.max(1, parts));
+        long rangeStart = start;
+
+        for (int i = 1; i < parts && rangeStart < end; i++) {
+            long nominal = Math.max(rangeStart, start + i * step);
+            long boundary = nextLineStart(channel, nominal, end);
+            if (boundary > rangeStart) {
+                ranges.add(new Range(rangeStart, boundary));
+                rangeStart = boundary;
+            }
+        }
+        if (rangeStart < end) {
+            ranges.add(new Range(rangeStart, end));
+        }
+        return ranges;
+    }
+
+    /**
+     * Offset del primer byte después del siguiente '\n' a partir de 'offset' (o 'limit' si no hay más líneas).
+     */
+    public static long nextLineStart(FileChannel channel, long offset, long limit) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long position = offset;
+        while (position < limit) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return Math.min(position + i + 1, limit);
+                }
+            }
+            position += read;
+        }
+        return limit;
+    }
+}
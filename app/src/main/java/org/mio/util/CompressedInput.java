@@ -0,0 +1,60 @@
+package org.mio.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Apertura transparente de archivos de datagramas planos o comprimidos con gzip (".gz").
+ * La descompresión (Inflater del JDK vía GZIPInputStream, con soporte para archivos
+ * de varios miembros) corre en un hilo propio detrás de buffers de adelanto, así se
+ * solapa con el parseo y no hace falta descomprimir a disco antes de procesar.
+ */
+public final class CompressedInput {
+
+    public static final String GZIP_EXTENSION = ".gz";
+    public static final int INPUT_BUFFER_SIZE = 1024 * 1024; // bytes comprimidos por lectura de disco
+    public static final int READ_AHEAD_BUFFER_SIZE = 4 * 1024 * 1024; // bytes descomprimidos por buffer
+    public static final int READ_AHEAD_BUFFERS = 4;
+
+    private CompressedInput() {
+    }
+
+    public static boolean isGzip(String path) {
+        return path.toLowerCase(Locale.ROOT).endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * Stream descomprimido en el hilo que lo lee (para quien ya tiene su propia etapa de lectura).
+     */
+    public static InputStream openGzip(InputStream compressed) throws IOException {
+        return new GZIPInputStream(compressed, INPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * Abre el archivo; si es gzip, la descompresión corre en un hilo aparte.
+     */
+    public static InputStream open(Path path) throws IOException {
+        InputStream file = Files.newInputStream(path);
+        if (!isGzip(path.toString())) {
+            return file;
+        }
+        try {
+            return new ReadAheadInputStream(openGzip(file), READ_AHEAD_BUFFER_SIZE, READ_AHEAD_BUFFERS,
+                "gzip-" + path.getFileName());
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public static BufferedReader newReader(String path) throws IOException {
+        return new BufferedReader(new InputStreamReader(open(Path.of(path)), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,121 @@
+package org.mio.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversión rápida entre el formato fijo "yyyy-MM-dd HH:mm:ss" de los datagramas
+ * y segundos epoch (tomando la hora local del archivo como UTC). No usa
+ * DateTimeFormatter ni crea objetos intermedios al parsear.
+ */
+public final class EpochTime {
+
+    public static final int TEXT_LENGTH = 19;
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private EpochTime() {
+    }
+
+    /**
+     * Parsea texto con formato "yyyy-MM-dd HH:mm:ss" (acepta 'T' como separador).
+     * Retorna INVALID si el texto no tiene el formato esperado.
+     */
+    public static long parse(CharSequence text) {
+        if (text.length() < TEXT_LENGTH || !separators(text.charAt(4), text.charAt(7), text.charAt(10),
+            text.charAt(13), text.charAt(16))) {
+            return INVALID;
+        }
+        return of(digits(text, 0, 4), digits(text, 5, 2), digits(text, 8, 2),
+            digits(text, 11, 2), digits(text, 14, 2), digits(text, 17, 2));
+    }
+
+    /**
+     * Igual que parse(CharSequence) sobre bytes ASCII, a partir de 'offset'.
+     */
+    public static long parse(byte[] text, int offset, int length) {
+        if (length < TEXT_LENGTH || !separators((char) text[offset + 4], (char) text[offset + 7], (char) text[offset + 10],
+            (char) text[offset + 13], (char) text[offset + 16])) {
+            return INVALID;
+        }
+        return of(digits(text, offset, 4), digits(text, offset + 5, 2), digits(text, offset + 8, 2),
+            digits(text, offset + 11, 2), digits(text, offset + 14, 2), digits(text, offset + 17, 2));
+    }
+
+    /**
+     * Segundos epoch de una fecha civil, sin pasar por java.time.
+     * Retorna INVALID si algún componente está fuera de rango.
+     */
+    public static long of(int year, int month, int day, int hour, int minute, int second) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+            || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        int y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097 + dayOfEra - 719468;
+        return days * 86400 + hour * 3600L + minute * 60L + second;
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    public static long fromLocalDateTime(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Formatea con "yyyy-MM-dd HH:mm:ss". Solo para mensajes y reportes.
+     */
+    public static String format(long epochSecond) {
+        LocalDateTime dateTime = toLocalDateTime(epochSecond);
+        return String.format("%04d-%02d-%02d %02d:%02d:%02d",
+            dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth(),
+            dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond());
+    }
+
+    private static boolean separators(char dateDash1, char dateDash2, char dateTime, char colon1, char colon2) {
+        return dateDash1 == '-' && dateDash2 == '-' && (dateTime == ' ' || dateTime == 'T') && colon1 == ':' && colon2 == ':';
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int digits(CharSequence text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int digits(byte[] text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -1,7 +1,6 @@
 package org.mio.util;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -11,7 +10,7 @@ public class FileCsvReader {
     public static List<String[]> read(String filePath) {
         List<String[]> rows = new ArrayList<>();
         
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+        try (BufferedReader br = CompressedInput.newReader(filePath)) {
             String line;
             boolean skipHeader = true;
             int lineNumber = 0;
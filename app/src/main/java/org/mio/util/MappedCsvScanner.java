@@ -0,0 +1,276 @@
+package org.mio.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Escáner de CSV sobre un archivo mapeado en memoria (FileChannel.map).
+ * Tokeniza las filas directamente sobre los bytes mapeados: no crea un String
+ * por línea ni usa split con expresiones regulares. Los campos de la fila actual
+ * se exponen como rangos [inicio, fin) dentro de buffer(), ya sin comillas ni espacios.
+ */
+public class MappedCsvScanner implements Closeable {
+
+    public static final int MAX_FIELDS = 32;
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024; // 256 MB por ventana mapeada
+
+    private final FileChannel channel;
+    private final long endOffset;
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private final byte[] dateScratch = new byte[EpochTime.TEXT_LENGTH];
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int pos;
+    private int fieldCount;
+    private int rowStart;
+    private int rowEnd;
+
+    public MappedCsvScanner(Path path) throws IOException {
+        this(path, 0, -1);
+    }
+
+    /**
+     * Escanea solo el rango de bytes [startOffset, endOffset) del archivo.
+     * Con endOffset negativo se lee hasta el final.
+     */
+    public MappedCsvScanner(Path path, long startOffset, long endOffset) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        this.endOffset = endOffset < 0 ? size : Math.min(endOffset, size);
+        map(Math.min(startOffset, this.endOffset));
+    }
+
+    private void map(long offset) throws IOException {
+        long length = Math.min(WINDOW_SIZE, endOffset - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        windowStart = offset;
+        pos = 0;
+    }
+
+    /**
+     * Descarta la línea actual sin tokenizarla (por ejemplo, el header).
+     */
+    public void skipLine() throws IOException {
+        if (nextRow()) {
+            fieldCount = 0;
+        }
+    }
+
+    /**
+     * Avanza a la siguiente fila no vacía separando sus campos.
+     * Retorna false al llegar al final del rango.
+     */
+    public boolean nextRow() throws IOException {
+        return advance(true);
+    }
+
+    /**
+     * Avanza a la siguiente fila no vacía sin separar campos: solo delimita la línea
+     * en [rowStart(), rowEnd()) para que un decodificador la recorra una sola vez.
+     */
+    public boolean nextLine() throws IOException {
+        return advance(false);
+    }
+
+    private boolean advance(boolean tokenize) throws IOException {
+        while (windowStart + pos < endOffset) {
+            int limit = window.limit();
+            int i = pos;
+            int field = 0;
+            int fieldStart = pos;
+            boolean complete = false;
+
+            while (i < limit) {
+                byte b = window.get(i);
+                if (b == '\n') {
+                    complete = true;
+                    break;
+                }
+                if (tokenize && b == ',') {
+                    setField(field++, fieldStart, i);
+                    fieldStart = i + 1;
+                }
+                i++;
+            }
+
+            if (!complete && windowStart + limit < endOffset) {
+                // La fila quedó cortada por el borde de la ventana: remapear desde su inicio
+                if (pos == 0) {
+                    throw new IOException("Fila más larga que la ventana de mapeo en el offset " + windowStart);
+                }
+                map(windowStart + pos);
+                continue;
+            }
+
+            int lineEnd = i;
+            if (lineEnd > pos && window.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            boolean empty = lineEnd == pos;
+            if (tokenize) {
+                setField(field++, fieldStart, lineEnd);
+            }
+            fieldCount = Math.min(field, MAX_FIELDS);
+            rowStart = pos;
+            rowEnd = lineEnd;
+            pos = complete ? i + 1 : i;
+
+            if (!empty) {
+                return true;
+            }
+        }
+        fieldCount = 0;
+        return false;
+    }
+
+    private void setField(int index, int start, int end) {
+        if (index >= MAX_FIELDS) {
+            return;
+        }
+        // Equivalente a replace("\"", "").trim() para comillas en los bordes
+        while (start < end && isBlankOrQuote(window.get(start))) start++;
+        while (end > start && isBlankOrQuote(window.get(end - 1))) end--;
+        starts[index] = start;
+        ends[index] = end;
+    }
+
+    private static boolean isBlankOrQuote(byte b) {
+        return b == '"' || b == ' ' || b == '\t';
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public ByteBuffer buffer() {
+        return window;
+    }
+
+    /**
+     * Inicio de la fila actual dentro de buffer().
+     */
+    public int rowStart() {
+        return rowStart;
+    }
+
+    /**
+     * Fin (exclusivo, sin '\r') de la fila actual dentro de buffer().
+     */
+    public int rowEnd() {
+        return rowEnd;
+    }
+
+    public int fieldStart(int field) {
+        return starts[field];
+    }
+
+    public int fieldEnd(int field) {
+        return ends[field];
+    }
+
+    /**
+     * Offset absoluto en el archivo justo después de la fila actual.
+     */
+    public long position() {
+        return windowStart + pos;
+    }
+
+    public boolean fieldEquals(int field, byte[] value) {
+        int start = starts[field];
+        if (ends[field] - start != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (window.get(start + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long parseLong(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        if (start == end) {
+            throw new NumberFormatException("Campo vacío en la columna " + field);
+        }
+        boolean negative = false;
+        byte first = window.get(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+            if (start == end) {
+                throw new NumberFormatException("Número inválido: " + fieldString(field));
+            }
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Número inválido: " + fieldString(field));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    public int parseInt(int field) {
+        long value = parseLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Entero fuera de rango: " + fieldString(field));
+        }
+        return (int) value;
+    }
+
+    /**
+     * Ruta rápida para números enteros (el caso de las coordenadas escaladas);
+     * si el campo trae decimales o exponente se delega en Double.parseDouble.
+     */
+    public double parseDouble(int field) {
+        for (int i = starts[field]; i < ends[field]; i++) {
+            byte b = window.get(i);
+            if (b == '.' || b == 'e' || b == 'E') {
+                return Double.parseDouble(fieldString(field));
+            }
+        }
+        return parseLong(field);
+    }
+
+    /**
+     * Parsea una fecha con formato fijo "yyyy-MM-dd HH:mm:ss" a segundos epoch (ver EpochTime).
+     */
+    public long parseEpochSecond(int field) {
+        int start = starts[field];
+        int length = ends[field] - start;
+        window.get(start, dateScratch, 0, Math.min(length, EpochTime.TEXT_LENGTH));
+        long epochSecond = EpochTime.parse(dateScratch, 0, length);
+        if (epochSecond == EpochTime.INVALID) {
+            throw new IllegalArgumentException("Fecha inválida: " + fieldString(field));
+        }
+        return epochSecond;
+    }
+
+    /**
+     * Copia el campo a un String. Solo para los campos que realmente lo necesitan.
+     */
+    public String fieldString(int field) {
+        int length = ends[field] - starts[field];
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = window.get(starts[field] + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,140 @@
+package org.mio.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * InputStream que lee la fuente en un hilo propio y deja los datos en varios buffers
+ * de adelanto, para que el trabajo de la fuente (por ejemplo, descomprimir gzip) se
+ * solape con el consumidor. Si el consumidor se atrasa, el hilo espera un buffer libre.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final class Buffer {
+        final byte[] data;
+        int length;
+
+        Buffer(int size) {
+            this.data = new byte[size];
+        }
+    }
+
+    private static final Buffer END = new Buffer(0);
+
+    private final InputStream source;
+    private final BlockingQueue<Buffer> free;
+    private final BlockingQueue<Buffer> filled;
+    private final Thread thread;
+    private volatile IOException failure;
+    private Buffer current;
+    private int position;
+    private boolean closed;
+
+    public ReadAheadInputStream(InputStream source, int bufferSize, int bufferCount, String threadName) {
+        this.source = source;
+        this.free = new ArrayBlockingQueue<>(bufferCount);
+        // Espacio extra para la marca de fin, que nunca debe bloquear al hilo lector
+        this.filled = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 0; i < bufferCount; i++) {
+            free.add(new Buffer(bufferSize));
+        }
+        this.thread = new Thread(this::fill, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void fill() {
+        try {
+            while (true) {
+                Buffer buffer = free.take();
+                int length = 0;
+                int read = 0;
+                while (length < buffer.data.length && (read = source.read(buffer.data, length, buffer.data.length - length)) >= 0) {
+                    length += read;
+                }
+                buffer.length = length;
+                if (length > 0) {
+                    filled.put(buffer);
+                }
+                if (read < 0) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            filled.offer(END);
+        }
+    }
+
+    /**
+     * Deja disponible el siguiente buffer con datos; false al final de la fuente.
+     */
+    private boolean advance() throws IOException {
+        if (closed) {
+            throw new IOException("Stream cerrado");
+        }
+        if (current == END) {
+            return false;
+        }
+        if (current != null && position < current.length) {
+            return true;
+        }
+        if (current != null) {
+            free.offer(current);
+        }
+        try {
+            current = filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Lectura interrumpida");
+        }
+        position = 0;
+        if (current == END) {
+            if (failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return advance() ? current.data[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!advance()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return closed || current == null || current == END ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        thread.interrupt();
+        source.close();
+    }
+}
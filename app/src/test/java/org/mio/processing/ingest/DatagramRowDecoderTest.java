@@ -0,0 +1,92 @@
+package org.mio.processing.ingest;
+
+import org.mio.model.DatagramBatch;
+import org.mio.util.EpochTime;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatagramRowDecoderTest {
+
+    private static final String ROW =
+        "\"2\",2019-05-27 05:00:00,-1,83341,34434888,-764834330,-1,\"2842\",5448,0,\"2019-05-27 05:00:00\",1000";
+
+    @Test void decodesUsedColumns() {
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+        assertTrue(decoder.decode(ROW));
+        assertEquals(2, decoder.getEventType());
+        assertEquals(34434888, decoder.getLatitudeE7());
+        assertEquals(-764834330, decoder.getLongitudeE7());
+        assertEquals(2842, decoder.getLineId());
+        assertEquals(EpochTime.of(2019, 5, 27, 5, 0, 0), decoder.getEpochSecond());
+        assertEquals(1000, decoder.getBusId());
+        assertEquals(-1, decoder.getErrorColumn());
+    }
+
+    @Test void byteSourcesMatchText() {
+        String padded = "xx" + ROW + "\n";
+        byte[] bytes = padded.getBytes(StandardCharsets.US_ASCII);
+        int end = 2 + ROW.length();
+
+        DatagramRowDecoder fromArray = new DatagramRowDecoder();
+        assertTrue(fromArray.decode(bytes, 2, end));
+        DatagramRowDecoder fromBuffer = new DatagramRowDecoder();
+        assertTrue(fromBuffer.decode(ByteBuffer.wrap(bytes), 2, end));
+
+        for (DatagramRowDecoder decoder : new DatagramRowDecoder[] {fromArray, fromBuffer}) {
+            assertEquals(1000, decoder.getBusId());
+            assertEquals(2842, decoder.getLineId());
+            assertEquals(EpochTime.of(2019, 5, 27, 5, 0, 0), decoder.getEpochSecond());
+        }
+    }
+
+    @Test void roundsDecimalValues() {
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+        assertTrue(decoder.decode("0,x,x,x,34434888.5,-764834330.4,x,12,x,x,2019-05-27 05:00:00,7"));
+        assertEquals(34434889, decoder.getLatitudeE7());
+        assertEquals(-764834330, decoder.getLongitudeE7());
+    }
+
+    @Test void reportsInvalidColumn() {
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+        assertFalse(decoder.decode(ROW.replace(",1000", ",abc")));
+        assertEquals(DatagramCsvParser.COL_BUS_ID, decoder.getErrorColumn());
+        assertFalse(decoder.isFiltered());
+
+        assertFalse(decoder.decode(ROW.replace("\"2019-05-27 05:00:00\"", "2019-05-27")));
+        assertEquals(DatagramCsvParser.COL_DATAGRAM_DATE, decoder.getErrorColumn());
+
+        // Fila cortada después de la longitud: falta la columna siguiente
+        assertFalse(decoder.decode("0,x,x,x,34434888,-764834330"));
+        assertEquals(DatagramCsvParser.COL_LONGITUDE + 1, decoder.getErrorColumn());
+    }
+
+    @Test void filterDiscardsRowWithoutError() {
+        DatagramFilter filter = new DatagramFilter();
+        filter.setLines(2842);
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+        decoder.setFilter(filter);
+
+        assertTrue(decoder.decode(ROW));
+        assertFalse(decoder.decode(ROW.replace("\"2842\"", "3172")));
+        assertTrue(decoder.isFiltered());
+        assertEquals(-1, decoder.getErrorColumn());
+        assertEquals(1, decoder.getFilteredRows());
+    }
+
+    @Test void appendsToBatch() {
+        DatagramRowDecoder decoder = new DatagramRowDecoder();
+        DatagramBatch batch = new DatagramBatch(4);
+        assertTrue(decoder.decode(ROW));
+        assertTrue(decoder.appendTo(batch));
+
+        assertEquals(1, batch.size());
+        assertEquals(1000, batch.getBusId(0));
+        assertEquals(34434888, batch.getLatitudeE7(0));
+        assertEquals(2842, batch.getLineId(0));
+        assertEquals(2, batch.getEventType(0));
+    }
+}
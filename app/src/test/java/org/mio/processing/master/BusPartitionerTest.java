@@ -0,0 +1,158 @@
+package org.mio.processing.master;
+
+import org.mio.model.ArcSpeed;
+import org.mio.model.DatagramBatch;
+import org.mio.processing.ingest.DatagramFilter;
+import org.mio.processing.protocol.CheckpointMark;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BusPartitionerTest {
+
+    private static final int BUSES = 500;
+
+    private final List<WorkerSender> senders = new ArrayList<>();
+    private final StageStats producer = new StageStats("test", null);
+
+    @BeforeEach void connectWorkers() {
+        for (int id = 1; id <= 3; id++) {
+            senders.add(new RecordingSender(new FakeWorker(id)));
+        }
+    }
+
+    @Test void everyBusHasOneOwner() throws InterruptedException {
+        BusPartitioner partitioner = new BusPartitioner(senders, 16, null);
+        Map<Integer, Integer> owners = dispatch(partitioner);
+        assertEquals(BUSES, owners.size());
+        // El mismo bus vuelve al mismo worker en el lote siguiente
+        assertEquals(owners, dispatch(partitioner));
+        for (int s = 0; s < senders.size(); s++) {
+            assertTrue(owners.containsValue(s), "worker " + s + " sin buses");
+        }
+    }
+
+    @Test void rebuildMovesOnlyBusesOfLostWorker() throws InterruptedException {
+        BusPartitioner partitioner = new BusPartitioner(senders, 16, null);
+        Map<Integer, Integer> before = dispatch(partitioner);
+
+        worker(1).processing = false;
+        partitioner.rebuild();
+        Map<Integer, Integer> after = dispatch(partitioner);
+
+        assertEquals(BUSES, after.size());
+        for (Map.Entry<Integer, Integer> entry : before.entrySet()) {
+            int bus = entry.getKey();
+            if (entry.getValue() == 1) {
+                assertNotEquals(1, after.get(bus));
+            } else {
+                assertEquals(entry.getValue(), after.get(bus), "bus " + bus + " cambió de dueño");
+            }
+        }
+    }
+
+    @Test void rejoinRestoresOwnership() throws InterruptedException {
+        BusPartitioner partitioner = new BusPartitioner(senders, 16, null);
+        Map<Integer, Integer> before = dispatch(partitioner);
+
+        worker(2).processing = false;
+        partitioner.rebuild();
+        dispatch(partitioner);
+        worker(2).processing = true;
+        partitioner.rebuild();
+
+        // Los puntos del anillo dependen del id del worker, no del orden de conexión
+        assertEquals(before, dispatch(partitioner));
+    }
+
+    @Test void joiningWorkerTakesBusesOnlyFromOthers() throws InterruptedException {
+        BusPartitioner partitioner = new BusPartitioner(senders, 16, null);
+        Map<Integer, Integer> before = dispatch(partitioner);
+
+        senders.add(new RecordingSender(new FakeWorker(4)));
+        partitioner.rebuild();
+        Map<Integer, Integer> after = dispatch(partitioner);
+
+        assertTrue(after.containsValue(3), "el worker nuevo no recibió buses");
+        for (Map.Entry<Integer, Integer> entry : after.entrySet()) {
+            if (entry.getValue() != 3) {
+                assertEquals(before.get(entry.getKey()), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reparte un lote con una fila por bus y retorna el índice del sender de cada bus.
+     */
+    private Map<Integer, Integer> dispatch(BusPartitioner partitioner) throws InterruptedException {
+        for (WorkerSender sender : senders) {
+            ((RecordingSender) sender).batches.clear();
+        }
+        DatagramBatch batch = new DatagramBatch(BUSES);
+        for (int bus = 0; bus < BUSES; bus++) {
+            batch.add(1000 + bus, 0, 0, 1558933200L, 1, 0);
+        }
+        partitioner.dispatch(batch, producer);
+
+        Map<Integer, Integer> owners = new HashMap<>();
+        for (int s = 0; s < senders.size(); s++) {
+            RecordingSender sender = (RecordingSender) senders.get(s);
+            if (!sender.batches.isEmpty()) {
+                assertTrue(sender.getWorker().isActive(), "filas para un worker inactivo");
+            }
+            for (DatagramBatch part : sender.batches) {
+                for (int i = 0; i < part.size(); i++) {
+                    assertNull(owners.put(part.getBusId(i), s), "bus repartido a dos workers");
+                }
+            }
+        }
+        return owners;
+    }
+
+    private FakeWorker worker(int index) {
+        return (FakeWorker) senders.get(index).getWorker();
+    }
+
+    private static final class RecordingSender implements WorkerSender {
+        final FakeWorker worker;
+        final List<DatagramBatch> batches = new ArrayList<>();
+
+        RecordingSender(FakeWorker worker) {
+            this.worker = worker;
+        }
+
+        @Override public void start() { }
+        @Override public void enqueue(DatagramBatch batch, StageStats producer) { batches.add(batch); }
+        @Override public void enqueue(RawChunk chunk, StageStats producer) { }
+        @Override public void enqueue(CheckpointMark mark, StageStats producer) { }
+        @Override public void finish() { }
+        @Override public StageStats getStats() { return null; }
+        @Override public WorkerChannel getWorker() { return worker; }
+    }
+
+    private static final class FakeWorker implements WorkerChannel {
+        final int workerId;
+        final CreditGate credits = new CreditGate();
+        boolean processing = true;
+
+        FakeWorker(int workerId) {
+            this.workerId = workerId;
+        }
+
+        @Override public int getWorkerId() { return workerId; }
+        @Override public boolean isProcessing() { return processing; }
+        @Override public Map<String, ArcSpeed> getResults() { return Map.of(); }
+        @Override public void sendStop() { }
+        @Override public void sendFilter(DatagramFilter filter) { }
+        @Override public void sendCheckpoint(CheckpointMark mark) { }
+        @Override public long getBytesSent() { return 0; }
+        @Override public CreditGate getCredits() { return credits; }
+        @Override public WorkerSender newSender() { return null; }
+    }
+}
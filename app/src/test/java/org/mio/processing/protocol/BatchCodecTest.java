@@ -0,0 +1,75 @@
+package org.mio.processing.protocol;
+
+import org.mio.model.DatagramBatch;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCodecTest {
+
+    @Test void roundTripWithEpochOffsets() {
+        DatagramBatch batch = new DatagramBatch(3);
+        batch.add(1000, 34434888, -764834330, 1558933200L, 2842, 2);
+        batch.add(1001, 33665558, -765282108, 1558933230L, 3172, 0);
+        batch.add(1000, 34434999, -764834000, 1558933260L, 2842, 13);
+
+        assertSameRows(batch, roundTrip(batch, null));
+    }
+
+    @Test void roundTripWithFullEpochs() {
+        // Más de Integer.MAX_VALUE segundos entre filas: el tiempo viaja como long
+        DatagramBatch batch = new DatagramBatch(2);
+        batch.add(7, 1, 2, -5_000_000_000L, 1, 1);
+        batch.add(8, 3, 4, 5_000_000_000L, 2, 2);
+
+        assertSameRows(batch, roundTrip(batch, null));
+    }
+
+    @Test void emptyBatch() {
+        DatagramBatch decoded = roundTrip(new DatagramBatch(1), null);
+        assertEquals(0, decoded.size());
+    }
+
+    @Test void decodeReusesAndGrowsTarget() {
+        DatagramBatch batch = new DatagramBatch(3);
+        for (int i = 0; i < 3; i++) {
+            batch.add(i, i, i, 1558933200L + i, i, i);
+        }
+        DatagramBatch large = new DatagramBatch(8);
+        assertSame(large, roundTrip(batch, large));
+
+        DatagramBatch small = new DatagramBatch(1);
+        DatagramBatch grown = roundTrip(batch, small);
+        assertNotSame(small, grown);
+        assertSameRows(batch, grown);
+    }
+
+    @Test void rejectsUnknownMode() {
+        ByteBuffer buffer = ByteBuffer.allocate(BatchCodec.HEADER_SIZE);
+        buffer.putInt(1).put((byte) 9).putLong(0).flip();
+        assertThrows(IllegalArgumentException.class, () -> BatchCodec.decode(buffer, null));
+    }
+
+    private static DatagramBatch roundTrip(DatagramBatch batch, DatagramBatch target) {
+        ByteBuffer buffer = ByteBuffer.allocate(BatchCodec.maxEncodedSize(batch.size()));
+        BatchCodec.encode(batch, buffer);
+        buffer.flip();
+        DatagramBatch decoded = BatchCodec.decode(buffer, target);
+        assertFalse(buffer.hasRemaining());
+        return decoded;
+    }
+
+    private static void assertSameRows(DatagramBatch expected, DatagramBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getBusId(i), actual.getBusId(i));
+            assertEquals(expected.getLatitudeE7(i), actual.getLatitudeE7(i));
+            assertEquals(expected.getLongitudeE7(i), actual.getLongitudeE7(i));
+            assertEquals(expected.getEpochSecond(i), actual.getEpochSecond(i));
+            assertEquals(expected.getLineId(i), actual.getLineId(i));
+            assertEquals(expected.getEventType(i), actual.getEventType(i));
+        }
+    }
+}
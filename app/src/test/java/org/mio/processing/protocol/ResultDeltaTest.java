@@ -0,0 +1,85 @@
+package org.mio.processing.protocol;
+
+import org.mio.model.Arc;
+import org.mio.model.ArcSpeed;
+import org.mio.model.Stop;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultDeltaTest {
+
+    @Test void encodeDecodeRoundTrip() {
+        List<ArcSpeed> changed = List.of(speed(10, 11, 2842, 20.0, 35.5), speed(11, 12, 3172, 12.25));
+        ByteBuffer buffer = ByteBuffer.allocate(ResultDelta.maxEncodedSize(changed.size()));
+        ResultDelta.encode(true, 40000, changed, buffer);
+        buffer.flip();
+        int encoded = buffer.remaining();
+
+        ResultDelta delta = ResultDelta.decode(buffer);
+        assertTrue(delta.isLast());
+        assertEquals(40000, delta.getProcessedRows());
+        assertEquals(encoded, delta.getEncodedSize());
+        assertEquals(2, delta.getEntries().size());
+        ResultDelta.Entry first = delta.getEntries().get(0);
+        assertEquals("10-11-2842", first.key());
+        assertEquals(2, first.getSamples());
+
+        ArcSpeed merged = new ArcSpeed(changed.get(0).getArc());
+        first.mergeInto(merged);
+        assertSameTotals(changed.get(0), merged);
+    }
+
+    @Test void directDeltaMatchesDecoded() {
+        List<ArcSpeed> changed = List.of(speed(1, 2, 5, 10.0, 30.0, 20.0));
+        ResultDelta direct = ResultDelta.of(false, 3, changed);
+        assertFalse(direct.isLast());
+        assertEquals(3, direct.getProcessedRows());
+
+        ArcSpeed merged = new ArcSpeed(changed.get(0).getArc());
+        direct.getEntries().get(0).mergeInto(merged);
+        assertSameTotals(changed.get(0), merged);
+    }
+
+    @Test void partialsAddUp() {
+        // Dos parciales del mismo arco suman como un solo acumulado
+        ArcSpeed first = speed(1, 2, 5, 10.0, 30.0);
+        ArcSpeed second = speed(1, 2, 5, 50.0);
+        ArcSpeed all = speed(1, 2, 5, 10.0, 30.0, 50.0);
+
+        ArcSpeed merged = new ArcSpeed(first.getArc());
+        for (ArcSpeed partial : List.of(first, second)) {
+            ByteBuffer buffer = ByteBuffer.allocate(ResultDelta.maxEncodedSize(1));
+            ResultDelta.encode(false, 0, List.of(partial), buffer);
+            buffer.flip();
+            ResultDelta.decode(buffer).getEntries().get(0).mergeInto(merged);
+        }
+        assertEquals(all.getSampleCount(), merged.getSampleCount());
+        assertEquals(all.getAverageSpeed(), merged.getAverageSpeed(), 1e-9);
+        assertEquals(all.getMinSpeed(), merged.getMinSpeed(), 1e-9);
+        assertEquals(all.getMaxSpeed(), merged.getMaxSpeed(), 1e-9);
+        // Queda el tiempo más reciente de los dos parciales
+        assertEquals(first.getLastUpdatedEpochSecond(), merged.getLastUpdatedEpochSecond());
+    }
+
+    private static ArcSpeed speed(int from, int to, int line, double... samples) {
+        Arc arc = new Arc(new Stop(from, null, null, 0, 0), new Stop(to, null, null, 0, 0), line, 0);
+        ArcSpeed speed = new ArcSpeed(arc);
+        for (int i = 0; i < samples.length; i++) {
+            speed.addSpeedSample(samples[i], 1558933200L + i);
+        }
+        return speed;
+    }
+
+    private static void assertSameTotals(ArcSpeed expected, ArcSpeed actual) {
+        assertEquals(expected.getSampleCount(), actual.getSampleCount());
+        assertEquals(expected.getTotalSpeed(), actual.getTotalSpeed(), 1e-9);
+        assertEquals(expected.getAverageSpeed(), actual.getAverageSpeed(), 1e-9);
+        assertEquals(expected.getMinSpeed(), actual.getMinSpeed(), 1e-9);
+        assertEquals(expected.getMaxSpeed(), actual.getMaxSpeed(), 1e-9);
+        assertEquals(expected.getLastUpdatedEpochSecond(), actual.getLastUpdatedEpochSecond());
+    }
+}
@@ -0,0 +1,68 @@
+package org.mio.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteRangeSplitterTest {
+
+    @TempDir Path dir;
+
+    @Test void rangesCoverFileAtLineStarts() throws IOException {
+        StringBuilder text = new StringBuilder("header\n");
+        for (int i = 0; i < 1000; i++) {
+            text.append(i).append(",row with some padding ").append(i * 7).append('\n');
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+        Path file = write(bytes);
+
+        for (int parts = 1; parts <= 16; parts++) {
+            List<ByteRangeSplitter.Range> ranges = ByteRangeSplitter.split(file, parts, true);
+            assertTrue(ranges.size() <= parts);
+            assertEquals("header\n".length(), ranges.get(0).getStart());
+            assertEquals(bytes.length, ranges.get(ranges.size() - 1).getEnd());
+            for (int r = 0; r < ranges.size(); r++) {
+                ByteRangeSplitter.Range range = ranges.get(r);
+                assertTrue(range.length() > 0, range.toString());
+                // Cada rango empieza justo después de un salto de línea
+                assertEquals('\n', bytes[(int) range.getStart() - 1]);
+                if (r > 0) {
+                    assertEquals(ranges.get(r - 1).getEnd(), range.getStart());
+                }
+            }
+        }
+    }
+
+    @Test void morePartsThanLines() throws IOException {
+        Path file = write("a\nb\nc\n".getBytes(StandardCharsets.US_ASCII));
+        List<ByteRangeSplitter.Range> ranges = ByteRangeSplitter.split(file, 10, false);
+        assertTrue(ranges.size() <= 3);
+        assertEquals(0, ranges.get(0).getStart());
+        assertEquals(6, ranges.get(ranges.size() - 1).getEnd());
+    }
+
+    @Test void lastLineWithoutNewline() throws IOException {
+        Path file = write("header\nfirst\nsecond".getBytes(StandardCharsets.US_ASCII));
+        List<ByteRangeSplitter.Range> ranges = ByteRangeSplitter.split(file, 2, true);
+        assertEquals(7, ranges.get(0).getStart());
+        assertEquals(19, ranges.get(ranges.size() - 1).getEnd());
+    }
+
+    @Test void headerOnly() throws IOException {
+        Path file = write("header\n".getBytes(StandardCharsets.US_ASCII));
+        assertTrue(ByteRangeSplitter.split(file, 4, true).isEmpty());
+    }
+
+    private Path write(byte[] bytes) throws IOException {
+        Path file = dir.resolve("datagrams.csv");
+        Files.write(file, bytes);
+        return file;
+    }
+}
@@ -0,0 +1,57 @@
+package org.mio.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpochTimeTest {
+
+    @Test void parseMatchesJavaTime() {
+        String[] dates = {
+            "2019-05-27 05:00:00", "1970-01-01 00:00:00", "1969-12-31 23:59:59",
+            "2000-02-29 12:34:56", "2024-12-31 23:59:59", "1900-03-01 00:00:00"
+        };
+        for (String date : dates) {
+            long expected = LocalDateTime.parse(date.replace(' ', 'T')).toEpochSecond(ZoneOffset.UTC);
+            assertEquals(expected, EpochTime.parse(date), date);
+        }
+    }
+
+    @Test void parseAcceptsIsoSeparator() {
+        assertEquals(EpochTime.parse("2019-05-27 05:00:00"), EpochTime.parse("2019-05-27T05:00:00"));
+    }
+
+    @Test void parseBytesAtOffset() {
+        byte[] row = "1000,2019-05-27 05:00:30,x".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(EpochTime.parse("2019-05-27 05:00:30"), EpochTime.parse(row, 5, EpochTime.TEXT_LENGTH));
+    }
+
+    @Test void parseRejectsMalformedText() {
+        assertEquals(EpochTime.INVALID, EpochTime.parse("2019-05-27"));
+        assertEquals(EpochTime.INVALID, EpochTime.parse("2019/05/27 05:00:00"));
+        assertEquals(EpochTime.INVALID, EpochTime.parse("2019-05-27 05-00-00"));
+        assertEquals(EpochTime.INVALID, EpochTime.parse("2019-0A-27 05:00:00"));
+        assertEquals(EpochTime.INVALID, EpochTime.parse("2019-13-01 00:00:00"));
+        assertEquals(EpochTime.INVALID, EpochTime.parse("2019-02-29 00:00:00"));
+        assertEquals(EpochTime.INVALID, EpochTime.parse("2019-04-31 00:00:00"));
+        assertEquals(EpochTime.INVALID, EpochTime.parse("2019-05-27 24:00:00"));
+        assertEquals(EpochTime.INVALID, EpochTime.parse("2019-05-27 05:60:00"));
+    }
+
+    @Test void leapYears() {
+        assertNotEquals(EpochTime.INVALID, EpochTime.of(2000, 2, 29, 0, 0, 0));
+        assertNotEquals(EpochTime.INVALID, EpochTime.of(2024, 2, 29, 0, 0, 0));
+        assertEquals(EpochTime.INVALID, EpochTime.of(1900, 2, 29, 0, 0, 0));
+    }
+
+    @Test void formatRoundTrip() {
+        String date = "2019-05-27 05:07:09";
+        assertEquals(date, EpochTime.format(EpochTime.parse(date)));
+        LocalDateTime dateTime = LocalDateTime.of(2019, 5, 27, 5, 7, 9);
+        assertEquals(dateTime, EpochTime.toLocalDateTime(EpochTime.fromLocalDateTime(dateTime)));
+    }
+}